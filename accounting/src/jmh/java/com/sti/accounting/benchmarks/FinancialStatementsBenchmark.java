@@ -0,0 +1,127 @@
+package com.sti.accounting.benchmarks;
+
+import com.sti.accounting.entities.CompanyEntity;
+import com.sti.accounting.models.GeneralBalanceResponse;
+import com.sti.accounting.models.IncomeStatementResponse;
+import com.sti.accounting.models.ReportDataSnapshot;
+import com.sti.accounting.models.SeniorAccountsResponse;
+import com.sti.accounting.models.TrialBalanceResponse;
+import com.sti.accounting.reports.ReportPdfGenerator;
+import com.sti.accounting.services.AccountingPeriodService;
+import com.sti.accounting.services.GeneralBalanceService;
+import com.sti.accounting.services.IncomeStatementService;
+import com.sti.accounting.services.ReportDataService;
+import com.sti.accounting.services.SeniorAccountantsService;
+import com.sti.accounting.services.TrialBalanceService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Rutas calientes de los reportes financieros sobre un tenant sintetico.
+ * Ejemplo: mvn -Pjmh test-compile exec:exec -Djmh.args="FinancialStatementsBenchmark.trialBalance -p accounts=5000 -p ledgerLines=100000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx6g"})
+public class FinancialStatementsBenchmark {
+
+    @Param({"500", "5000", "50000"})
+    private int accounts;
+
+    @Param({"10000", "100000", "1000000"})
+    private int ledgerLines;
+
+    private ConfigurableApplicationContext context;
+    private TrialBalanceService trialBalanceService;
+    private GeneralBalanceService generalBalanceService;
+    private IncomeStatementService incomeStatementService;
+    private SeniorAccountantsService seniorAccountantsService;
+    private ReportDataService reportDataService;
+    private AccountingPeriodService accountingPeriodService;
+    private ReportPdfGenerator reportPdfGenerator;
+    private CompanyEntity company;
+    private EntityManagerFactory entityManagerFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SyntheticLedger.start("bench_" + accounts + "_" + ledgerLines);
+        SyntheticLedger.seed(context.getBean(JdbcTemplate.class), accounts, ledgerLines);
+        SyntheticLedger.authenticate();
+
+        trialBalanceService = context.getBean(TrialBalanceService.class);
+        generalBalanceService = context.getBean(GeneralBalanceService.class);
+        incomeStatementService = context.getBean(IncomeStatementService.class);
+        seniorAccountantsService = context.getBean(SeniorAccountantsService.class);
+        reportDataService = context.getBean(ReportDataService.class);
+        accountingPeriodService = context.getBean(AccountingPeriodService.class);
+        reportPdfGenerator = context.getBean(ReportPdfGenerator.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+
+        company = new CompanyEntity();
+        company.setCompanyName("Empresa Benchmark");
+        company.setCompanyRTN("08011999000000");
+        company.setCompanyAddress("Tegucigalpa");
+        company.setTenantId(SyntheticLedger.TENANT_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TrialBalanceResponse trialBalance() {
+        return inRequest(trialBalanceService::getTrialBalance);
+    }
+
+    @Benchmark
+    public List<GeneralBalanceResponse> generalBalance() {
+        return inRequest(() -> generalBalanceService.getBalanceGeneral(SyntheticLedger.PERIOD_ID));
+    }
+
+    @Benchmark
+    public List<IncomeStatementResponse> incomeStatement() {
+        return inRequest(() -> incomeStatementService.getIncomeStatement(SyntheticLedger.PERIOD_ID));
+    }
+
+    @Benchmark
+    public List<SeniorAccountsResponse> seniorAccountants() {
+        return inRequest(seniorAccountantsService::getSeniorAccountants);
+    }
+
+    @Benchmark
+    public OutputStream reportPdf() {
+        return inRequest(() -> {
+            // Igual que el cierre: primero los datos del periodo y luego el PDF
+            ReportDataSnapshot reportData = reportDataService.buildSnapshot(accountingPeriodService.getActivePeriod());
+            OutputStream outputStream = OutputStream.nullOutputStream();
+            reportPdfGenerator.generateReportPdf(outputStream, company, reportData);
+            return outputStream;
+        });
+    }
+
+    // Igual que open-in-view en una peticion web: un EntityManager abierto durante toda la llamada
+    private <T> T inRequest(Supplier<T> call) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            return call.get();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+    }
+}
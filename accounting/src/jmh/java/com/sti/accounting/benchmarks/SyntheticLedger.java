@@ -0,0 +1,178 @@
+package com.sti.accounting.benchmarks;
+
+import com.sti.accounting.AccountingApplication;
+import com.sti.accounting.core.CustomUserDetails;
+import com.sti.accounting.core.SecurityUserDto;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tenant sintetico sobre H2 en modo MySQL: catalogo de cuentas con padres e hijas, un periodo activo,
+ * partidas confirmadas con su detalle, saldos de control y libro mayor materializado.
+ */
+final class SyntheticLedger {
+
+    static final String TENANT_ID = "bench-tenant";
+    static final long PERIOD_ID = 1L;
+
+    private static final LocalDate PERIOD_START = LocalDate.of(2024, 1, 1);
+    private static final int PERIOD_DAYS = 31;
+    private static final int BATCH_SIZE = 5_000;
+
+    private SyntheticLedger() {
+    }
+
+    // Se pasan como argumentos de linea de comando para que tengan prioridad sobre application.properties
+    static ConfigurableApplicationContext start(String databaseName) {
+        return new SpringApplicationBuilder(AccountingApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--app.ledger.backfill-on-startup=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN");
+    }
+
+    // AuthService lee el tenant del SecurityContext; en modo global lo ven todos los hilos de JMH
+    static void authenticate() {
+        SecurityUserDto user = new SecurityUserDto();
+        user.setId(1L);
+        user.setUserName("bench");
+        user.setGlobalRoles(List.of());
+        CustomUserDetails principal = new CustomUserDetails(user, TENANT_ID, List.of());
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    static void seed(JdbcTemplate jdbc, int accounts, int ledgerLines) {
+        registerMySqlFunctions(jdbc);
+        insertPeriod(jdbc);
+        insertTaxSettings(jdbc);
+        List<Long> postingAccounts = insertAccounts(jdbc, accounts);
+        insertLedger(jdbc, accounts, ledgerLines, postingAccounts);
+    }
+
+    // DATE_FORMAT de MySQL lo usa la consulta del libro mayor
+    public static String dateFormat(Timestamp value, String pattern) {
+        if (value == null) {
+            return null;
+        }
+        String javaPattern = pattern.replace("%Y", "yyyy").replace("%m", "MM").replace("%d", "dd");
+        return new SimpleDateFormat(javaPattern).format(value);
+    }
+
+    private static void registerMySqlFunctions(JdbcTemplate jdbc) {
+        jdbc.execute("CREATE ALIAS IF NOT EXISTS DATE_FORMAT FOR \"" + SyntheticLedger.class.getName() + ".dateFormat\"");
+    }
+
+    private static void insertPeriod(JdbcTemplate jdbc) {
+        jdbc.update("INSERT INTO accounting_period (id, period_name, closure_type, start_period, end_period, days_period, period_status, period_order, is_annual, tenant_id) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                PERIOD_ID, "Enero 2024", "Mensual", PERIOD_START.atStartOfDay(), PERIOD_START.plusDays(PERIOD_DAYS - 1L).atTime(23, 59, 59),
+                PERIOD_DAYS, "ACTIVE", 1, false, TENANT_ID);
+    }
+
+    // Tramos de ISR que usa el PDF; un solo tramo abierto cubre cualquier utilidad
+    private static void insertTaxSettings(JdbcTemplate jdbc) {
+        for (String type : List.of("Renta Gravable Mensual", "Renta Gravable Anual")) {
+            jdbc.update("INSERT INTO tax_settings (tax_rate, type, from_value, to_value, is_current, date, tenant_id) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    "25%", type, new BigDecimal("-999999999999"), null, true, PERIOD_START.atStartOfDay(), TENANT_ID);
+        }
+    }
+
+    // Un 10% de cuentas raiz (sin registro) y el resto hijas que reciben movimientos; mitad balance, mitad resultados
+    private static List<Long> insertAccounts(JdbcTemplate jdbc, int accounts) {
+        int roots = Math.max(accounts / 10, 2);
+        List<Object[]> accountRows = new ArrayList<>(accounts);
+        List<Object[]> balanceRows = new ArrayList<>(accounts);
+        List<Long> postingAccounts = new ArrayList<>(accounts - roots);
+        for (long id = 1; id <= accounts; id++) {
+            boolean root = id <= roots;
+            long rootId = root ? id : ((id - roots - 1) % roots) + 1;
+            long category = rootId % 2 == 1 ? 1L : 2L;
+            String typicalBalance = category == 1L ? "D" : "C";
+            String code = root ? String.valueOf(id) : rootId + "." + id;
+            accountRows.add(new Object[]{id, code, "Cuenta " + code, typicalBalance, !root, "ACTIVO", category,
+                    root ? null : rootId, 1 + (id % 7), TENANT_ID});
+            balanceRows.add(new Object[]{id, id, typicalBalance, BigDecimal.valueOf(id % 1000), true, TENANT_ID, PERIOD_START.atStartOfDay()});
+            if (!root) {
+                postingAccounts.add(id);
+            }
+        }
+        batch(jdbc, "INSERT INTO accounts (id, code, description, typical_balance, supports_registration, status, category_id, parent_id, account_type_id, tenant_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", accountRows);
+        batch(jdbc, "INSERT INTO balances (id, account_id, typical_balance, \"INITIAL BALANCE\", is_current, tenant_id, date) VALUES (?, ?, ?, ?, ?, ?, ?)", balanceRows);
+        return postingAccounts;
+    }
+
+    // Partidas de dos lineas en orden de fecha, asi el saldo acumulado del libro mayor se calcula en una pasada
+    private static void insertLedger(JdbcTemplate jdbc, int accounts, int ledgerLines, List<Long> postingAccounts) {
+        int transactions = Math.max(ledgerLines / 2, 1);
+        BigDecimal[] debits = new BigDecimal[accounts + 1];
+        BigDecimal[] credits = new BigDecimal[accounts + 1];
+        BigDecimal[] running = new BigDecimal[accounts + 1];
+
+        List<Object[]> transactionRows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> detailRows = new ArrayList<>(BATCH_SIZE * 2);
+        List<Object[]> ledgerRows = new ArrayList<>(BATCH_SIZE * 2);
+        for (long t = 1; t <= transactions; t++) {
+            LocalDate date = PERIOD_START.plusDays((t - 1) * PERIOD_DAYS / transactions);
+            BigDecimal amount = BigDecimal.valueOf(1 + (t % 1000), 0).setScale(2);
+            long debitAccount = postingAccounts.get((int) ((t * 7) % postingAccounts.size()));
+            long creditAccount = postingAccounts.get((int) ((t * 13 + 1) % postingAccounts.size()));
+
+            transactionRows.add(new Object[]{t, date.atStartOfDay(), date, "SUCCESS", "BENCH-" + t, BigDecimal.ONE, "Partida " + t, t, "L", 1L, PERIOD_ID, TENANT_ID});
+            detailRows.add(new Object[]{2 * t - 1, t, debitAccount, amount, "D"});
+            detailRows.add(new Object[]{2 * t, t, creditAccount, amount, "C"});
+
+            debits[(int) debitAccount] = add(debits[(int) debitAccount], amount);
+            running[(int) debitAccount] = add(running[(int) debitAccount], amount);
+            ledgerRows.add(new Object[]{2 * t - 1, debitAccount, PERIOD_ID, date, "TRANSACTION", t, t, amount, BigDecimal.ZERO, running[(int) debitAccount], TENANT_ID});
+            credits[(int) creditAccount] = add(credits[(int) creditAccount], amount);
+            running[(int) creditAccount] = add(running[(int) creditAccount], amount.negate());
+            ledgerRows.add(new Object[]{2 * t, creditAccount, PERIOD_ID, date, "TRANSACTION", t, t, BigDecimal.ZERO, amount, running[(int) creditAccount], TENANT_ID});
+
+            if (transactionRows.size() == BATCH_SIZE || t == transactions) {
+                jdbc.batchUpdate("INSERT INTO transactions (id, creation_date, date, status, reference, exchange_rate, description_pda, number_pda, currency, document_id, accounting_period_id, tenant_id) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", transactionRows);
+                jdbc.batchUpdate("INSERT INTO transaction_detail (id, transaction_id, account_id, amount, motion) VALUES (?, ?, ?, ?, ?)", detailRows);
+                jdbc.batchUpdate("INSERT INTO general_ledger_line (id, account_id, accounting_period_id, date, source_type, source_id, number_pda, debit, credit, running_balance, tenant_id) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", ledgerRows);
+                transactionRows.clear();
+                detailRows.clear();
+                ledgerRows.clear();
+            }
+        }
+
+        List<Object[]> balanceRows = new ArrayList<>();
+        for (int accountId = 1; accountId <= accounts; accountId++) {
+            if (debits[accountId] != null || credits[accountId] != null) {
+                balanceRows.add(new Object[]{accountId, PERIOD_ID, add(debits[accountId], BigDecimal.ZERO), add(credits[accountId], BigDecimal.ZERO), PERIOD_START, TENANT_ID});
+            }
+        }
+        batch(jdbc, "INSERT INTO control_account_balances (account_id, accounting_period_id, debit, credit, date, tenant_id) VALUES (?, ?, ?, ?, ?, ?)", balanceRows);
+    }
+
+    private static void batch(JdbcTemplate jdbc, String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbc.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    private static BigDecimal add(BigDecimal total, BigDecimal amount) {
+        return total == null ? amount : total.add(amount);
+    }
+}
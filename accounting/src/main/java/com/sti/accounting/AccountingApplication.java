@@ -16,7 +16,6 @@ import org.springframework.context.annotation.Bean;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Arrays;
@@ -69,50 +68,18 @@ public class AccountingApplication {
                 accountType.saveAll(accountsType);
 
 
-            createNumberPdaTrigger(dataSource);
+            dropNumberPdaTrigger(dataSource);
 
         };
     }
 
-    private void createNumberPdaTrigger(DataSource dataSource) {
-        String triggerCheckQuery = "SELECT COUNT(*) FROM information_schema.triggers WHERE trigger_name = 'INSERT_NUMBER_PDA'";
-
-        String createTriggerQuery =
-                "CREATE TRIGGER INSERT_NUMBER_PDA " +
-                        "BEFORE INSERT ON transactions " +
-                        "FOR EACH ROW " +
-                        "BEGIN " +
-                        "   DECLARE next_number INT; " +
-
-                        "   IF EXISTS (SELECT 1 FROM pda_sequence WHERE tenant_id = NEW.tenant_id) THEN " +
-                        "       SELECT last_number + 1 INTO next_number " +
-                        "       FROM pda_sequence " +
-                        "       WHERE tenant_id = NEW.tenant_id FOR UPDATE; " +
-
-                        "       SET NEW.number_pda = next_number; " +
-
-                        "       UPDATE pda_sequence " +
-                        "       SET last_number = next_number " +
-                        "       WHERE tenant_id = NEW.tenant_id; " +
-
-                        "   ELSE " +
-                        "       SET NEW.number_pda = 1; " +
-
-                        "       INSERT INTO pda_sequence (tenant_id, last_number) " +
-                        "       VALUES (NEW.tenant_id, 1); " +
-                        "   END IF; " +
-                        "END";
-
+    // La numeracion de PDA la asigna PdaSequenceService; el trigger serializaba cada insert del tenant
+    private void dropNumberPdaTrigger(DataSource dataSource) {
         try (Connection connection = dataSource.getConnection();
              Statement statement = connection.createStatement()) {
-
-            ResultSet resultSet = statement.executeQuery(triggerCheckQuery);
-            if (resultSet.next() && resultSet.getInt(1) == 0) {
-                statement.execute("DROP TRIGGER IF EXISTS INSERT_NUMBER_PDA"); //  por si hubo un intento fallido antes
-                statement.execute(createTriggerQuery);
-            }
+            statement.execute("DROP TRIGGER IF EXISTS INSERT_NUMBER_PDA");
         } catch (SQLException e) {
-            logger.error("error generated createNumberPdaTrigger:", e);
+            logger.error("error generated dropNumberPdaTrigger:", e);
         }
     }
 
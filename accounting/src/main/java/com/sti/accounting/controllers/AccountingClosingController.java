@@ -2,6 +2,7 @@ package com.sti.accounting.controllers;
 
 import com.sti.accounting.models.AccountingClosingResponse;
 import com.sti.accounting.services.AccountingClosingService;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -40,27 +41,21 @@ public class AccountingClosingController {
         }
     }
 
+    // El PDF se envia desde el almacen de reportes como stream; Spring atiende los encabezados Range (206)
     @GetMapping(value = "/{id}/download-pdf", produces = MediaType.APPLICATION_PDF_VALUE)
-    public ResponseEntity<byte[]> downloadPdf(@PathVariable Long id) {
-        // Obtener el cierre contable con el PDF generado
-        AccountingClosingResponse closingResponse = accountingClosingService.getAccountingClosingById(id);
-
-        // Obtener el PDF en formato byte[]
-        byte[] pdfData = closingResponse.getClosureReportPdf();
-
-        // Validar si el PDF existe
-        if (pdfData == null || pdfData.length == 0) {
-            return ResponseEntity.notFound().build();
-        }
+    public ResponseEntity<Resource> downloadPdf(@PathVariable Long id) {
+        AccountingClosingService.ClosingReport report = accountingClosingService.getClosingReport(id);
 
         // Configurar encabezados para la respuesta HTTP
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.setContentDispositionFormData("attachment", "closure-report-" + id + ".pdf");
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
 
         return ResponseEntity.ok()
                 .headers(headers)
-                .body(pdfData);
+                .eTag(report.hash())
+                .body(report.resource());
     }
 
     @PostMapping("/annual-close")
@@ -0,0 +1,23 @@
+package com.sti.accounting.controllers;
+
+import com.sti.accounting.services.CompanyService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/company")
+public class CompanyController {
+
+    private final CompanyService companyService;
+
+    public CompanyController(CompanyService companyService) {
+        this.companyService = companyService;
+    }
+
+    // Lo llama el servicio que administra las empresas despues de modificar la del tenant
+    @DeleteMapping("/cache")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void evictCompanyCache() {
+        companyService.evictCurrentCompany();
+    }
+}
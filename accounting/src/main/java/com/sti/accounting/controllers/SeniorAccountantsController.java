@@ -1,12 +1,18 @@
 package com.sti.accounting.controllers;
 
+import com.sti.accounting.models.GeneralLedgerLineResponse;
+import com.sti.accounting.models.KeysetPageResponse;
 import com.sti.accounting.models.SeniorAccountsResponse;
+import com.sti.accounting.services.GeneralLedgerService;
 import com.sti.accounting.services.SeniorAccountantsService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -14,13 +20,25 @@ import java.util.List;
 public class SeniorAccountantsController {
 
     private final SeniorAccountantsService seniorAccountantsService;
+    private final GeneralLedgerService generalLedgerService;
 
-    public SeniorAccountantsController(SeniorAccountantsService seniorAccountantsService) {
+    public SeniorAccountantsController(SeniorAccountantsService seniorAccountantsService, GeneralLedgerService generalLedgerService) {
         this.seniorAccountantsService = seniorAccountantsService;
+        this.generalLedgerService = generalLedgerService;
     }
 
     @GetMapping("")
-    public ResponseEntity<List<SeniorAccountsResponse>> getSeniorAccountants() {
-        return ResponseEntity.ok(seniorAccountantsService.getSeniorAccountants());
+    public ResponseEntity<List<SeniorAccountsResponse>> getSeniorAccountants(@RequestParam(required = false) String fromCode,
+                                                                             @RequestParam(required = false) String toCode) {
+        return ResponseEntity.ok(seniorAccountantsService.getSeniorAccountants(fromCode, toCode));
+    }
+
+    @GetMapping("/ledger/{accountId}")
+    public KeysetPageResponse<GeneralLedgerLineResponse> getLedgerPage(@PathVariable Long accountId,
+                                                                       @RequestParam(value = "periodId", required = false) Long periodId,
+                                                                       @RequestParam(value = "size", defaultValue = "100") int size,
+                                                                       @RequestParam(value = "afterDate", required = false) LocalDate afterDate,
+                                                                       @RequestParam(value = "afterId", required = false) Long afterId) {
+        return generalLedgerService.getLedgerPage(accountId, periodId, afterDate, afterId, size);
     }
 }
@@ -1,11 +1,15 @@
 package com.sti.accounting.controllers;
 
+import com.sti.accounting.models.KeysetPageResponse;
 import com.sti.accounting.models.TransactionRequest;
 import com.sti.accounting.models.TransactionResponse;
 import com.sti.accounting.services.TransactionService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -26,6 +30,20 @@ public class TransactionController {
         return transactionService.getAllTransaction();
     }
 
+    @GetMapping(params = "size")
+    public KeysetPageResponse<TransactionResponse> getTransactionPage(@RequestParam("size") int size,
+                                                                      @RequestParam(value = "afterDate", required = false) LocalDate afterDate,
+                                                                      @RequestParam(value = "afterId", required = false) Long afterId) {
+        return transactionService.getTransactionPage(afterDate, afterId, size);
+    }
+
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportTransactions() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(transactionService.exportTransactions());
+    }
+
     @GetMapping("/{id}")
     public TransactionResponse getTransactionById(@PathVariable("id") Long id) {
         return transactionService.getById(id);
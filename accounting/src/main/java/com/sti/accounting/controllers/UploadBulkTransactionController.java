@@ -1,13 +1,19 @@
 package com.sti.accounting.controllers;
 
+import com.sti.accounting.models.BulkImportJobResponse;
 import com.sti.accounting.models.BulkTransactionRequest;
 import com.sti.accounting.models.BulkTransactionResponse;
 import com.sti.accounting.models.UploadBulkTransactionResponse;
 import com.sti.accounting.services.BulkAccountConfigService;
+import com.sti.accounting.services.BulkImportJobService;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -16,9 +22,11 @@ import java.util.List;
 public class UploadBulkTransactionController {
 
     private final BulkAccountConfigService bulkAccountConfigService;
+    private final BulkImportJobService bulkImportJobService;
 
-    public UploadBulkTransactionController(BulkAccountConfigService bulkAccountConfigService) {
+    public UploadBulkTransactionController(BulkAccountConfigService bulkAccountConfigService, BulkImportJobService bulkImportJobService) {
         this.bulkAccountConfigService = bulkAccountConfigService;
+        this.bulkImportJobService = bulkImportJobService;
     }
 
     @PostMapping
@@ -26,6 +34,13 @@ public class UploadBulkTransactionController {
        return this.bulkAccountConfigService.excelToObject(file, idConfig);
     }
 
+    @PostMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> uploadBulkTransactionStream(@RequestPart("file") MultipartFile file, @RequestParam Long idConfig) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(this.bulkAccountConfigService.streamExcelRows(file, idConfig));
+    }
+
     @PostMapping("config")
     public BulkTransactionResponse createBulkTransaction(@RequestBody BulkTransactionRequest request) {
       return this.bulkAccountConfigService.createUploadBulkTransaction(request);
@@ -52,4 +67,19 @@ public class UploadBulkTransactionController {
         return this.bulkAccountConfigService.saveTransactionsUpload(request);
     }
 
+    @PostMapping("jobs")
+    public ResponseEntity<BulkImportJobResponse> submitImportJob(@RequestBody UploadBulkTransactionResponse request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(this.bulkImportJobService.submit(request));
+    }
+
+    @PostMapping("jobs/file")
+    public ResponseEntity<BulkImportJobResponse> submitImportJobFile(@RequestPart("file") MultipartFile file, @RequestParam Long idConfig) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(this.bulkImportJobService.submitFile(file, idConfig));
+    }
+
+    @GetMapping("jobs/{id}")
+    public BulkImportJobResponse getImportJob(@PathVariable("id") Long id) {
+        return this.bulkImportJobService.getJob(id);
+    }
+
 }
@@ -4,10 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.JdbcTypeCode;
 
 import java.math.BigDecimal;
-import java.sql.Types;
 import java.time.LocalDateTime;
 
 @Entity
@@ -49,10 +47,13 @@ public class AccountingClosingEntity {
     @Column(name = "NET_INCOME")
     private BigDecimal netIncome;
 
-    @Lob
-    @JdbcTypeCode(Types.LONGVARBINARY)
-    @Column(name = "CLOSURE_REPORT_PDF", columnDefinition = "LONGBLOB")
-    private byte[] closureReportPdf;
+    // El PDF vive en ReportStorageService; aqui solo su hash y tamano. La columna CLOSURE_REPORT_PDF queda para
+    // cierres anteriores y se migra al almacen en la primera descarga.
+    @Column(name = "REPORT_HASH", length = 64)
+    private String reportHash;
+
+    @Column(name = "REPORT_SIZE")
+    private Long reportSize;
 
     @Column(name = "TENANT_ID")
     private String tenantId;
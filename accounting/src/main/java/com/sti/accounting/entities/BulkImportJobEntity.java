@@ -0,0 +1,83 @@
+package com.sti.accounting.entities;
+
+import com.sti.accounting.utils.BulkImportJobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "bulk_import_job", indexes = @Index(name = "IDX_BULK_IMPORT_JOB_STATUS", columnList = "STATUS"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportJobEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUS", nullable = false)
+    private BulkImportJobStatus status;
+
+    @Column(name = "TYPE_TRANSACTION")
+    private Long typeTransaction;
+
+    @Column(name = "ACCOUNTING_PERIOD_ID", nullable = false)
+    private Long accountingPeriodId;
+
+    @Column(name = "TOTAL_ROWS")
+    private Integer totalRows;
+
+    @Column(name = "PROCESSED_ROWS")
+    private Integer processedRows;
+
+    @Column(name = "ERROR_ROWS")
+    private Integer errorRows;
+
+    // Punto de control: bloques ya confirmados, al reanudar se continua desde aqui
+    @Column(name = "COMMITTED_CHUNKS")
+    private Integer committedChunks;
+
+    @Column(name = "CHUNK_SIZE")
+    private Integer chunkSize;
+
+    // Filas a importar en JSON (UploadBulkTransactionResponse)
+    @Lob
+    @Column(name = "PAYLOAD", columnDefinition = "LONGTEXT")
+    private String payload;
+
+    // Filas con error en JSON
+    @Lob
+    @Column(name = "ERRORS", columnDefinition = "LONGTEXT")
+    private String errors;
+
+    @Column(name = "MESSAGE", columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "NODE_ID")
+    private String nodeId;
+
+    @Column(name = "HEARTBEAT")
+    private LocalDateTime heartbeat;
+
+    @CreationTimestamp
+    @Column(name = "CREATE_AT")
+    private LocalDateTime createAt;
+
+    @Column(name = "STARTED_AT")
+    private LocalDateTime startedAt;
+
+    @Column(name = "FINISHED_AT")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "TENANT_ID", nullable = false)
+    private String tenantId;
+
+    @Column(name = "CREATED_BY")
+    private String createdBy;
+}
@@ -9,7 +9,8 @@ import java.time.LocalDate;
 
 
 @Entity
-@Table(name = "control_account_balances")
+@Table(name = "control_account_balances",
+        uniqueConstraints = @UniqueConstraint(name = "UK_CONTROL_BALANCE_ACCOUNT_PERIOD", columnNames = {"ACCOUNT_ID", "ACCOUNTING_PERIOD_ID", "TENANT_ID"}))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
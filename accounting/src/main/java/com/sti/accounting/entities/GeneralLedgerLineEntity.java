@@ -0,0 +1,59 @@
+package com.sti.accounting.entities;
+
+import com.sti.accounting.utils.LedgerSourceType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Linea del libro mayor mantenida por el motor de posteo. RUNNING_BALANCE es el saldo deudor (debe - haber)
+ * acumulado de la cuenta en el periodo hasta esta linea, en orden (fecha, id).
+ */
+@Entity
+@Table(name = "general_ledger_line",
+        indexes = {
+                @Index(name = "IDX_GENERAL_LEDGER_TENANT_PERIOD_ACCOUNT_DATE", columnList = "TENANT_ID, ACCOUNTING_PERIOD_ID, ACCOUNT_ID, DATE, id"),
+                @Index(name = "IDX_GENERAL_LEDGER_SOURCE", columnList = "SOURCE_TYPE, SOURCE_ID")
+        })
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GeneralLedgerLineEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "ACCOUNT_ID", nullable = false)
+    private Long accountId;
+
+    @Column(name = "ACCOUNTING_PERIOD_ID", nullable = false)
+    private Long accountingPeriodId;
+
+    @Column(name = "DATE")
+    private LocalDate date;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "SOURCE_TYPE")
+    private LedgerSourceType sourceType;
+
+    @Column(name = "SOURCE_ID")
+    private Long sourceId;
+
+    @Column(name = "NUMBER_PDA")
+    private Long numberPda;
+
+    @Column(name = "DEBIT")
+    private BigDecimal debit;
+
+    @Column(name = "CREDIT")
+    private BigDecimal credit;
+
+    @Column(name = "RUNNING_BALANCE")
+    private BigDecimal runningBalance;
+
+    @Column(name = "TENANT_ID", nullable = false)
+    private String tenantId;
+}
@@ -14,7 +14,10 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "IDX_TRANSACTIONS_TENANT_DATE", columnList = "TENANT_ID, DATE, id"),
+        @Index(name = "IDX_TRANSACTIONS_TENANT_REFERENCE", columnList = "TENANT_ID, REFERENCE")
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -0,0 +1,55 @@
+package com.sti.accounting.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "trial_balance_snapshot",
+        uniqueConstraints = @UniqueConstraint(name = "UK_SNAPSHOT_PERIOD_ACCOUNT", columnNames = {"ACCOUNTING_PERIOD_ID", "ACCOUNT_ID", "TENANT_ID"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrialBalanceSnapshotEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "ACCOUNTING_PERIOD_ID", nullable = false)
+    private AccountingPeriodEntity accountingPeriod;
+
+    @Column(name = "ACCOUNT_ID", nullable = false)
+    private Long accountId;
+
+    @Column(name = "INITIAL_DEBIT")
+    private BigDecimal initialDebit;
+
+    @Column(name = "INITIAL_CREDIT")
+    private BigDecimal initialCredit;
+
+    @Column(name = "PERIOD_DEBIT")
+    private BigDecimal periodDebit;
+
+    @Column(name = "PERIOD_CREDIT")
+    private BigDecimal periodCredit;
+
+    @Column(name = "FINAL_DEBIT")
+    private BigDecimal finalDebit;
+
+    @Column(name = "FINAL_CREDIT")
+    private BigDecimal finalCredit;
+
+    @CreationTimestamp
+    @Column(name = "CREATE_AT")
+    private LocalDateTime createAt;
+
+    @Column(name = "TENANT_ID", nullable = false)
+    private String tenantId;
+}
@@ -3,8 +3,7 @@ package com.sti.accounting.filters;
 import com.sti.accounting.core.CompanyDto;
 import com.sti.accounting.core.CustomUserDetails;
 import com.sti.accounting.core.SecurityUserDto;
-import com.sti.accounting.entities.CompanyEntity;
-import com.sti.accounting.repositories.ICompanyRepository;
+import com.sti.accounting.services.CompanyService;
 import com.sti.accounting.services.JwtService;
 
 import jakarta.servlet.FilterChain;
@@ -22,7 +21,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.LocalDate;
 import java.util.List;
 
 @Component
@@ -31,11 +29,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
     private final JwtService jwtService;
-    private final ICompanyRepository companyRepository;
+    private final CompanyService companyService;
 
-    public JwtAuthenticationFilter(JwtService jwtService, ICompanyRepository companyRepository) {
+    public JwtAuthenticationFilter(JwtService jwtService, CompanyService companyService) {
         this.jwtService = jwtService;
-        this.companyRepository = companyRepository;
+        this.companyService = companyService;
     }
 
     @Override
@@ -143,24 +141,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     }
 
     public CompanyDto getCompanyByTennatId(String tennatId) {
-
-        CompanyEntity companyEntity = companyRepository.findByTenantId(tennatId);
-        CompanyDto companyDto= null;
-        if (companyEntity != null){
-            companyDto = new CompanyDto();
-            companyDto.setId(companyEntity.getId());
-            companyDto.setName(companyEntity.getCompanyName());
-            companyDto.setDescription(companyEntity.getCompanyDescription());
-            companyDto.setTenantId(companyEntity.getTenantId());
-            companyDto.setActive(companyEntity.getIsActive());
-            companyDto.setEmail(companyEntity.getCompanyEmail());
-            companyDto.setCreatedAt(LocalDate.from(companyEntity.getCreatedAt()));
-            companyDto.setPhone(companyEntity.getCompanyPhone());
-            companyDto.setRtn(companyEntity.getCompanyRTN());
-            companyDto.setWebsite(companyEntity.getCompanyWebsite());
-            companyDto.setType(String.valueOf(companyEntity.getType()));
-
-        }
-        return companyDto;
+        return companyService.getCompanyByTenantId(tennatId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package com.sti.accounting.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountMovementSummary {
+
+    private Long accountId;
+    private LocalDate createAtDate;
+    private BigDecimal debit;
+    private BigDecimal credit;
+
+    // Movimientos sumados solo por cuenta, sin fecha
+    public AccountMovementSummary(Long accountId, BigDecimal debit, BigDecimal credit) {
+        this(accountId, null, debit, credit);
+    }
+}
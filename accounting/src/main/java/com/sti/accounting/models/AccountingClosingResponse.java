@@ -24,6 +24,7 @@ public class AccountingClosingResponse {
     private BigDecimal totalIncome;
     private BigDecimal totalExpenses;
     private BigDecimal netIncome;
-    private byte[] closureReportPdf;
+    private String reportHash;
+    private Long reportSize;
 
 }
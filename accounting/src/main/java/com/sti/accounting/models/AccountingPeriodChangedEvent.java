@@ -0,0 +1,14 @@
+package com.sti.accounting.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Se publica cuando cambian los periodos contables de un tenant (creacion, cambio de estado, cierre o borrado).
+ */
+@Data
+@AllArgsConstructor
+public class AccountingPeriodChangedEvent {
+
+    private String tenantId;
+}
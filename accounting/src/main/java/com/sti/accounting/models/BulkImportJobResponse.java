@@ -0,0 +1,39 @@
+package com.sti.accounting.models;
+
+import com.sti.accounting.utils.BulkImportJobStatus;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class BulkImportJobResponse {
+
+    private Long id;
+
+    private BulkImportJobStatus status;
+
+    private Long typeTransaction;
+
+    private Integer totalRows;
+
+    private Integer processedRows;
+
+    private Integer errorRows;
+
+    private Integer committedChunks;
+
+    // Filas confirmadas por segundo desde el inicio del trabajo
+    private BigDecimal rowsPerSecond;
+
+    private String message;
+
+    private List<UploadBulkTransaction> errors;
+
+    private LocalDateTime createAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+}
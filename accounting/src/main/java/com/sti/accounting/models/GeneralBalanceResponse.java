@@ -11,7 +11,10 @@ public class GeneralBalanceResponse {
     private String accountName;
     private Long parentId;
     private String category;
+    private String typicalBalance;
     private BigDecimal balance;
     private Boolean root;
+    // Saldo de la cuenta mas el de todas sus subcuentas
+    private BigDecimal subtotal;
 
 }
@@ -0,0 +1,24 @@
+package com.sti.accounting.models;
+
+import com.sti.accounting.utils.LedgerSourceType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GeneralLedgerLineResponse {
+
+    private Long id;
+    private LocalDate date;
+    private LedgerSourceType sourceType;
+    private Long sourceId;
+    private Long numberPda;
+    private BigDecimal debitAmount;
+    private BigDecimal creditAmount;
+    private BigDecimal balance;
+}
@@ -11,10 +11,13 @@ public class IncomeStatementResponse {
     private Long id;
     private String category;
     private String accountParent;
+    private Long parentId;
     private String typicalBalance;
     private String account;
     private BigDecimal amount;
     private Date date;
+    // Monto de la cuenta mas el de todas sus subcuentas
+    private BigDecimal subtotal;
 
 }
 
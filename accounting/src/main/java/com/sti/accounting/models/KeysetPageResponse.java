@@ -0,0 +1,23 @@
+package com.sti.accounting.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Pagina por llave (fecha, id). Para pedir la siguiente pagina se envian nextDate y nextId
+ * como afterDate y afterId.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeysetPageResponse<T> {
+
+    private List<T> content;
+    private LocalDate nextDate;
+    private Long nextId;
+    private boolean hasNext;
+}
@@ -0,0 +1,29 @@
+package com.sti.accounting.models;
+
+import com.sti.accounting.utils.LedgerSourceType;
+import com.sti.accounting.utils.Motion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Linea contable comun a partidas, ajustes, notas de credito y notas de debito, es la unidad que se postea
+ * a los saldos de control.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerLine {
+
+    private Long accountId;
+    private Motion motion;
+    private BigDecimal amount;
+    private Long periodId;
+    private LocalDate date;
+    private LedgerSourceType sourceType;
+    private Long sourceId;
+    private Long numberPda;
+}
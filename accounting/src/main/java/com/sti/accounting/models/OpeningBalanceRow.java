@@ -0,0 +1,17 @@
+package com.sti.accounting.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OpeningBalanceRow {
+
+    private Long accountId;
+    private String typicalBalance;
+    private BigDecimal initialBalance;
+}
@@ -0,0 +1,18 @@
+package com.sti.accounting.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PeriodMovementSummary {
+
+    private Long accountingPeriodId;
+    private Long accountId;
+    private BigDecimal debit;
+    private BigDecimal credit;
+}
@@ -0,0 +1,29 @@
+package com.sti.accounting.models;
+
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Datos de un periodo para el reporte de cierre: balance general, estado de resultados y sus totales. Se arma una
+ * sola vez por cierre y lo comparten las secciones del PDF y el registro de cierre.
+ */
+@Data
+public class ReportDataSnapshot {
+
+    private AccountingPeriodEntity period;
+    private List<GeneralBalanceResponse> generalBalance;
+    private List<IncomeStatementResponse> incomeStatement;
+    private BigDecimal totalAssets;
+    private BigDecimal totalLiabilities;
+    private BigDecimal totalCapital;
+    private BigDecimal totalIncome;
+    private BigDecimal totalExpenses;
+    private BigDecimal netIncome;
+
+    public String getPeriodRange() {
+        return period.getStartPeriod().toLocalDate() + " al " + period.getEndPeriod().toLocalDate();
+    }
+}
@@ -10,10 +10,10 @@ import com.itextpdf.layout.*;
 import com.itextpdf.layout.borders.Border;
 import com.itextpdf.layout.element.*;
 import com.itextpdf.layout.properties.*;
-import com.sti.accounting.entities.AccountingPeriodEntity;
 import com.sti.accounting.entities.CompanyEntity;
 import com.sti.accounting.models.GeneralBalanceResponse;
 import com.sti.accounting.models.IncomeStatementResponse;
+import com.sti.accounting.models.ReportDataSnapshot;
 import com.sti.accounting.models.TrialBalanceResponse;
 import com.sti.accounting.services.*;
 import com.sti.accounting.utils.IncomeStatementCalculator;
@@ -23,8 +23,8 @@ import org.springframework.stereotype.Component;
 import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.net.MalformedURLException;
 import java.text.NumberFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -32,45 +32,39 @@ import java.util.Map;
 @Component
 public class ReportPdfGenerator {
 
-    private final GeneralBalanceService generalBalanceService;
-    private final IncomeStatementService incomeStatementService;
+    // Cuentas que se acumulan en la tabla de la balanza antes de vaciarla al documento
+    private static final int TRIAL_BALANCE_FLUSH_ROWS = 100;
+
     private final TrialBalanceService trialBalanceService;
-    private final AccountingPeriodService accountingPeriodService;
     private final TaxSettingsService taxSettingsService;
 
-    public ReportPdfGenerator(GeneralBalanceService generalBalanceService,
-                              IncomeStatementService incomeStatementService,
-                              TrialBalanceService trialBalanceService,
-                              AccountingPeriodService accountingPeriodService, TaxSettingsService taxSettingsService) {
-        this.generalBalanceService = generalBalanceService;
-        this.incomeStatementService = incomeStatementService;
+    public ReportPdfGenerator(TrialBalanceService trialBalanceService, TaxSettingsService taxSettingsService) {
         this.trialBalanceService = trialBalanceService;
-        this.accountingPeriodService = accountingPeriodService;
         this.taxSettingsService = taxSettingsService;
     }
 
     /**
      * Método principal que genera el PDF completo con todas las secciones del reporte.
      */
-    public void generateReportPdf(OutputStream outputStream, CompanyEntity company) throws MalformedURLException {
+    public void generateReportPdf(OutputStream outputStream, CompanyEntity company, ReportDataSnapshot reportData) {
         PdfWriter writer = new PdfWriter(outputStream);
         PdfDocument pdfDoc = new PdfDocument(writer);
         pdfDoc.setDefaultPageSize(PageSize.A4.rotate());
         Document document = new Document(pdfDoc);
 
         // 1. Sección de "Reportes Financieros"
-        addFinancialReportHeader(document, "Reportes Financieros", false, company);
+        addFinancialReportHeader(document, "Reportes Financieros", reportData.getPeriodRange(), company);
 
         // 2. Sección de "Balanza de Comprobación"
-        generateTrialBalanceSection(document);
+        generateTrialBalanceSection(document, reportData);
 
         // 3. Sección de "Balance General"
         document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
-        generateBalanceSection(document, company);
+        generateBalanceSection(document, company, reportData);
 
         // 4. Sección de "Estado de Resultados"
         document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
-        generateIncomeStatementSection(document, company);
+        generateIncomeStatementSection(document, company, reportData);
 
         document.close();
     }
@@ -78,16 +72,7 @@ public class ReportPdfGenerator {
     /**
      * Agrega el encabezado principal reutilizable con texto personalizado.
      */
-    private void addFinancialReportHeader(Document document, String reportTitle, boolean isAnnual, CompanyEntity company) throws MalformedURLException {
-        String periodRange;
-
-        if (isAnnual) {
-            periodRange = accountingPeriodService.getAnnualPeriod().getStartPeriod().toLocalDate() +
-                    " al " + accountingPeriodService.getAnnualPeriod().getEndPeriod().toLocalDate();
-        } else {
-            periodRange = accountingPeriodService.getActivePeriod().getStartPeriod().toLocalDate() +
-                    " al " + accountingPeriodService.getActivePeriod().getEndPeriod().toLocalDate();
-        }
+    private void addFinancialReportHeader(Document document, String reportTitle, String periodRange, CompanyEntity company) {
         // Crear la imagen a partir del logo en bytes
 //        Image logo = null;
 //        if (company.getCompanyLogo() != null) {
@@ -131,7 +116,7 @@ public class ReportPdfGenerator {
     /**
      * Genera la sección "Balanza de Comprobación".
      */
-    private void generateTrialBalanceSection(Document document) {
+    private void generateTrialBalanceSection(Document document, ReportDataSnapshot reportData) {
         document.add(new Paragraph("\nBalanza de Comprobación")
                 .setTextAlignment(TextAlignment.CENTER)
                 .setBold()
@@ -140,23 +125,25 @@ public class ReportPdfGenerator {
         // Agregar dos espacios entre el título y la tabla
         document.add(new Paragraph("\n"));
 
-        // Obtener rango de fechas del período activo
-        String periodRange = accountingPeriodService.getActivePeriod().getStartPeriod().toLocalDate() +
-                " al " + accountingPeriodService.getActivePeriod().getEndPeriod().toLocalDate();
-
-        // Obtener los datos de la balanza de comprobación
-        TrialBalanceResponse trialBalance = trialBalanceService.getTrialBalancePdf();
+        // Las filas se calculan mientras se escriben, la balanza no se arma completa en memoria
+        addTrialBalanceTable(document, reportData.getPeriodRange(), trialBalanceService.getTrialBalancePdfRows(reportData.getPeriod()));
+    }
 
-        // Usar contenedores mutables para los totales
-        BigDecimal[] totalInitialDebit = {BigDecimal.ZERO};
-        BigDecimal[] totalInitialCredit = {BigDecimal.ZERO};
-        BigDecimal[] totalPeriodDebit = {BigDecimal.ZERO};
-        BigDecimal[] totalPeriodCredit = {BigDecimal.ZERO};
-        BigDecimal[] totalFinalDebit = {BigDecimal.ZERO};
-        BigDecimal[] totalFinalCredit = {BigDecimal.ZERO};
+    /**
+     * Escribe la tabla de la balanza en modo tabla grande: las filas se vacian al documento cada
+     * {@link #TRIAL_BALANCE_FLUSH_ROWS} cuentas, asi la memoria no depende del tamaño del catalogo.
+     * Los totales van en la ultima fila porque solo se conocen al terminar de recorrer las cuentas.
+     */
+    private void addTrialBalanceTable(Document document, String periodRange, Iterator<TrialBalanceResponse.AccountBalance> rows) {
+        BigDecimal totalInitialDebit = BigDecimal.ZERO;
+        BigDecimal totalInitialCredit = BigDecimal.ZERO;
+        BigDecimal totalPeriodDebit = BigDecimal.ZERO;
+        BigDecimal totalPeriodCredit = BigDecimal.ZERO;
+        BigDecimal totalFinalDebit = BigDecimal.ZERO;
+        BigDecimal totalFinalCredit = BigDecimal.ZERO;
 
         // Crear una tabla con estructura adecuada: 7 columnas totales
-        Table table = new Table(UnitValue.createPercentArray(new float[]{3, 2, 2, 2, 2, 2, 2}))
+        Table table = new Table(UnitValue.createPercentArray(new float[]{3, 2, 2, 2, 2, 2, 2}), true)
                 .useAllAvailableWidth();
 
         // Encabezados principales
@@ -173,8 +160,12 @@ public class ReportPdfGenerator {
         table.addHeaderCell(createSubHeaderCell("Debe"));
         table.addHeaderCell(createSubHeaderCell("Haber"));
 
-        // Llenar las filas de la tabla con los datos
-        trialBalance.getPeriods().forEach(period -> period.getAccountBalances().forEach(account -> {
+        // La tabla grande se agrega antes de llenarla para poder vaciarla por partes
+        document.add(table);
+
+        int rowCount = 0;
+        while (rows.hasNext()) {
+            TrialBalanceResponse.AccountBalance account = rows.next();
             TrialBalanceResponse.InitialBalance initialBalance = account.getInitialBalance().getFirst();
             TrialBalanceResponse.BalancePeriod balancePeriod = account.getBalancePeriod().getFirst();
             TrialBalanceResponse.FinalBalance finalBalance = account.getFinalBalance().getFirst();
@@ -188,34 +179,36 @@ public class ReportPdfGenerator {
             table.addCell(createCell(formatCurrency(finalBalance.getDebit())));
             table.addCell(createCell(formatCurrency(finalBalance.getCredit())));
 
-            // Sumar a los totales utilizando índices del arreglo
-            totalInitialDebit[0] = totalInitialDebit[0].add(initialBalance.getDebit());
-            totalInitialCredit[0] = totalInitialCredit[0].add(initialBalance.getCredit());
-            totalPeriodDebit[0] = totalPeriodDebit[0].add(balancePeriod.getDebit());
-            totalPeriodCredit[0] = totalPeriodCredit[0].add(balancePeriod.getCredit());
-            totalFinalDebit[0] = totalFinalDebit[0].add(finalBalance.getDebit());
-            totalFinalCredit[0] = totalFinalCredit[0].add(finalBalance.getCredit());
-        }));
+            totalInitialDebit = totalInitialDebit.add(initialBalance.getDebit());
+            totalInitialCredit = totalInitialCredit.add(initialBalance.getCredit());
+            totalPeriodDebit = totalPeriodDebit.add(balancePeriod.getDebit());
+            totalPeriodCredit = totalPeriodCredit.add(balancePeriod.getCredit());
+            totalFinalDebit = totalFinalDebit.add(finalBalance.getDebit());
+            totalFinalCredit = totalFinalCredit.add(finalBalance.getCredit());
+
+            if (++rowCount % TRIAL_BALANCE_FLUSH_ROWS == 0) {
+                table.flush();
+            }
+        }
 
         // Agregar los totales al final de la tabla
-        table.addFooterCell(createFooterCell("Totales"));
-        table.addFooterCell(createFooterCell(formatCurrency(totalInitialDebit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalInitialCredit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalPeriodDebit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalPeriodCredit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalFinalDebit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalFinalCredit[0])));
-
-        // Añadir la tabla al documento
-        document.add(table);
+        table.addCell(createFooterCell("Totales"));
+        table.addCell(createFooterCell(formatCurrency(totalInitialDebit)));
+        table.addCell(createFooterCell(formatCurrency(totalInitialCredit)));
+        table.addCell(createFooterCell(formatCurrency(totalPeriodDebit)));
+        table.addCell(createFooterCell(formatCurrency(totalPeriodCredit)));
+        table.addCell(createFooterCell(formatCurrency(totalFinalDebit)));
+        table.addCell(createFooterCell(formatCurrency(totalFinalCredit)));
+
+        table.complete();
     }
 
     /**
      * Genera la sección del "Balance General".
      */
-    private void generateBalanceSection(Document document, CompanyEntity company) throws MalformedURLException {
+    private void generateBalanceSection(Document document, CompanyEntity company, ReportDataSnapshot reportData) {
         // Agregar encabezado reutilizando addFinancialReportHeader con texto personalizado
-        addFinancialReportHeader(document, "Balance General", false, company);
+        addFinancialReportHeader(document, "Balance General", reportData.getPeriodRange(), company);
 
         // Definir colores
         Color headerColor = new DeviceRgb(7, 43, 84); // Azul oscuro para encabezados
@@ -223,7 +216,7 @@ public class ReportPdfGenerator {
         Color totalColor = new DeviceRgb(240, 248, 255); // Color para totales (mismo que en balanza de comprobación)
 
         // Obtener datos del Balance General
-        List<GeneralBalanceResponse> balances = generalBalanceService.getBalanceGeneral(accountingPeriodService.getActivePeriod().getId());
+        List<GeneralBalanceResponse> balances = reportData.getGeneralBalance();
 
         // Variables para totales
         BigDecimal totalActivosCorrientes = BigDecimal.ZERO;
@@ -304,15 +297,13 @@ public class ReportPdfGenerator {
         document.add(layoutTable);
     }
 
-    private void generateIncomeStatementSection(Document document, CompanyEntity company) throws MalformedURLException {
-        addFinancialReportHeader(document, "Estado de Resultados", false, company);
+    private void generateIncomeStatementSection(Document document, CompanyEntity company, ReportDataSnapshot reportData) {
+        addFinancialReportHeader(document, "Estado de Resultados", reportData.getPeriodRange(), company);
 
         Color headerColor = new DeviceRgb(7, 43, 84);
         Color totalColor = new DeviceRgb(240, 248, 255);
 
-        List<IncomeStatementResponse> incomeStatement = incomeStatementService.getIncomeStatement(
-                accountingPeriodService.getActivePeriod().getId()
-        );
+        List<IncomeStatementResponse> incomeStatement = reportData.getIncomeStatement();
 
         Table incomeStatementTable = new Table(UnitValue.createPercentArray(new float[]{4, 2})).useAllAvailableWidth();
         setupTableHeader(incomeStatementTable, headerColor);
@@ -514,30 +505,30 @@ public class ReportPdfGenerator {
     }
 
     //CIERRE ANUAL
-    public void generateAnnualReportPdf(OutputStream outputStream, List<AccountingPeriodEntity> yearPeriods, CompanyEntity company) throws MalformedURLException {
+    public void generateAnnualReportPdf(OutputStream outputStream, CompanyEntity company, ReportDataSnapshot annualData) {
         PdfWriter writer = new PdfWriter(outputStream);
         PdfDocument pdfDoc = new PdfDocument(writer);
         pdfDoc.setDefaultPageSize(PageSize.A4.rotate());
         Document document = new Document(pdfDoc);
 
         // Agregar encabezado
-        addFinancialReportHeader(document, "Resumen Anual", true, company);
+        addFinancialReportHeader(document, "Resumen Anual", annualData.getPeriodRange(), company);
 
         // Generar la sección de Balanza de Comprobación
-        generateTrialBalanceSectionAnnual(document);
+        generateTrialBalanceSectionAnnual(document, annualData);
 
         // Generar la sección de Balance General
         document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
-        generateBalanceSectionAnnual(document, company);
+        generateBalanceSectionAnnual(document, company, annualData);
 
         // Generar la sección de Estado de Resultados
         document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
-        generateIncomeStatementSectionAnnual(document, company);
+        generateIncomeStatementSectionAnnual(document, company, annualData);
 
         document.close();
     }
 
-    private void generateTrialBalanceSectionAnnual(Document document) {
+    private void generateTrialBalanceSectionAnnual(Document document, ReportDataSnapshot annualData) {
         document.add(new Paragraph("\nBalanza de Comprobación")
                 .setTextAlignment(TextAlignment.CENTER)
                 .setBold()
@@ -546,82 +537,16 @@ public class ReportPdfGenerator {
         // Agregar dos espacios entre el título y la tabla
         document.add(new Paragraph("\n"));
 
-        // Obtener rango de fechas del período activo
-        String periodRange = accountingPeriodService.getAnnualPeriod().getStartPeriod().toLocalDate() +
-                " al " + accountingPeriodService.getAnnualPeriod().getEndPeriod().toLocalDate();
-
         // Obtener los datos de la balanza de comprobación para el año completo
-        TrialBalanceResponse trialBalance = trialBalanceService.getAllTrialBalances();
-
-        // Usar contenedores mutables para los totales
-        BigDecimal[] totalInitialDebit = {BigDecimal.ZERO};
-        BigDecimal[] totalInitialCredit = {BigDecimal.ZERO};
-        BigDecimal[] totalPeriodDebit = {BigDecimal.ZERO};
-        BigDecimal[] totalPeriodCredit = {BigDecimal.ZERO};
-        BigDecimal[] totalFinalDebit = {BigDecimal.ZERO};
-        BigDecimal[] totalFinalCredit = {BigDecimal.ZERO};
-
-        // Crear una tabla con estructura adecuada: 7 columnas totales
-        Table table = new Table(UnitValue.createPercentArray(new float[]{3, 2, 2, 2, 2, 2, 2}))
-                .useAllAvailableWidth();
-
-        // Encabezados principales
-        table.addHeaderCell(createHeaderCell("Cuenta", 1, 2)); // Celda de "Cuenta"
-        table.addHeaderCell(createHeaderCell("Balance Inicial", 2, 1)); // Celda fusionada de "Balance Inicial"
-        table.addHeaderCell(createHeaderCell(periodRange, 2, 1));
-        table.addHeaderCell(createHeaderCell("Balance Final", 2, 1)); // Celda fusionada de "Balance Final"
-
-        // Subencabezados para cada sección
-        table.addHeaderCell(createSubHeaderCell("Debe"));
-        table.addHeaderCell(createSubHeaderCell("Haber"));
-        table.addHeaderCell(createSubHeaderCell("Debe"));
-        table.addHeaderCell(createSubHeaderCell("Haber"));
-        table.addHeaderCell(createSubHeaderCell("Debe"));
-        table.addHeaderCell(createSubHeaderCell("Haber"));
-
-        // Llenar las filas de la tabla con los datos
-        trialBalance.getPeriods().forEach(period -> period.getAccountBalances().forEach(account -> {
-            TrialBalanceResponse.InitialBalance initialBalance = account.getInitialBalance().getFirst();
-            TrialBalanceResponse.BalancePeriod balancePeriod = account.getBalancePeriod().getFirst();
-            TrialBalanceResponse.FinalBalance finalBalance = account.getFinalBalance().getFirst();
-
-            // Alinear la columna de cuentas a la izquierda
-            table.addCell(createCell(account.getName()).setTextAlignment(TextAlignment.LEFT));
-            table.addCell(createCell(formatCurrency(initialBalance.getDebit())));
-            table.addCell(createCell(formatCurrency(initialBalance.getCredit())));
-            table.addCell(createCell(formatCurrency(balancePeriod.getDebit())));
-            table.addCell(createCell(formatCurrency(balancePeriod.getCredit())));
-            table.addCell(createCell(formatCurrency(finalBalance.getDebit())));
-            table.addCell(createCell(formatCurrency(finalBalance.getCredit())));
-
-            // Sumar a los totales utilizando índices del arreglo
-            totalInitialDebit[0] = totalInitialDebit[0].add(initialBalance.getDebit());
-            totalInitialCredit[0] = totalInitialCredit[0].add(initialBalance.getCredit());
-            totalPeriodDebit[0] = totalPeriodDebit[0].add(balancePeriod.getDebit());
-            totalPeriodCredit[0] = totalPeriodCredit[0].add(balancePeriod.getCredit());
-            totalFinalDebit[0] = totalFinalDebit[0].add(finalBalance.getDebit());
-            totalFinalCredit[0] = totalFinalCredit[0].add(finalBalance.getCredit());
-        }));
-
-        // Agregar los totales al final de la tabla
-        table.addFooterCell(createFooterCell("Totales"));
-        table.addFooterCell(createFooterCell(formatCurrency(totalInitialDebit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalInitialCredit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalPeriodDebit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalPeriodCredit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalFinalDebit[0])));
-        table.addFooterCell(createFooterCell(formatCurrency(totalFinalCredit[0])));
-
-        // Añadir la tabla al documento
-        document.add(table);
+        addTrialBalanceTable(document, annualData.getPeriodRange(), trialBalanceService.getAllTrialBalanceRows());
     }
 
-    private void generateBalanceSectionAnnual(Document document, CompanyEntity company) throws MalformedURLException {
+    private void generateBalanceSectionAnnual(Document document, CompanyEntity company, ReportDataSnapshot annualData) {
         // Agregar encabezado reutilizando addFinancialReportHeader con texto personalizado
-        addFinancialReportHeader(document, "Balance General", true, company);
+        addFinancialReportHeader(document, "Balance General", annualData.getPeriodRange(), company);
 
         // Obtener datos del Balance General para el año completo
-        List<GeneralBalanceResponse> balances = generalBalanceService.getBalanceGeneral(accountingPeriodService.getAnnualPeriod().getId());
+        List<GeneralBalanceResponse> balances = annualData.getGeneralBalance();
 
         // Definir colores
         Color headerColor = new DeviceRgb(7, 43, 84); // Azul oscuro para encabezados
@@ -707,16 +632,14 @@ public class ReportPdfGenerator {
         document.add(layoutTable);
     }
 
-    private void generateIncomeStatementSectionAnnual(Document document, CompanyEntity company) throws MalformedURLException {
-        addFinancialReportHeader(document, "Estado de Resultados", true, company);
+    private void generateIncomeStatementSectionAnnual(Document document, CompanyEntity company, ReportDataSnapshot annualData) {
+        addFinancialReportHeader(document, "Estado de Resultados", annualData.getPeriodRange(), company);
 
         Color headerColor = new DeviceRgb(7, 43, 84);
         Color totalColor = new DeviceRgb(240, 248, 255);
 
         // Obtener todos los registros del estado de resultados anual
-        List<IncomeStatementResponse> incomeStatement = incomeStatementService.getIncomeStatement(
-                accountingPeriodService.getAnnualPeriod().getId()
-        );
+        List<IncomeStatementResponse> incomeStatement = annualData.getIncomeStatement();
 
         Table incomeStatementTable = new Table(UnitValue.createPercentArray(new float[]{4, 2})).useAllAvailableWidth();
         setupTableHeader(incomeStatementTable, headerColor);
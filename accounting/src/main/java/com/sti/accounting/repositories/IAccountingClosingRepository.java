@@ -4,6 +4,13 @@ import com.sti.accounting.entities.AccountingClosingEntity;
 import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface IAccountingClosingRepository extends ListCrudRepository<AccountingClosingEntity, Long> {
+
+    List<AccountingClosingEntity> findAllByTenantId(String tenantId);
+
+    Optional<AccountingClosingEntity> findByIdAndTenantId(Long id, String tenantId);
 }
@@ -5,6 +5,7 @@ import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @Repository
 public interface IAccountingJournalRepository extends ListCrudRepository<AccountingJournalEntity, Long> {
@@ -13,4 +14,6 @@ public interface IAccountingJournalRepository extends ListCrudRepository<Account
 
     boolean existsByAccountType_IdAndTenantId(BigDecimal accountTypeId, String tenantId);
 
+    List<AccountingJournalEntity> findAllByTenantId(String tenantId);
+
 }
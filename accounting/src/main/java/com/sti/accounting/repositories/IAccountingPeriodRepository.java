@@ -2,6 +2,8 @@ package com.sti.accounting.repositories;
 
 import com.sti.accounting.entities.AccountingPeriodEntity;
 import com.sti.accounting.utils.PeriodStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +11,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface IAccountingPeriodRepository extends ListCrudRepository<AccountingPeriodEntity, Long> {
@@ -16,6 +19,11 @@ public interface IAccountingPeriodRepository extends ListCrudRepository<Accounti
     @Query(value = "SELECT * FROM accounting_period WHERE period_status = 'ACTIVE' AND tenant_id = :tenantId", nativeQuery = true)
     List<AccountingPeriodEntity> findActivePeriods(@Param("tenantId") String tenantId);
 
+    // Bloqueo compartido: varios posteos a la vez, el cambio de estado del cierre espera a que terminen
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT a FROM AccountingPeriodEntity a WHERE a.id = :id")
+    Optional<AccountingPeriodEntity> findByIdForShare(@Param("id") Long id);
+
     @Query("SELECT a FROM AccountingPeriodEntity a " +
             "WHERE a.tenantId = :tenantId " +
             "AND (a.startPeriod <= :endDate AND a.endPeriod >= :startDate)")
@@ -67,4 +75,6 @@ public interface IAccountingPeriodRepository extends ListCrudRepository<Accounti
             PeriodStatus periodStatus,
             String tenantId
     );
+
+    AccountingPeriodEntity findFirstByTenantIdAndIsAnnualTrueOrderByIdAsc(String tenantId);
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.sti.accounting.repositories;
 
 import com.sti.accounting.entities.BalancesEntity;
+import com.sti.accounting.models.OpeningBalanceRow;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.data.repository.query.Param;
@@ -13,8 +14,17 @@ public interface IBalancesRepository extends ListCrudRepository<BalancesEntity,
 
     List<BalancesEntity> findByAccountId(Long accountId);
 
+    List<BalancesEntity> findAllByTenantId(String tenantId);
+
     @Query(value = "SELECT * FROM balances WHERE account_id = :accountId ORDER BY DATE DESC LIMIT 1", nativeQuery = true)
     BalancesEntity findMostRecentBalanceByAccountId(@Param("accountId") Long accountId);
 
+    @Query("SELECT new com.sti.accounting.models.OpeningBalanceRow(b.account.id, b.typicalBalance, b.initialBalance) " +
+            "FROM BalancesEntity b WHERE b.account.tenantId = :tenantId AND b.isCurrent = true ORDER BY b.id")
+    List<OpeningBalanceRow> findCurrentOpeningBalances(@Param("tenantId") String tenantId);
+
+    @Query("SELECT new com.sti.accounting.models.OpeningBalanceRow(b.account.id, b.typicalBalance, b.initialBalance) " +
+            "FROM BalancesEntity b WHERE b.account.tenantId = :tenantId ORDER BY b.account.id, b.createAtDate, b.id")
+    List<OpeningBalanceRow> findOpeningBalancesOldestFirst(@Param("tenantId") String tenantId);
 
 }
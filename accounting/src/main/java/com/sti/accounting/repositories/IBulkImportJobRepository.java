@@ -0,0 +1,39 @@
+package com.sti.accounting.repositories;
+
+import com.sti.accounting.entities.BulkImportJobEntity;
+import com.sti.accounting.utils.BulkImportJobStatus;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IBulkImportJobRepository extends ListCrudRepository<BulkImportJobEntity, Long> {
+
+    Optional<BulkImportJobEntity> findByIdAndTenantId(Long id, String tenantId);
+
+    List<BulkImportJobEntity> findAllByStatusIn(Collection<BulkImportJobStatus> statuses);
+
+    // Se ejecuta dentro de la transaccion del bloque para que el punto de control y las filas se confirmen juntos
+    @Modifying
+    @Transactional
+    @Query("UPDATE BulkImportJobEntity j SET j.committedChunks = :committedChunks, j.processedRows = :processedRows, " +
+            "j.heartbeat = :heartbeat WHERE j.id = :id")
+    int updateCheckpoint(@Param("id") Long id, @Param("committedChunks") Integer committedChunks,
+                         @Param("processedRows") Integer processedRows, @Param("heartbeat") LocalDateTime heartbeat);
+
+    // Un nodo toma un trabajo pendiente si es suyo o si el nodo dueno dejo de reportar avance
+    @Modifying
+    @Transactional
+    @Query("UPDATE BulkImportJobEntity j SET j.nodeId = :nodeId, j.heartbeat = :heartbeat WHERE j.id = :id " +
+            "AND (j.nodeId IS NULL OR j.nodeId = :nodeId OR j.heartbeat < :staleBefore)")
+    int claim(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("heartbeat") LocalDateTime heartbeat,
+              @Param("staleBefore") LocalDateTime staleBefore);
+}
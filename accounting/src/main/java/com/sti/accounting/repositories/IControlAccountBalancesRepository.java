@@ -1,10 +1,15 @@
 package com.sti.accounting.repositories;
 
 import com.sti.accounting.entities.ControlAccountBalancesEntity;
+import com.sti.accounting.models.AccountMovementSummary;
+import com.sti.accounting.models.PeriodMovementSummary;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,4 +27,41 @@ public interface IControlAccountBalancesRepository extends ListCrudRepository<Co
     List<ControlAccountBalancesEntity> findAllByAccountIdAndAccountingPeriodIdAndCreateAtDateBetweenAndTenantId(Long accountId, Long accountingPeriodId, LocalDate startDate, LocalDate endDate, String tenantId);
 
     List<ControlAccountBalancesEntity> findAllByAccountIdAndCreateAtDateBetweenAndTenantId(Long accountId, LocalDate startDate, LocalDate endDate, String tenantId);
+
+    @Query("SELECT new com.sti.accounting.models.AccountMovementSummary(c.accountId, c.createAtDate, SUM(c.debit), SUM(c.credit)) " +
+            "FROM ControlAccountBalancesEntity c " +
+            "WHERE c.tenantId = :tenantId AND c.createAtDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY c.accountId, c.createAtDate")
+    List<AccountMovementSummary> sumMovementsByAccountAndDate(
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("tenantId") String tenantId);
+
+    // Movimientos de todos los periodos del tenant sumados por cuenta
+    @Query("SELECT new com.sti.accounting.models.AccountMovementSummary(c.accountId, SUM(c.debit), SUM(c.credit)) " +
+            "FROM ControlAccountBalancesEntity c " +
+            "WHERE c.tenantId = :tenantId " +
+            "GROUP BY c.accountId")
+    List<AccountMovementSummary> sumMovementsByAccount(@Param("tenantId") String tenantId);
+
+    @Query("SELECT new com.sti.accounting.models.AccountMovementSummary(c.accountId, SUM(c.debit), SUM(c.credit)) " +
+            "FROM ControlAccountBalancesEntity c " +
+            "WHERE c.tenantId = :tenantId AND c.accountingPeriod.id = :accountingPeriodId " +
+            "AND c.createAtDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY c.accountId")
+    List<AccountMovementSummary> sumPeriodMovementsByAccount(
+            @Param("accountingPeriodId") Long accountingPeriodId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("tenantId") String tenantId);
+
+    // Movimientos de varios periodos sumados por periodo y cuenta, cada periodo limitado a su rango de fechas
+    @Query("SELECT new com.sti.accounting.models.PeriodMovementSummary(p.id, c.accountId, SUM(c.debit), SUM(c.credit)) " +
+            "FROM ControlAccountBalancesEntity c JOIN c.accountingPeriod p " +
+            "WHERE c.tenantId = :tenantId AND p.id IN :accountingPeriodIds " +
+            "AND c.createAtDate BETWEEN CAST(p.startPeriod AS LocalDate) AND CAST(p.endPeriod AS LocalDate) " +
+            "GROUP BY p.id, c.accountId")
+    List<PeriodMovementSummary> sumMovementsByPeriodAndAccount(
+            @Param("accountingPeriodIds") Collection<Long> accountingPeriodIds,
+            @Param("tenantId") String tenantId);
 }
@@ -11,5 +11,7 @@ public interface ICreditNotesRepository extends ListCrudRepository<CreditNotesEn
 
     List<CreditNotesEntity> getCreditNotesByTransactionIdAndTenantId(Long transactionId, String tenantId);
 
+    List<CreditNotesEntity> findAllByTenantIdAndAccountingPeriodId(String tenantId, Long accountingPeriodId);
+
 }
 
@@ -11,4 +11,6 @@ public interface IDebitNotesRepository extends ListCrudRepository<DebitNotesEnti
 
     List<DebitNotesEntity> getDebitNotesByTransactionIdAndTenantId(Long transactionId, String tenantId);
 
+    List<DebitNotesEntity> findAllByTenantIdAndAccountingPeriodId(String tenantId, Long accountingPeriodId);
+
 }
@@ -0,0 +1,34 @@
+package com.sti.accounting.repositories;
+
+import com.sti.accounting.entities.GeneralLedgerLineEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface IGeneralLedgerLineRepository extends ListCrudRepository<GeneralLedgerLineEntity, Long> {
+
+    @Query("SELECT l FROM GeneralLedgerLineEntity l " +
+            "WHERE l.tenantId = :tenantId AND l.accountingPeriodId = :periodId AND l.accountId = :accountId " +
+            "ORDER BY l.date, l.id")
+    List<GeneralLedgerLineEntity> findLedgerPage(@Param("tenantId") String tenantId,
+                                                 @Param("periodId") Long periodId,
+                                                 @Param("accountId") Long accountId,
+                                                 Pageable pageable);
+
+    @Query("SELECT l FROM GeneralLedgerLineEntity l " +
+            "WHERE l.tenantId = :tenantId AND l.accountingPeriodId = :periodId AND l.accountId = :accountId " +
+            "AND (l.date > :afterDate OR (l.date = :afterDate AND l.id > :afterId)) " +
+            "ORDER BY l.date, l.id")
+    List<GeneralLedgerLineEntity> findLedgerPageAfter(@Param("tenantId") String tenantId,
+                                                      @Param("periodId") Long periodId,
+                                                      @Param("accountId") Long accountId,
+                                                      @Param("afterDate") LocalDate afterDate,
+                                                      @Param("afterId") Long afterId,
+                                                      Pageable pageable);
+}
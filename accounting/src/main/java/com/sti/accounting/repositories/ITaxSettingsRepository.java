@@ -4,6 +4,10 @@ import com.sti.accounting.entities.TaxSettingsEntity;
 import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ITaxSettingsRepository extends ListCrudRepository<TaxSettingsEntity, Long> {
+
+    List<TaxSettingsEntity> findAllByTenantId(String tenantId);
 }
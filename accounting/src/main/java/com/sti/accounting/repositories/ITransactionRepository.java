@@ -1,13 +1,19 @@
 package com.sti.accounting.repositories;
 
 import com.sti.accounting.entities.TransactionEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ITransactionRepository extends ListCrudRepository<TransactionEntity, Long> {
@@ -16,30 +22,66 @@ public interface ITransactionRepository extends ListCrudRepository<TransactionEn
 
     List<TransactionEntity> findByCreateAtDateBetweenAndTenantId(LocalDate startDate, LocalDate endDate, String tenantId);
 
+    @Query("SELECT t.id FROM TransactionEntity t WHERE t.tenantId = :tenantId ORDER BY t.createAtDate DESC, t.id DESC")
+    List<Long> findPageIds(@Param("tenantId") String tenantId, Pageable pageable);
+
+    @Query("SELECT t.id FROM TransactionEntity t " +
+            "WHERE t.tenantId = :tenantId " +
+            "AND (t.createAtDate < :afterDate OR (t.createAtDate = :afterDate AND t.id < :afterId)) " +
+            "ORDER BY t.createAtDate DESC, t.id DESC")
+    List<Long> findPageIdsAfter(@Param("tenantId") String tenantId,
+                                @Param("afterDate") LocalDate afterDate,
+                                @Param("afterId") Long afterId,
+                                Pageable pageable);
+
+    @Query("SELECT DISTINCT t FROM TransactionEntity t " +
+            "LEFT JOIN FETCH t.transactionDetail d " +
+            "LEFT JOIN FETCH d.account " +
+            "LEFT JOIN FETCH t.document " +
+            "LEFT JOIN FETCH t.accountingJournal " +
+            "LEFT JOIN FETCH t.accountingPeriod " +
+            "WHERE t.id IN :ids")
+    List<TransactionEntity> findAllWithDetailByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT t FROM TransactionEntity t " +
+            "LEFT JOIN FETCH t.transactionDetail d " +
+            "LEFT JOIN FETCH d.account " +
+            "LEFT JOIN FETCH t.document " +
+            "LEFT JOIN FETCH t.accountingJournal " +
+            "LEFT JOIN FETCH t.accountingPeriod " +
+            "WHERE t.tenantId = :tenantId")
+    List<TransactionEntity> findAllWithDetailByTenantId(@Param("tenantId") String tenantId);
+
     @Query("SELECT COUNT(td) > 0 FROM TransactionDetailEntity td WHERE td.account.id = :accountId AND td.transaction.tenantId = :tenantId")
     boolean existsByAccountIdAndTenantId(@Param("accountId") Long accountId, @Param("tenantId") String tenantId);
 
+    // Libro mayor de un tenant y periodo; con allAccounts = false solo las cuentas de accountIds.
+    // Se recorre como stream, por lo que debe consumirse dentro de una transaccion y cerrarse.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
     @Query(value = """
-            
-            select a.description, a.code,\s
-                       (select description from accounts where id = a.parent_id) as cuentaPadre,\s
+                select a.description, a.code,\s
+                       p.description as cuentaPadre,\s
                        t.date,\s
                        'Transacción' as movimiento,\s
                        td.motion,\s
                        td.amount,\s
                        t.number_pda,\s
-                       ac.name, 
+                       ac.name,
                        t.accounting_period_id
-                from accounts a
-                inner join transaction_detail td on a.id = td.account_id
+                from transaction_detail td
                 inner join transactions t on t.id = td.transaction_id
-            	inner join account_category ac on ac.id = a.category_id
+                inner join accounts a on a.id = td.account_id
+                left join accounts p on p.id = a.parent_id
+                inner join account_category ac on ac.id = a.category_id
                 where t.status = 'SUCCESS'
-            
+                  and t.tenant_id = :tenantId
+                  and t.accounting_period_id = :periodId
+                  and (:allAccounts = true or a.id in (:accountIds))
+
                 UNION ALL
-            
+
                 select a.description, a.code,\s
-                       (select description from accounts where id = a.parent_id) as cuentaPadre,\s
+                       p.description as cuentaPadre,\s
                        DATE_FORMAT(aa.creation_date,'%Y-%m-%d') as date,\s
                        'Ajuste' as movimiento,\s
                        ad.motion,\s
@@ -47,17 +89,21 @@ public interface ITransactionRepository extends ListCrudRepository<TransactionEn
                        t.number_pda,\s
                        ac.name,
                        aa.accounting_period_id
-                from accounts a
-                inner join adjustment_detail ad on a.id = ad.account_id
+                from adjustment_detail ad
                 inner join accounting_adjustments aa on aa.id = ad.adjustment_id
                 inner join transactions t on t.id = aa.transaction_id
+                inner join accounts a on a.id = ad.account_id
+                left join accounts p on p.id = a.parent_id
                 inner join account_category ac on ac.id = a.category_id
                 where aa.status = 'SUCCESS'
-               \s
+                  and aa.tenant_id = :tenantId
+                  and aa.accounting_period_id = :periodId
+                  and (:allAccounts = true or a.id in (:accountIds))
+
                 UNION ALL
-            
+
                 select a.description, a.code,\s
-                       (select description from accounts where id = a.parent_id) as cuentaPadre,\s
+                       p.description as cuentaPadre,\s
                        cn.date,\s
                        'Nota de Crédito' as movimiento,\s
                        cnd.motion,\s
@@ -65,17 +111,21 @@ public interface ITransactionRepository extends ListCrudRepository<TransactionEn
                        t.number_pda,\s
                        ac.name,
                        cn.accounting_period_id
-                from accounts a
-                inner join credit_notes_detail cnd on a.id = cnd.account_id
+                from credit_notes_detail cnd
                 inner join credit_notes cn on cn.id = cnd.credit_note_id
                 inner join transactions t on t.id = cn.transaction_id
-               inner join account_category ac on ac.id = a.category_id
-               where cn.status = 'SUCCESS'
-            \s
+                inner join accounts a on a.id = cnd.account_id
+                left join accounts p on p.id = a.parent_id
+                inner join account_category ac on ac.id = a.category_id
+                where cn.status = 'SUCCESS'
+                  and cn.tenant_id = :tenantId
+                  and cn.accounting_period_id = :periodId
+                  and (:allAccounts = true or a.id in (:accountIds))
+
                 UNION ALL
-            
+
                 select a.description, a.code,\s
-                       (select description from accounts where id = a.parent_id) as cuentaPadre,\s
+                       p.description as cuentaPadre,\s
                        dn.date,\s
                        'Nota de Débito' as movimiento,\s
                        dnd.motion,\s
@@ -83,17 +133,29 @@ public interface ITransactionRepository extends ListCrudRepository<TransactionEn
                        t.number_pda,\s
                        ac.name,
                        dn.accounting_period_id
-                from accounts a
-                inner join debit_notes_detail dnd on a.id = dnd.account_id
+                from debit_notes_detail dnd
                 inner join debit_notes dn on dn.id = dnd.debit_note_id
                 inner join transactions t on t.id = dn.transaction_id
+                inner join accounts a on a.id = dnd.account_id
+                left join accounts p on p.id = a.parent_id
                 inner join account_category ac on ac.id = a.category_id
-                 where dn.status = 'SUCCESS'
+                where dn.status = 'SUCCESS'
+                  and dn.tenant_id = :tenantId
+                  and dn.accounting_period_id = :periodId
+                  and (:allAccounts = true or a.id in (:accountIds))
+
+                order by code, date, number_pda
             """, nativeQuery = true)
-    List<Object[]> getAccountTransactionSummary();
+    Stream<Object[]> streamAccountLedger(@Param("tenantId") String tenantId,
+                                         @Param("periodId") Long periodId,
+                                         @Param("allAccounts") boolean allAccounts,
+                                         @Param("accountIds") Collection<Long> accountIds);
 
     boolean existsByReferenceAndTenantId(String reference, String tenantId);
 
+    @Query("SELECT t.reference FROM TransactionEntity t WHERE t.tenantId = :tenantId AND t.reference IN :references")
+    List<String> findExistingReferences(@Param("tenantId") String tenantId, @Param("references") Collection<String> references);
+
     @Query("SELECT COUNT(t) > 0 FROM TransactionEntity t WHERE t.reference = :reference AND t.tenantId = :tenantId AND t.id != :id")
     boolean existsByReferenceAndTenantIdAndIdNot(@Param("reference") String reference,
                                                  @Param("tenantId") String tenantId,
@@ -0,0 +1,18 @@
+package com.sti.accounting.repositories;
+
+import com.sti.accounting.entities.TrialBalanceSnapshotEntity;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ITrialBalanceSnapshotRepository extends ListCrudRepository<TrialBalanceSnapshotEntity, Long> {
+
+    List<TrialBalanceSnapshotEntity> findAllByAccountingPeriodIdAndTenantId(Long accountingPeriodId, String tenantId);
+
+    List<TrialBalanceSnapshotEntity> findAllByAccountingPeriodIdInAndTenantId(Collection<Long> accountingPeriodIds, String tenantId);
+
+    void deleteAllByAccountingPeriodIdAndTenantId(Long accountingPeriodId, String tenantId);
+}
@@ -0,0 +1,146 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountEntity;
+import com.sti.accounting.repositories.IAccountRepository;
+import com.sti.accounting.utils.TtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Catalogo de cuentas en memoria por tenant. Se carga una vez con las cuentas del tenant y se indexa por id,
+ * por codigo, por padre y por ruta desde la cuenta raiz; AccountService lo invalida cada vez que cambia el catalogo.
+ * La invalidacion solo alcanza a este nodo, los cambios hechos en otro nodo se ven al vencer el tiempo de vida
+ * (app.cache.catalog.ttl-seconds).
+ * Las cuentas quedan fuera de la sesion de JPA, solo se usan como referencia al armar los detalles de las partidas.
+ */
+@Service
+public class AccountCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountCatalogService.class);
+
+    public static final class AccountCatalog {
+
+        private final Map<Long, AccountEntity> byId;
+        private final Map<String, AccountEntity> byCode;
+        private final Map<Long, List<AccountEntity>> childrenByParent;
+        private final List<AccountEntity> roots;
+        private final Map<Long, List<Long>> rootPaths;
+
+        public AccountCatalog(Collection<AccountEntity> accounts) {
+            Map<Long, AccountEntity> ids = new LinkedHashMap<>();
+            Map<String, AccountEntity> codes = new HashMap<>();
+            Map<Long, List<AccountEntity>> children = new HashMap<>();
+            List<AccountEntity> rootAccounts = new ArrayList<>();
+            for (AccountEntity account : accounts) {
+                ids.put(account.getId(), account);
+                if (account.getCode() != null) {
+                    codes.put(account.getCode(), account);
+                }
+                if (account.getParent() == null) {
+                    rootAccounts.add(account);
+                } else {
+                    children.computeIfAbsent(account.getParent().getId(), k -> new ArrayList<>()).add(account);
+                }
+            }
+            children.replaceAll((k, v) -> List.copyOf(v));
+
+            Map<Long, List<Long>> paths = new HashMap<>();
+            for (AccountEntity account : accounts) {
+                paths.put(account.getId(), buildRootPath(account, ids));
+            }
+
+            this.byId = Collections.unmodifiableMap(ids);
+            this.byCode = Map.copyOf(codes);
+            this.childrenByParent = Map.copyOf(children);
+            this.roots = List.copyOf(rootAccounts);
+            this.rootPaths = Map.copyOf(paths);
+        }
+
+        public AccountEntity get(Long accountId) {
+            return accountId == null ? null : byId.get(accountId);
+        }
+
+        public Optional<AccountEntity> findById(Long accountId) {
+            return Optional.ofNullable(get(accountId));
+        }
+
+        public Optional<AccountEntity> findByCode(String code) {
+            return code == null ? Optional.empty() : Optional.ofNullable(byCode.get(code));
+        }
+
+        public List<AccountEntity> getChildren(Long parentId) {
+            return parentId == null ? roots : childrenByParent.getOrDefault(parentId, List.of());
+        }
+
+        /**
+         * Ids desde la cuenta raiz hasta la cuenta indicada, incluida. Vacia si la cuenta no es del catalogo.
+         */
+        public List<Long> getRootPath(Long accountId) {
+            return accountId == null ? List.of() : rootPaths.getOrDefault(accountId, List.of());
+        }
+
+        public Collection<AccountEntity> getAccounts() {
+            return byId.values();
+        }
+
+        public int size() {
+            return byId.size();
+        }
+
+        private static List<Long> buildRootPath(AccountEntity account, Map<Long, AccountEntity> ids) {
+            LinkedList<Long> path = new LinkedList<>();
+            Set<Long> visited = new HashSet<>();
+            AccountEntity current = account;
+            // El visitado evita ciclos en catalogos mal formados
+            while (current != null && visited.add(current.getId())) {
+                path.addFirst(current.getId());
+                current = current.getParent() == null ? null : ids.get(current.getParent().getId());
+            }
+            return List.copyOf(path);
+        }
+    }
+
+    private final IAccountRepository iAccountRepository;
+    private final TtlCache<String, AccountCatalog> catalogs;
+
+    public AccountCatalogService(IAccountRepository iAccountRepository,
+                                 @Value("${app.cache.catalog.max-size:1000}") int maxSize,
+                                 @Value("${app.cache.catalog.ttl-seconds:60}") long ttlSeconds) {
+        this.iAccountRepository = iAccountRepository;
+        this.catalogs = new TtlCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+    }
+
+    public AccountCatalog getCatalog(String tenantId) {
+        return catalogs.computeIfAbsent(tenantId, this::loadCatalog);
+    }
+
+    /**
+     * Descarta el catalogo del tenant. Si hay una transaccion activa se descarta otra vez al confirmarla, para que
+     * una lectura concurrente no deje en memoria el catalogo anterior al cambio.
+     */
+    public void invalidate(String tenantId) {
+        catalogs.invalidate(tenantId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    catalogs.invalidate(tenantId);
+                }
+            });
+        }
+        logger.debug("Account catalog invalidated for tenant {}", tenantId);
+    }
+
+    private AccountCatalog loadCatalog(String tenantId) {
+        AccountCatalog catalog = new AccountCatalog(iAccountRepository.findAllByTenantId(tenantId));
+        logger.info("Account catalog loaded for tenant {} with {} accounts", tenantId, catalog.size());
+        return catalog;
+    }
+}
@@ -32,13 +32,16 @@ public class AccountService {
     private final IAccountTypeRepository accountTypeRepository;
     private final ITransactionRepository transactionRepository;
     private final AuthService authService;
+    private final AccountCatalogService accountCatalogService;
 
-    public AccountService(IAccountRepository iAccountRepository, IAccountCategoryRepository categoryRepository, IAccountTypeRepository accountTypeRepository, ITransactionRepository transactionRepository, AuthService authService) {
+    public AccountService(IAccountRepository iAccountRepository, IAccountCategoryRepository categoryRepository, IAccountTypeRepository accountTypeRepository, ITransactionRepository transactionRepository, AuthService authService,
+                          AccountCatalogService accountCatalogService) {
         this.iAccountRepository = iAccountRepository;
         this.categoryRepository = categoryRepository;
         this.accountTypeRepository = accountTypeRepository;
         this.transactionRepository = transactionRepository;
         this.authService = authService;
+        this.accountCatalogService = accountCatalogService;
     }
 
     public List<AccountResponse> getAllAccount() {
@@ -105,6 +108,7 @@ public class AccountService {
 
 
         iAccountRepository.save(entity);
+        accountCatalogService.invalidate(tenantId);
 
         return toResponse(entity);
     }
@@ -182,6 +186,7 @@ public class AccountService {
                 iAccountRepository.countByParentIdAndTenantId(updatedAccount.getId(), tenantId) > 0) {
             updateChildAccountCodes(updatedAccount, oldCode, accountRequest.getCode());
         }
+        accountCatalogService.invalidate(tenantId);
 
         return toResponse(updatedAccount);
     }
@@ -290,7 +295,15 @@ public class AccountService {
 
     public void cloneCatalog(String sourceTenantId) {
         String tenantId = authService.getTenantId();
+        try {
+            cloneCatalog(sourceTenantId, tenantId);
+        } finally {
+            // Las cuentas se guardan una por una, aun si falla a medias el catalogo en memoria ya no sirve
+            accountCatalogService.invalidate(tenantId);
+        }
+    }
 
+    private void cloneCatalog(String sourceTenantId, String tenantId) {
         // Verificar si ya existen cuentas en el tenant actual
         List<AccountEntity> existingAccounts = iAccountRepository.findAllByTenantId(tenantId);
         if (!existingAccounts.isEmpty()) {
@@ -2,7 +2,6 @@ package com.sti.accounting.services;
 
 import com.sti.accounting.entities.*;
 import com.sti.accounting.models.*;
-import com.sti.accounting.repositories.IAccountRepository;
 import com.sti.accounting.repositories.IAccountingAdjustmentsRepository;
 import com.sti.accounting.repositories.ITransactionRepository;
 import com.sti.accounting.utils.Motion;
@@ -24,17 +23,17 @@ public class AccountingAdjustmentService {
 
 
     private final IAccountingAdjustmentsRepository accountingAdjustmentsRepository;
-    private final IAccountRepository iAccountRepository;
+    private final AccountCatalogService accountCatalogService;
     private final ITransactionRepository transactionRepository;
-    private final ControlAccountBalancesService controlAccountBalancesService;
+    private final LedgerPostingService ledgerPostingService;
     private final AccountingPeriodService accountingPeriodService;
     private final AuthService authService;
 
-    public AccountingAdjustmentService(IAccountingAdjustmentsRepository accountingAdjustmentsRepository, IAccountRepository iAccountRepository, ITransactionRepository transactionRepository, ControlAccountBalancesService controlAccountBalancesService, AccountingPeriodService accountingPeriodService, AuthService authService) {
+    public AccountingAdjustmentService(IAccountingAdjustmentsRepository accountingAdjustmentsRepository, AccountCatalogService accountCatalogService, ITransactionRepository transactionRepository, LedgerPostingService ledgerPostingService, AccountingPeriodService accountingPeriodService, AuthService authService) {
         this.accountingAdjustmentsRepository = accountingAdjustmentsRepository;
-        this.iAccountRepository = iAccountRepository;
+        this.accountCatalogService = accountCatalogService;
         this.transactionRepository = transactionRepository;
-        this.controlAccountBalancesService = controlAccountBalancesService;
+        this.ledgerPostingService = ledgerPostingService;
         this.accountingPeriodService = accountingPeriodService;
         this.authService = authService;
     }
@@ -87,7 +86,7 @@ public class AccountingAdjustmentService {
                 )
         );
 
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
 
         entity.setTransaction(transactionEntity);
         entity.setReference(accountingAdjustmentRequest.getReference());
@@ -128,7 +127,7 @@ public class AccountingAdjustmentService {
         }
 
         // Validar que el período activo sea el mismo del ajuste
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
         if (entity.getAccountingPeriod() == null ||
                 !Objects.equals(entity.getAccountingPeriod().getId(), activePeriod.getId())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
@@ -178,10 +177,7 @@ public class AccountingAdjustmentService {
                 }
 
                 String tenant = authService.getTenantId();
-                Optional<AccountEntity> accountOpt = iAccountRepository.findAll().stream()
-                        .filter(x -> x.getId().equals(incoming.getAccountId())
-                                && x.getTenantId().equals(tenant))
-                        .findFirst();
+                Optional<AccountEntity> accountOpt = accountCatalogService.getCatalog(tenant).findById(incoming.getAccountId());
 
                 if (accountOpt.isEmpty()) {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
@@ -213,12 +209,10 @@ public class AccountingAdjustmentService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No adjustment found with the provided IDs");
         }
 
-        adjustments.forEach(adjustment -> {
-            adjustment.setStatus(StatusTransaction.SUCCESS);
-            controlAccountBalancesService.updateControlAccountBalancesAdjustment(adjustment);
-        });
+        adjustments.forEach(adjustment -> adjustment.setStatus(StatusTransaction.SUCCESS));
 
         accountingAdjustmentsRepository.saveAll(adjustments);
+        ledgerPostingService.postAdjustments(adjustments);
     }
 
     private void validateAdjustmentTranDetail(List<AdjustmentDetailRequest> detailRequest) {
@@ -265,10 +259,10 @@ public class AccountingAdjustmentService {
         try {
             String tenantId = authService.getTenantId();
             List<AdjustmentDetailEntity> result = new ArrayList<>();
-            List<AccountEntity> accounts = iAccountRepository.findAll();
+            AccountCatalogService.AccountCatalog accounts = accountCatalogService.getCatalog(tenantId);
             for (AdjustmentDetailRequest detail : detailRequests) {
                 AdjustmentDetailEntity entity = new AdjustmentDetailEntity();
-                Optional<AccountEntity> currentAccount = accounts.stream().filter(x -> x.getId().equals(detail.getAccountId()) && x.getTenantId().equals(tenantId)).findFirst();
+                Optional<AccountEntity> currentAccount = accounts.findById(detail.getAccountId());
                 if (currentAccount.isEmpty()) {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The account with id " + detail.getAccountId() + "does not exist.");
                 }
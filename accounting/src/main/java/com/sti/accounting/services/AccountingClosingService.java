@@ -7,19 +7,22 @@ import com.sti.accounting.repositories.*;
 import com.sti.accounting.utils.PeriodStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.math.BigDecimal;
-import java.net.MalformedURLException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class AccountingClosingService {
@@ -29,34 +32,41 @@ public class AccountingClosingService {
 
     private final IAccountingClosingRepository accountingClosingRepository;
     private final AccountingPeriodService accountingPeriodService;
-    private final GeneralBalanceService generalBalanceService;
-    private final IncomeStatementService incomeStatementService;
     private final IAccountingPeriodRepository accountingPeriodRepository;
-    private final BalancesService balancesService;
-    private final IBalancesRepository iBalancesRepository;
-    private final IControlAccountBalancesRepository controlAccountBalancesRepository;
+    private final BalanceRollForwardService balanceRollForwardService;
     private final ReportPdfGenerator reportPdfGenerator;
     private final AuthService authService;
     private final ICompanyRepository companyRepository;
+    private final TrialBalanceService trialBalanceService;
+    private final ReportStorageService reportStorageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReportDataService reportDataService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public AccountingClosingService(IAccountingClosingRepository accountingClosingRepository, AccountingPeriodService accountingPeriodService, GeneralBalanceService generalBalanceService, IncomeStatementService incomeStatementService, IAccountingPeriodRepository accountingPeriodRepository, BalancesService balancesService, IBalancesRepository iBalancesRepository, IControlAccountBalancesRepository controlAccountBalancesRepository, ReportPdfGenerator reportPdfGenerator, AuthService authService, ICompanyRepository companyRepository) {
+    public record ClosingReport(Resource resource, String hash) {
+    }
+
+    public AccountingClosingService(IAccountingClosingRepository accountingClosingRepository, AccountingPeriodService accountingPeriodService, IAccountingPeriodRepository accountingPeriodRepository, BalanceRollForwardService balanceRollForwardService, ReportPdfGenerator reportPdfGenerator, AuthService authService, ICompanyRepository companyRepository, TrialBalanceService trialBalanceService,
+                                    ReportStorageService reportStorageService, JdbcTemplate jdbcTemplate, ReportDataService reportDataService,
+                                    ApplicationEventPublisher eventPublisher) {
         this.accountingClosingRepository = accountingClosingRepository;
         this.accountingPeriodService = accountingPeriodService;
-        this.generalBalanceService = generalBalanceService;
-        this.incomeStatementService = incomeStatementService;
         this.accountingPeriodRepository = accountingPeriodRepository;
-        this.balancesService = balancesService;
-        this.iBalancesRepository = iBalancesRepository;
-        this.controlAccountBalancesRepository = controlAccountBalancesRepository;
+        this.balanceRollForwardService = balanceRollForwardService;
         this.reportPdfGenerator = reportPdfGenerator;
         this.authService = authService;
         this.companyRepository = companyRepository;
+        this.trialBalanceService = trialBalanceService;
+        this.reportStorageService = reportStorageService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.reportDataService = reportDataService;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<AccountingClosingResponse> getAllAccountingClosing() {
         String tenantId = authService.getTenantId();
 
-        return this.accountingClosingRepository.findAll().stream().filter(closing -> closing.getTenantId().equals(tenantId)).map(this::toResponse).toList();
+        return this.accountingClosingRepository.findAllByTenantId(tenantId).stream().map(this::toResponse).toList();
     }
 
     public AccountingClosingResponse getDetailAccountingClosing() {
@@ -73,71 +83,38 @@ public class AccountingClosingService {
             activePeriod = annualPeriod;
         }
 
-        AccountingClosingResponse accountingClosingResponse = new AccountingClosingResponse();
+        return toDetailResponse(reportDataService.buildSnapshot(activePeriod));
+    }
 
-        accountingClosingResponse.setPeriodName(activePeriod.getPeriodName());
-        accountingClosingResponse.setTypePeriod(activePeriod.getClosureType());
-        accountingClosingResponse.setStartPeriod(activePeriod.getStartPeriod());
-        accountingClosingResponse.setEndPeriod(activePeriod.getEndPeriod());
-
-        // Obtener el balance general
-        List<GeneralBalanceResponse> balanceResponses = generalBalanceService.getBalanceGeneral(activePeriod.getId());
-
-        // Calcular totales
-        BigDecimal totalAssets = balanceResponses.stream()
-                .filter(item -> "ACTIVO".equals(item.getCategory()))
-                .map(GeneralBalanceResponse::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalLiabilities = balanceResponses.stream()
-                .filter(item -> "PASIVO".equals(item.getCategory()))
-                .map(GeneralBalanceResponse::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalCapital = balanceResponses.stream()
-                .filter(item -> "PATRIMONIO".equals(item.getCategory()))
-                .map(GeneralBalanceResponse::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Asignar totales al response
-        accountingClosingResponse.setTotalAssets(totalAssets);
-        accountingClosingResponse.setTotalLiabilities(totalLiabilities);
-        accountingClosingResponse.setTotalCapital(totalCapital);
-
-        // Obtener el estado de resultados
-        List<IncomeStatementResponse> incomeStatementResponses = incomeStatementService.getIncomeStatement(activePeriod.getId());
-
-        // Calcular totales de ingresos y gastos
-        BigDecimal totalIncome = incomeStatementResponses.stream()
-                .filter(item -> "C".equals(item.getTypicalBalance()))
-                .map(IncomeStatementResponse::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalExpenses = incomeStatementResponses.stream()
-                .filter(item -> "D".equals(item.getTypicalBalance()))
-                .map(IncomeStatementResponse::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Asignar totales de ingresos y gastos al response
-        accountingClosingResponse.setTotalIncome(totalIncome);
-        accountingClosingResponse.setTotalExpenses(totalExpenses);
-
-        // Calcular el ingreso neto
-        BigDecimal netIncome = incomeStatementService.getNetProfit(incomeStatementResponses);
-        accountingClosingResponse.setNetIncome(netIncome);
+    private AccountingClosingResponse toDetailResponse(ReportDataSnapshot reportData) {
+        AccountingPeriodEntity period = reportData.getPeriod();
+        AccountingClosingResponse accountingClosingResponse = new AccountingClosingResponse();
 
+        accountingClosingResponse.setPeriodName(period.getPeriodName());
+        accountingClosingResponse.setTypePeriod(period.getClosureType());
+        accountingClosingResponse.setStartPeriod(period.getStartPeriod());
+        accountingClosingResponse.setEndPeriod(period.getEndPeriod());
+        accountingClosingResponse.setTotalAssets(reportData.getTotalAssets());
+        accountingClosingResponse.setTotalLiabilities(reportData.getTotalLiabilities());
+        accountingClosingResponse.setTotalCapital(reportData.getTotalCapital());
+        accountingClosingResponse.setTotalIncome(reportData.getTotalIncome());
+        accountingClosingResponse.setTotalExpenses(reportData.getTotalExpenses());
+        accountingClosingResponse.setNetIncome(reportData.getNetIncome());
         return accountingClosingResponse;
     }
 
     public void closeAccountingPeriod(String newClosureType) {
         logger.info("Closing accounting period with new closure type: {}", newClosureType);
 
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = reloadActivePeriod(accountingPeriodService.getActivePeriod());
         logger.info("Active accounting period ID: {}", activePeriod.getId());
 
         // Save the accounting closing record
         saveAccountingClosing(activePeriod);
 
+        // Snapshot of the trial balance, must run before the balances roll forward
+        trialBalanceService.snapshotPeriod(activePeriod);
+
         // Process balances for the active accounting period
         processBalances(activePeriod);
 
@@ -159,6 +136,7 @@ public class AccountingClosingService {
         if (nextPeriod != null) {
             nextPeriod.setPeriodStatus(PeriodStatus.ACTIVE);
             accountingPeriodRepository.save(nextPeriod);
+            eventPublisher.publishEvent(new AccountingPeriodChangedEvent(tenantId));
             logger.info("Accounting period ID: {} has been activated.", nextPeriod.getId());
         } else {
             logger.warn("No next period found. New periods will not be created.");
@@ -169,22 +147,9 @@ public class AccountingClosingService {
     private void processBalances(AccountingPeriodEntity activePeriod) {
         String tenantId = authService.getTenantId();
 
-        List<ControlAccountBalancesEntity> accountBalances = controlAccountBalancesRepository.findAllByAccountingPeriodIdAndTenantId(activePeriod.getId(), tenantId);
-        if (accountBalances.isEmpty()) {
+        List<BalanceRollForwardService.OpeningBalance> openingBalances = balanceRollForwardService.rollForward(activePeriod.getId(), tenantId);
+        if (openingBalances.isEmpty()) {
             logger.warn("No account balances found for the active accounting period.");
-            return;
-        }
-
-        Map<Long, List<ControlAccountBalancesEntity>> groupedBalances = accountBalances.stream()
-                .collect(Collectors.groupingBy(ControlAccountBalancesEntity::getAccountId));
-
-        for (Map.Entry<Long, List<ControlAccountBalancesEntity>> entry : groupedBalances.entrySet()) {
-            Long accountId = entry.getKey();
-            List<ControlAccountBalancesEntity> balancesForAccount = entry.getValue();
-            logger.info("Processing account balance for account ID: {}", accountId);
-
-            inactivateExistingBalances(accountId);
-            createNewBalance(balancesForAccount);
         }
     }
 
@@ -194,7 +159,9 @@ public class AccountingClosingService {
 
         CompanyEntity company = companyRepository.findByTenantId(tenantId);
 
-        AccountingClosingResponse closingDetails = getDetailAccountingClosing();
+        // Los mismos datos alimentan los totales del cierre y las secciones del PDF
+        ReportDataSnapshot reportData = reportDataService.buildSnapshot(activePeriod);
+        AccountingClosingResponse closingDetails = toDetailResponse(reportData);
 
         AccountingClosingEntity closingEntity = new AccountingClosingEntity();
         closingEntity.setAccountingPeriod(activePeriod);
@@ -208,12 +175,12 @@ public class AccountingClosingService {
         closingEntity.setNetIncome(closingDetails.getNetIncome());
         closingEntity.setTenantId(tenantId);
 
-        // Generar el PDF y guardar su contenido como byte[]
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            reportPdfGenerator.generateReportPdf(os, company);
-            byte[] pdf = os.toByteArray();
-            logger.info("PDF generado en memoria: {} bytes", (pdf != null ? pdf.length : 0));
-            closingEntity.setClosureReportPdf(pdf);
+        // Generar el PDF directo al almacen de reportes
+        try {
+            ReportStorageService.StoredReport report = reportStorageService.store(os -> reportPdfGenerator.generateReportPdf(os, company, reportData));
+            logger.info("PDF de cierre guardado: {} bytes", report.size());
+            closingEntity.setReportHash(report.hash());
+            closingEntity.setReportSize(report.size());
         } catch (Exception e) {
             logger.error("Error al generar el PDF de cierre", e);
             // Opcional: relanzar para hacer rollback:
@@ -221,68 +188,74 @@ public class AccountingClosingService {
         }
 
         AccountingClosingEntity saved = accountingClosingRepository.save(closingEntity);
-        logger.info("Closing saved id={}, pdfBytes={}",
-                saved.getId(),
-                (saved.getClosureReportPdf() != null ? saved.getClosureReportPdf().length : 0));
+        logger.info("Closing saved id={}, pdfBytes={}", saved.getId(), saved.getReportSize());
+    }
+
+    // El periodo del cache se comparte entre peticiones y otro nodo pudo cerrarlo; el cierre trabaja sobre una copia
+    // leida de la base de datos
+    private AccountingPeriodEntity reloadActivePeriod(AccountingPeriodEntity cachedPeriod) {
+        return accountingPeriodRepository.findById(cachedPeriod.getId())
+                .filter(period -> period.getPeriodStatus() == PeriodStatus.ACTIVE)
+                .orElseThrow(() -> {
+                    eventPublisher.publishEvent(new AccountingPeriodChangedEvent(cachedPeriod.getTenantId()));
+                    return new ResponseStatusException(HttpStatus.CONFLICT, "The accounting period is no longer active");
+                });
     }
 
     private void closeActivePeriod(AccountingPeriodEntity activePeriod) {
         activePeriod.setPeriodStatus(PeriodStatus.CLOSED);
         accountingPeriodRepository.save(activePeriod);
+        eventPublisher.publishEvent(new AccountingPeriodChangedEvent(activePeriod.getTenantId()));
     }
 
-    private void inactivateExistingBalances(Long accountId) {
-        List<BalancesEntity> existingBalances = iBalancesRepository.findByAccountId(accountId);
-        for (BalancesEntity existingBalance : existingBalances) {
-            existingBalance.setIsCurrent(false);
-            existingBalance.setClosingDate(LocalDateTime.now());
-            iBalancesRepository.save(existingBalance);
+    /**
+     * PDF del cierre desde el almacen de reportes. Los cierres guardados antes del almacen todavia tienen el PDF en
+     * la columna CLOSURE_REPORT_PDF; se copia al almacen leyendolo como stream y se libera la columna.
+     */
+    public ClosingReport getClosingReport(Long id) {
+        String tenantId = authService.getTenantId();
+        AccountingClosingEntity closingEntity = accountingClosingRepository.findByIdAndTenantId(id, tenantId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Accounting closing not found with id: " + id));
+
+        if (closingEntity.getReportHash() == null) {
+            ReportStorageService.StoredReport report = migrateLegacyReport(id, tenantId);
+            if (report == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Closing report not found");
+            }
+            closingEntity.setReportHash(report.hash());
+            closingEntity.setReportSize(report.size());
         }
+        return new ClosingReport(reportStorageService.load(closingEntity.getReportHash()), closingEntity.getReportHash());
     }
 
-    private void createNewBalance(List<ControlAccountBalancesEntity> accountBalances) {
-        BalancesRequest balancesRequest = new BalancesRequest();
-
-        if (!accountBalances.isEmpty()) {
-            Long accountId = accountBalances.get(0).getAccountId();
-            balancesRequest.setAccountId(accountId);
-
-            BalancesEntity balancesEntity = iBalancesRepository.findMostRecentBalanceByAccountId(accountId);
-
-            BigDecimal totalDebit = accountBalances.stream()
-                    .map(ControlAccountBalancesEntity::getDebit)
-                    .filter(java.util.Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            BigDecimal totalCredit = accountBalances.stream()
-                    .map(ControlAccountBalancesEntity::getCredit)
-                    .filter(java.util.Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            if (balancesEntity != null) {
-                if ("D".equals(balancesEntity.getTypicalBalance())) {
-                    totalDebit = totalDebit.add(balancesEntity.getInitialBalance());
-                } else if ("C".equals(balancesEntity.getTypicalBalance())) {
-                    totalCredit = totalCredit.add(balancesEntity.getInitialBalance());
+    private ReportStorageService.StoredReport migrateLegacyReport(Long id, String tenantId) {
+        ReportStorageService.StoredReport report;
+        try {
+            report = jdbcTemplate.query("SELECT CLOSURE_REPORT_PDF FROM accounting_closing WHERE id = ? AND tenant_id = ?", rs -> {
+                if (!rs.next()) return null;
+                try (InputStream pdf = rs.getBinaryStream(1)) {
+                    return pdf != null ? reportStorageService.store(pdf) : null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
-
-            if (totalDebit.compareTo(totalCredit) > 0) {
-                balancesRequest.setTypicalBalance("D");
-                balancesRequest.setInitialBalance(totalDebit.subtract(totalCredit));
-            } else {
-                balancesRequest.setTypicalBalance("C");
-                balancesRequest.setInitialBalance(totalCredit.subtract(totalDebit));
-            }
+            }, id, tenantId);
+        } catch (DataAccessException e) {
+            // Instalaciones nuevas no tienen la columna
+            logger.debug("No legacy closing report for id {}: {}", id, e.getMessage());
+            return null;
         }
-
-        balancesRequest.setIsCurrent(true);
-        balancesService.createBalance(balancesRequest);
+        if (report != null && report.size() > 0) {
+            jdbcTemplate.update("UPDATE accounting_closing SET REPORT_HASH = ?, REPORT_SIZE = ?, CLOSURE_REPORT_PDF = NULL WHERE id = ? AND tenant_id = ?",
+                    report.hash(), report.size(), id, tenantId);
+            logger.info("Closing report {} moved to report storage", id);
+            return report;
+        }
+        return null;
     }
 
     public AccountingClosingResponse getAccountingClosingById(Long id) {
-        AccountingClosingEntity closingEntity = accountingClosingRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Accounting closing not found with id: " + id));
+        AccountingClosingEntity closingEntity = accountingClosingRepository.findByIdAndTenantId(id, authService.getTenantId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Accounting closing not found with id: " + id));
 
         return toResponse(closingEntity);
     }
@@ -302,7 +275,8 @@ public class AccountingClosingService {
         accountingClosingResponse.setTotalIncome(accountingClosingEntity.getTotalIncome());
         accountingClosingResponse.setTotalExpenses(accountingClosingEntity.getTotalExpenses());
         accountingClosingResponse.setNetIncome(accountingClosingEntity.getNetIncome());
-        accountingClosingResponse.setClosureReportPdf(accountingClosingEntity.getClosureReportPdf());
+        accountingClosingResponse.setReportHash(accountingClosingEntity.getReportHash());
+        accountingClosingResponse.setReportSize(accountingClosingEntity.getReportSize());
         return accountingClosingResponse;
     }
 
@@ -335,19 +309,32 @@ public class AccountingClosingService {
         }
 
         try {
+            String tenantId = authService.getTenantId();
+
+            // Los totales anuales se calculan en otro hilo mientras se genera el PDF
+            CompletableFuture<ReportDataService.ClosingTotals> annualTotals = reportDataService.calculateAnnualTotalsAsync(yearPeriods, tenantId);
+
             // Generar el PDF anual con todos los períodos
-            ByteArrayOutputStream pdfOutputStream = new ByteArrayOutputStream();
-            generateAnnualReport(pdfOutputStream, yearPeriods);
+            ReportDataSnapshot annualData = reportDataService.buildSnapshot(annualPeriod);
+            ReportStorageService.StoredReport report = reportStorageService.store(os -> generateAnnualReport(os, annualData));
 
             // Crear el registro de cierre anual
             AccountingClosingEntity annualClosing = new AccountingClosingEntity();
             annualClosing.setAccountingPeriod(annualPeriod);
             annualClosing.setStartPeriod(yearPeriods.get(0).getStartPeriod());
             annualClosing.setEndPeriod(annualPeriod.getEndPeriod());
-            annualClosing.setClosureReportPdf(pdfOutputStream.toByteArray());
-
-            // Calcular totales anuales
-            calculateAnnualTotals(annualClosing, yearPeriods);
+            annualClosing.setTenantId(tenantId);
+            annualClosing.setReportHash(report.hash());
+            annualClosing.setReportSize(report.size());
+
+            // Totales anuales
+            ReportDataService.ClosingTotals totals = annualTotals.join();
+            annualClosing.setTotalAssets(totals.totalAssets());
+            annualClosing.setTotalLiabilities(totals.totalLiabilities());
+            annualClosing.setTotalCapital(totals.totalCapital());
+            annualClosing.setTotalIncome(totals.totalIncome());
+            annualClosing.setTotalExpenses(totals.totalExpenses());
+            annualClosing.setNetIncome(totals.netIncome());
 
             // Guardar el cierre anual
             accountingClosingRepository.save(annualClosing);
@@ -372,57 +359,15 @@ public class AccountingClosingService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The annual period cannot be null");
         }
 
-        annualPeriod.setPeriodStatus(PeriodStatus.CLOSED);
-        accountingPeriodRepository.save(annualPeriod);
+        // Se relee para no modificar la instancia compartida del cache
+        AccountingPeriodEntity period = accountingPeriodRepository.findById(annualPeriod.getId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Annual period not found with id: " + annualPeriod.getId()));
+        period.setPeriodStatus(PeriodStatus.CLOSED);
+        accountingPeriodRepository.save(period);
+        eventPublisher.publishEvent(new AccountingPeriodChangedEvent(period.getTenantId()));
     }
 
 
-    private void calculateAnnualTotals(AccountingClosingEntity annualClosing, List<AccountingPeriodEntity> yearPeriods) {
-        BigDecimal totalAssets = BigDecimal.ZERO;
-        BigDecimal totalLiabilities = BigDecimal.ZERO;
-        BigDecimal totalCapital = BigDecimal.ZERO;
-        BigDecimal totalIncome = BigDecimal.ZERO;
-        BigDecimal totalExpenses = BigDecimal.ZERO;
-
-        for (AccountingPeriodEntity period : yearPeriods) {
-            List<GeneralBalanceResponse> balances = generalBalanceService.getBalanceGeneral(period.getId());
-            List<IncomeStatementResponse> incomeStatement = incomeStatementService.getIncomeStatement(period.getId());
-
-            // Acumular totales del balance general
-            for (GeneralBalanceResponse balance : balances) {
-                switch (balance.getCategory()) {
-                    case "ACTIVO":
-                        totalAssets = totalAssets.add(balance.getBalance());
-                        break;
-                    case "PASIVO":
-                        totalLiabilities = totalLiabilities.add(balance.getBalance());
-                        break;
-                    case "PATRIMONIO":
-                        totalCapital = totalCapital.add(balance.getBalance());
-                        break;
-                    default:
-                        break;
-                }
-            }
-
-            // Acumular totales del estado de resultados
-            for (IncomeStatementResponse item : incomeStatement) {
-                if ("C".equals(item.getTypicalBalance())) {
-                    totalIncome = totalIncome.add(item.getAmount());
-                } else if ("D".equals(item.getTypicalBalance())) {
-                    totalExpenses = totalExpenses.add(item.getAmount());
-                }
-            }
-        }
-
-        annualClosing.setTotalAssets(totalAssets);
-        annualClosing.setTotalLiabilities(totalLiabilities);
-        annualClosing.setTotalCapital(totalCapital);
-        annualClosing.setTotalIncome(totalIncome);
-        annualClosing.setTotalExpenses(totalExpenses);
-        annualClosing.setNetIncome(totalIncome.subtract(totalExpenses));
-    }
-
     private void createNextYearPeriod(AccountingPeriodEntity currentPeriod) {
         LocalDateTime startOfNextYear = currentPeriod.getEndPeriod()
                 .plusDays(1)
@@ -455,11 +400,11 @@ public class AccountingClosingService {
 
     }
 
-    private void generateAnnualReport(OutputStream outputStream, List<AccountingPeriodEntity> yearPeriods) throws MalformedURLException {
+    private void generateAnnualReport(OutputStream outputStream, ReportDataSnapshot annualData) {
         String tenantId = authService.getTenantId();
 
         CompanyEntity company = companyRepository.findByTenantId(tenantId);
 
-        reportPdfGenerator.generateAnnualReportPdf(outputStream, yearPeriods,company);
+        reportPdfGenerator.generateAnnualReportPdf(outputStream, company, annualData);
     }
 }
\ No newline at end of file
@@ -35,7 +35,7 @@ public class AccountingJournalService {
     public List<AccountingJournalResponse> getAllAccountingJournal() {
         String tenantId = authService.getTenantId();
 
-        return this.accountingJournalRepository.findAll().stream().filter(journal -> journal.getTenantId().equals(tenantId)).map(this::toResponse).toList();
+        return this.accountingJournalRepository.findAllByTenantId(tenantId).stream().map(this::toResponse).toList();
     }
 
     public AccountingJournalResponse getAccountingJournalById(Long id) {
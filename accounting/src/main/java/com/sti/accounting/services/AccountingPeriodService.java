@@ -6,11 +6,15 @@ import com.sti.accounting.entities.AccountingPeriodEntity;
 import com.sti.accounting.models.*;
 import com.sti.accounting.repositories.IAccountingPeriodRepository;
 import com.sti.accounting.utils.PeriodStatus;
+import com.sti.accounting.utils.TtlCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Duration;
@@ -20,6 +24,7 @@ import java.time.Year;
 import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public class AccountingPeriodService {
@@ -35,10 +40,24 @@ public class AccountingPeriodService {
     private static final Logger logger = LoggerFactory.getLogger(AccountingPeriodService.class);
     private final IAccountingPeriodRepository accountingPeriodRepository;
     private final AuthService authService;
-
-    public AccountingPeriodService(IAccountingPeriodRepository accountingPeriodRepository, AuthService authService) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Periodos por tenant. AccountingPeriodChangedEvent los descarta en este nodo; los cambios hechos en otro nodo
+    // se ven al vencer el tiempo de vida (app.cache.periods.ttl-seconds)
+    private final TtlCache<String, Optional<AccountingPeriodEntity>> activePeriods;
+    private final TtlCache<String, Optional<AccountingPeriodEntity>> annualPeriods;
+    private final TtlCache<String, List<AccountingPeriodEntity>> closedPeriods;
+
+    public AccountingPeriodService(IAccountingPeriodRepository accountingPeriodRepository, AuthService authService,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${app.cache.periods.max-size:1000}") int maxSize,
+                                   @Value("${app.cache.periods.ttl-seconds:30}") long ttlSeconds) {
         this.accountingPeriodRepository = accountingPeriodRepository;
         this.authService = authService;
+        this.eventPublisher = eventPublisher;
+        this.activePeriods = new TtlCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+        this.annualPeriods = new TtlCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+        this.closedPeriods = new TtlCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
     }
 
     public List<AccountingPeriodResponse> getAllAccountingPeriod() {
@@ -126,6 +145,7 @@ public class AccountingPeriodService {
         AccountingPeriodEntity activePeriod = periods.get(0);
         activePeriod.setPeriodStatus(accountingPeriodRequest.getPeriodStatus() == null ? PeriodStatus.ACTIVE : accountingPeriodRequest.getPeriodStatus());
         accountingPeriodRepository.save(activePeriod);
+        eventPublisher.publishEvent(new AccountingPeriodChangedEvent(tenantId));
 
         return toResponse(activePeriod);
     }
@@ -268,6 +288,7 @@ public class AccountingPeriodService {
         existingAccountingPeriod.setIsAnnual(accountingPeriodRequest.getIsAnnual());
 
         accountingPeriodRepository.save(existingAccountingPeriod);
+        eventPublisher.publishEvent(new AccountingPeriodChangedEvent(tenantId));
 
         return toResponse(existingAccountingPeriod);
     }
@@ -283,28 +304,75 @@ public class AccountingPeriodService {
                         String.format("No accounting period found with ID: %d", id)));
 
         accountingPeriodRepository.delete(existingAccountingPeriod);
+        eventPublisher.publishEvent(new AccountingPeriodChangedEvent(tenantId));
         return toResponse(existingAccountingPeriod);
     }
 
     public boolean isActivePeriodExists() {
         String tenantId = authService.getTenantId();
-        return !accountingPeriodRepository.findActivePeriods(tenantId).isEmpty();
+        return getCachedActivePeriod(tenantId).isPresent();
     }
 
-    @Cacheable("activePeriod")
+    /**
+     * Periodo activo del tenant desde el cache. La instancia se comparte entre peticiones y puede estar vencida
+     * respecto a otro nodo: para modificarla se debe releer del repositorio.
+     */
     public AccountingPeriodEntity getActivePeriod() {
         String tenantId = authService.getTenantId();
 
-        return accountingPeriodRepository.findActivePeriods(tenantId)
-                .stream()
-                .findFirst()
+        return getCachedActivePeriod(tenantId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "There is no active accounting period"));
     }
 
+    /**
+     * Periodo activo confirmado contra la base de datos, para los flujos que crean o postean documentos en el. El
+     * cache de este nodo puede seguir mostrando un periodo que otro nodo ya cerro. Dentro de una transaccion la fila
+     * del periodo queda bloqueada en modo compartido hasta el commit, asi el cierre no cambia el estado mientras hay
+     * posteos en curso.
+     */
+    public AccountingPeriodEntity getActivePeriodForWrite() {
+        String tenantId = authService.getTenantId();
+
+        Optional<AccountingPeriodEntity> period = getCachedActivePeriod(tenantId).flatMap(this::findIfStillActive);
+        if (period.isEmpty()) {
+            // El cache de este nodo quedo atras de la base, se descarta y se vuelve a buscar el periodo activo
+            invalidateCaches(tenantId);
+            period = getCachedActivePeriod(tenantId).flatMap(this::findIfStillActive);
+        }
+        return period.orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "There is no active accounting period"));
+    }
+
+    private Optional<AccountingPeriodEntity> findIfStillActive(AccountingPeriodEntity cachedPeriod) {
+        Optional<AccountingPeriodEntity> current = TransactionSynchronizationManager.isActualTransactionActive()
+                ? accountingPeriodRepository.findByIdForShare(cachedPeriod.getId())
+                : accountingPeriodRepository.findById(cachedPeriod.getId());
+        return current.filter(period -> period.getPeriodStatus() == PeriodStatus.ACTIVE);
+    }
+
     public List<AccountingPeriodEntity> getClosedPeriods() {
         String tenantId = authService.getTenantId();
 
-        return accountingPeriodRepository.findByPeriodStatus(tenantId);
+        return closedPeriods.computeIfAbsent(tenantId, id -> List.copyOf(accountingPeriodRepository.findByPeriodStatus(id)));
+    }
+
+    /**
+     * Descarta los periodos en memoria del tenant. Si el cambio ocurre dentro de una transaccion se descartan al
+     * confirmarla.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountingPeriodChanged(AccountingPeriodChangedEvent event) {
+        invalidateCaches(event.getTenantId());
+    }
+
+    private void invalidateCaches(String tenantId) {
+        activePeriods.invalidate(tenantId);
+        annualPeriods.invalidate(tenantId);
+        closedPeriods.invalidate(tenantId);
+        logger.debug("Accounting period cache invalidated for tenant {}", tenantId);
+    }
+
+    private Optional<AccountingPeriodEntity> getCachedActivePeriod(String tenantId) {
+        return activePeriods.computeIfAbsent(tenantId, id -> accountingPeriodRepository.findActivePeriods(id).stream().findFirst());
     }
 
     public AccountingPeriodResponse getNextPeriodInfo() {
@@ -397,10 +465,7 @@ public class AccountingPeriodService {
     public AccountingPeriodEntity getAnnualPeriod() {
         String tenantId = authService.getTenantId();
 
-        return accountingPeriodRepository.findAll().stream()
-                .filter(period -> period.getTenantId().equals(tenantId))
-                .filter(period -> period.getIsAnnual() != null && period.getIsAnnual())
-                .findFirst()
+        return annualPeriods.computeIfAbsent(tenantId, id -> Optional.ofNullable(accountingPeriodRepository.findFirstByTenantIdAndIsAnnualTrueOrderByIdAsc(id)))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "There is no annual period available"));
     }
 
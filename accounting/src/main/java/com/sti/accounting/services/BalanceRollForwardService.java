@@ -0,0 +1,164 @@
+package com.sti.accounting.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Traslado de saldos al cerrar un periodo. Los movimientos del periodo se suman por cuenta en una sola consulta,
+ * el nuevo saldo inicial se calcula en memoria y se guarda con dos sentencias dentro de una transaccion: un UPDATE
+ * que desactiva los saldos vigentes y un INSERT de varias filas con los saldos nuevos.
+ */
+@Service
+public class BalanceRollForwardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceRollForwardService.class);
+
+    private static final String PERIOD_MOVEMENTS_SQL = "SELECT account_id, SUM(debit), SUM(credit) FROM control_account_balances " +
+            "WHERE accounting_period_id = ? AND tenant_id = ? GROUP BY account_id";
+
+    // Limite de filas por sentencia y de cuentas por IN
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    public record OpeningBalance(Long accountId, String typicalBalance, BigDecimal initialBalance) {
+    }
+
+    private record PeriodMovement(BigDecimal debit, BigDecimal credit) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public BalanceRollForwardService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Traslada los saldos del periodo como saldos iniciales vigentes. Devuelve los saldos creados.
+     */
+    public List<OpeningBalance> rollForward(Long accountingPeriodId, String tenantId) {
+        List<OpeningBalance> openingBalances = transactionTemplate.execute(status -> {
+            Map<Long, PeriodMovement> movements = getPeriodMovements(accountingPeriodId, tenantId);
+            if (movements.isEmpty()) {
+                return List.of();
+            }
+
+            List<Long> accountIds = new ArrayList<>(movements.keySet());
+            Map<Long, OpeningBalance> previousBalances = getMostRecentBalances(accountIds);
+
+            List<OpeningBalance> result = new ArrayList<>(accountIds.size());
+            for (Long accountId : accountIds) {
+                result.add(calculateOpeningBalance(accountId, movements.get(accountId), previousBalances.get(accountId)));
+            }
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            inactivateCurrentBalances(accountIds, now);
+            insertBalances(result, tenantId, now);
+            return result;
+        });
+
+        List<OpeningBalance> created = openingBalances == null ? List.of() : openingBalances;
+        logger.info("Rolled forward {} balances for accounting period {}", created.size(), accountingPeriodId);
+        return created;
+    }
+
+    private static OpeningBalance calculateOpeningBalance(Long accountId, PeriodMovement movement, OpeningBalance previous) {
+        BigDecimal totalDebit = movement.debit();
+        BigDecimal totalCredit = movement.credit();
+
+        if (previous != null && previous.initialBalance() != null) {
+            if ("D".equals(previous.typicalBalance())) {
+                totalDebit = totalDebit.add(previous.initialBalance());
+            } else if ("C".equals(previous.typicalBalance())) {
+                totalCredit = totalCredit.add(previous.initialBalance());
+            }
+        }
+
+        if (totalDebit.compareTo(totalCredit) > 0) {
+            return new OpeningBalance(accountId, "D", totalDebit.subtract(totalCredit));
+        }
+        return new OpeningBalance(accountId, "C", totalCredit.subtract(totalDebit));
+    }
+
+    private Map<Long, PeriodMovement> getPeriodMovements(Long accountingPeriodId, String tenantId) {
+        Map<Long, PeriodMovement> movements = new LinkedHashMap<>();
+        jdbcTemplate.query(PERIOD_MOVEMENTS_SQL, rs -> {
+            movements.put(rs.getLong(1), new PeriodMovement(zeroIfNull(rs.getBigDecimal(2)), zeroIfNull(rs.getBigDecimal(3))));
+        }, accountingPeriodId, tenantId);
+        return movements;
+    }
+
+    // Saldo mas reciente de cada cuenta, la primera fila por cuenta ordenada por fecha descendente
+    private Map<Long, OpeningBalance> getMostRecentBalances(List<Long> accountIds) {
+        String initialBalanceColumn = initialBalanceColumn();
+        Map<Long, OpeningBalance> balances = new HashMap<>();
+        for (int from = 0; from < accountIds.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Long> chunk = accountIds.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, accountIds.size()));
+            String sql = "SELECT account_id, typical_balance, " + initialBalanceColumn + " FROM balances WHERE account_id IN (" +
+                    placeholders(chunk.size()) + ") ORDER BY account_id, date DESC, id DESC";
+            jdbcTemplate.query(sql, rs -> {
+                long accountId = rs.getLong(1);
+                balances.putIfAbsent(accountId, new OpeningBalance(accountId, rs.getString(2), rs.getBigDecimal(3)));
+            }, chunk.toArray());
+        }
+        return balances;
+    }
+
+    private void inactivateCurrentBalances(List<Long> accountIds, Timestamp closingDate) {
+        int updated = 0;
+        for (int from = 0; from < accountIds.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Long> chunk = accountIds.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, accountIds.size()));
+            List<Object> params = new ArrayList<>(chunk.size() + 1);
+            params.add(closingDate);
+            params.addAll(chunk);
+            updated += jdbcTemplate.update("UPDATE balances SET is_current = false, closing_date = ? WHERE account_id IN (" +
+                    placeholders(chunk.size()) + ") AND is_current = true", params.toArray());
+        }
+        logger.debug("Inactivated {} current balances", updated);
+    }
+
+    private void insertBalances(List<OpeningBalance> balances, String tenantId, Timestamp date) {
+        String insert = "INSERT INTO balances (account_id, typical_balance, " + initialBalanceColumn() + ", is_current, tenant_id, date) VALUES ";
+        for (int from = 0; from < balances.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<OpeningBalance> chunk = balances.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, balances.size()));
+            StringBuilder sql = new StringBuilder(insert);
+            List<Object> params = new ArrayList<>(chunk.size() * 6);
+            for (int i = 0; i < chunk.size(); i++) {
+                OpeningBalance balance = chunk.get(i);
+                sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?)");
+                params.add(balance.accountId());
+                params.add(balance.typicalBalance());
+                params.add(balance.initialBalance());
+                params.add(true);
+                params.add(tenantId);
+                params.add(date);
+            }
+            jdbcTemplate.update(sql.toString(), params.toArray());
+        }
+    }
+
+    // La columna tiene un espacio en el nombre, se cita segun la base de datos
+    private String initialBalanceColumn() {
+        String quote = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getIdentifierQuoteString());
+        quote = quote == null || quote.isBlank() ? "" : quote;
+        return quote + "initial balance" + quote;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static BigDecimal zeroIfNull(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+}
@@ -35,7 +35,7 @@ public class BalancesService {
 
     public List<BalancesResponse> getAllBalances() {
         String tenantId = authService.getTenantId();
-        return this.iBalancesRepository.findAll().stream().filter(balances -> balances.getTenantId().equals(tenantId)).map(this::toResponse).toList();
+        return this.iBalancesRepository.findAllByTenantId(tenantId).stream().map(this::toResponse).toList();
 
     }
 
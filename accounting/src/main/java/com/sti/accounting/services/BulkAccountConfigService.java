@@ -8,87 +8,253 @@ import com.sti.accounting.utils.BulkDetailType;
 import com.sti.accounting.utils.Currency;
 import com.sti.accounting.utils.Motion;
 import com.sti.accounting.utils.Status;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.sti.accounting.utils.StreamingSheetReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class BulkAccountConfigService {
 
+    private static final Logger logger = LoggerFactory.getLogger(BulkAccountConfigService.class);
+
+    private static final ObjectMapper NDJSON_MAPPER = new ObjectMapper().disable(SerializationFeature.INDENT_OUTPUT);
+
+    private static final int VALIDATION_CHUNK_SIZE = 500;
+
+    // Validacion en paralelo acotada a los nucleos disponibles; el trabajo por fila es de CPU
+    private final ExecutorService validationExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
     private final IBulkAccountConfigRepository bulkAccountConfigRepository;
     private final ITransactionRepository transactionRepository;
     private final IDocumentRepository document;
-    private final IAccountRepository iAccountRepository;
+    private final AccountCatalogService accountCatalogService;
     private final IAccountingJournalRepository accountingJournalRepository;
     private final AccountingPeriodService accountingPeriodService;
     private final AuthService authService;
+    private final BulkTransactionInsertService bulkTransactionInsertService;
 
 
     public BulkAccountConfigService(IBulkAccountConfigRepository bulkAccountConfigRepository, ITransactionRepository transactionRepository, IDocumentRepository document,
-                                    IAccountRepository accountRepository, IAccountingJournalRepository iAccountingJournalRepository,
-                                    AccountingPeriodService accountingPeriodService, AuthService authService) {
+                                    AccountCatalogService accountCatalogService, IAccountingJournalRepository iAccountingJournalRepository,
+                                    AccountingPeriodService accountingPeriodService, AuthService authService,
+                                    BulkTransactionInsertService bulkTransactionInsertService) {
         this.bulkAccountConfigRepository = bulkAccountConfigRepository;
         this.transactionRepository = transactionRepository;
         this.document = document;
-        this.iAccountRepository = accountRepository;
+        this.accountCatalogService = accountCatalogService;
         this.accountingJournalRepository = iAccountingJournalRepository;
         this.accountingPeriodService = accountingPeriodService;
         this.authService = authService;
+        this.bulkTransactionInsertService = bulkTransactionInsertService;
+    }
+
+    @PreDestroy
+    public void shutdownValidationExecutor() {
+        validationExecutor.shutdown();
     }
 
     public UploadBulkTransactionResponse excelToObject(MultipartFile file, Long id) {
+        BulkAccountConfig config = getUploadConfig(id);
+        AccountingPeriodEntity activePeriod = getActivePeriodOrThrow();
+        String tenantId = authService.getTenantId();
+
+        File upload = copyToTempFile(file);
+        try {
+            return parseUpload(upload, config, new ArrayList<>(config.getDetails()), activePeriod, tenantId);
+        } finally {
+            deleteTempFile(upload);
+        }
+    }
+
+    /**
+     * Lectura de un archivo ya copiado a disco con configuracion, periodo y tenant resueltos de antemano; la usan los
+     * trabajos de importacion, que corren fuera del hilo de la peticion.
+     */
+    public UploadBulkTransactionResponse parseUpload(File upload, BulkAccountConfig config, List<BulkAccountConfigDetail> details,
+                                                     AccountingPeriodEntity activePeriod, String tenantId) {
+        UploadBulkTransactionResponse response = new UploadBulkTransactionResponse();
+        response.setTypeTransaction(config.getType());
+
+        List<UploadBulkTransaction> data = new ArrayList<>();
+        List<UploadBulkTransaction> errors = new ArrayList<>();
+        readUploadRows(upload, config, details, activePeriod, tenantId, (records, hasError) -> (hasError ? errors : data).add(records));
+
+        response.setData(data);
+        response.setErrors(errors);
+        return response;
+    }
+
+    // Modo streaming: cada fila validada se escribe como una linea NDJSON en cuanto se procesa.
+    // Configuracion, periodo y tenant se resuelven en el hilo de la peticion porque la escritura corre en otro hilo.
+    public StreamingResponseBody streamExcelRows(MultipartFile file, Long id) {
+        BulkAccountConfig config = getUploadConfig(id);
+        List<BulkAccountConfigDetail> details = new ArrayList<>(config.getDetails());
+        AccountingPeriodEntity activePeriod = getActivePeriodOrThrow();
+        String tenantId = authService.getTenantId();
+        File upload = copyToTempFile(file);
+
+        return outputStream -> {
+            try {
+                readUploadRows(upload, config, details, activePeriod, tenantId, (records, hasError) -> {
+                    try {
+                        outputStream.write(NDJSON_MAPPER.writeValueAsBytes(records));
+                        outputStream.write('\n');
+                        outputStream.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } finally {
+                deleteTempFile(upload);
+            }
+        };
+    }
+
+    BulkAccountConfig getUploadConfig(Long id) {
         if (id == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bad request");
 
-        BulkAccountConfig config = bulkAccountConfigRepository.findById(id)
+        return bulkAccountConfigRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
 
-        AccountingPeriodEntity activePeriod = getActivePeriodOrThrow();
+    // Se conserva el comportamiento de la lectura con XSSFWorkbook: se procesa desde la fila inicial de la
+    // configuracion y la ultima fila de la hoja no se incluye, por eso cada fila se procesa al llegar la siguiente.
+    // Las filas se validan por bloques de VALIDATION_CHUNK_SIZE.
+    private void readUploadRows(File upload, BulkAccountConfig config, List<BulkAccountConfigDetail> details,
+                                AccountingPeriodEntity activePeriod, String tenantId, UploadRowConsumer consumer) {
         int startRow = config.getRowStart() - 1;
+        Set<String> references = new HashSet<>();
+        PendingRow[] pending = new PendingRow[1];
+        List<PendingRow> chunk = new ArrayList<>(VALIDATION_CHUNK_SIZE);
 
-        try (InputStream inputStream = file.getInputStream()) {
-            Workbook workbook = new XSSFWorkbook(inputStream);
-            Sheet sheet = workbook.getSheetAt(0);
-            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        try {
+            StreamingSheetReader.read(upload, (rowIndex, values) -> {
+                if (rowIndex < startRow) {
+                    return;
+                }
+                if (pending[0] != null) {
+                    chunk.add(pending[0]);
+                    if (chunk.size() == VALIDATION_CHUNK_SIZE) {
+                        validateChunk(chunk, details, activePeriod, tenantId, references, consumer);
+                        chunk.clear();
+                    }
+                }
+                pending[0] = new PendingRow(rowIndex, values);
+            });
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No se pudo leer el archivo: " + e.getMessage());
+        }
+        if (!chunk.isEmpty()) {
+            validateChunk(chunk, details, activePeriod, tenantId, references, consumer);
+        }
+    }
 
-            UploadBulkTransactionResponse response = new UploadBulkTransactionResponse();
-            response.setTypeTransaction(config.getType());
+    // 1) cada fila se interpreta y valida en paralelo (campos, fecha, cuentas y balance),
+    // 2) las facturas del bloque se buscan con un solo IN (...),
+    // 3) los duplicados dentro del archivo se resuelven en orden de fila y se entregan los resultados en ese orden.
+    private void validateChunk(List<PendingRow> chunk, List<BulkAccountConfigDetail> details, AccountingPeriodEntity activePeriod,
+                               String tenantId, Set<String> references, UploadRowConsumer consumer) {
+        List<CompletableFuture<ParsedRow>> futures = new ArrayList<>(chunk.size());
+        for (PendingRow row : chunk) {
+            futures.add(CompletableFuture.supplyAsync(() -> parseUploadRow(row, details, activePeriod), validationExecutor));
+        }
+        List<ParsedRow> parsed = futures.stream().map(CompletableFuture::join).toList();
 
-            List<UploadBulkTransaction> data = new ArrayList<>();
-            List<UploadBulkTransaction> errors = new ArrayList<>();
-            Set<String> references = new HashSet<>();
+        Set<String> chunkReferences = new HashSet<>();
+        for (ParsedRow row : parsed) {
+            String reference = row.records().getReference();
+            if (reference != null && !reference.isEmpty() && !references.contains(reference)) {
+                chunkReferences.add(reference);
+            }
+        }
+        Set<String> existing = chunkReferences.isEmpty()
+                ? Set.of()
+                : new HashSet<>(transactionRepository.findExistingReferences(tenantId, chunkReferences));
+
+        for (ParsedRow row : parsed) {
+            boolean hasError = row.hasError();
+            UploadBulkTransaction records = row.records();
+            String reference = records.getReference();
+            if (reference != null && !reference.isEmpty()) {
+                if (references.contains(reference) || existing.contains(reference)) {
+                    records.setReference(null);
+                    records.setErrors(errorMessage(records.getErrors(), "La factura ingresada '" + reference + "' ya existe en el sistema."));
+                    hasError = true;
+                } else {
+                    references.add(reference);
+                }
+            }
+            consumer.accept(records, hasError);
+        }
+    }
+
+    private ParsedRow parseUploadRow(PendingRow row, List<BulkAccountConfigDetail> details, AccountingPeriodEntity activePeriod) {
+        UploadBulkTransaction records = new UploadBulkTransaction();
+        records.setRow(row.rowIndex() + 1);
+        boolean hasError = processRow(row.values(), details, records, activePeriod);
+
+        if (!validateBalance(records)) hasError = true;
+
+        records.setStatus(Status.DRAFT);
+        return new ParsedRow(records, hasError);
+    }
+
+    private record ParsedRow(UploadBulkTransaction records, boolean hasError) {
+    }
 
-            for (int i = startRow; i < sheet.getLastRowNum(); i++) {
-                UploadBulkTransaction records = new UploadBulkTransaction();
-                records.setRow(i + 1);
-                boolean hasError = processRow(sheet.getRow(i), config, evaluator, records, activePeriod, references);
+    private record PendingRow(int rowIndex, String[] values) {
+    }
 
-                if (!validateBalance(records)) hasError = true;
+    @FunctionalInterface
+    private interface UploadRowConsumer {
+        void accept(UploadBulkTransaction records, boolean hasError);
+    }
 
-                records.setStatus(Status.DRAFT);
-                (hasError ? errors : data).add(records);
+    static File copyToTempFile(MultipartFile file) {
+        try {
+            File upload = Files.createTempFile("bulk-upload-", ".xlsx").toFile();
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, upload.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
+            return upload;
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se pudo recibir el archivo");
+        }
+    }
 
-            response.setData(data);
-            response.setErrors(errors);
-            return response;
+    static void deleteTempFile(File upload) {
+        try {
+            Files.deleteIfExists(upload.toPath());
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            logger.warn("Could not delete temp upload {}", upload, e);
         }
     }
 
-    private AccountingPeriodEntity getActivePeriodOrThrow() {
+    AccountingPeriodEntity getActivePeriodOrThrow() {
         try {
             return accountingPeriodService.getActivePeriod();
         } catch (ResponseStatusException e) {
@@ -96,14 +262,13 @@ public class BulkAccountConfigService {
         }
     }
 
-    private boolean processRow(Row row, BulkAccountConfig config, FormulaEvaluator evaluator,
-                               UploadBulkTransaction transaction, AccountingPeriodEntity activePeriod,
-                               Set<String> references) {
+    private boolean processRow(String[] values, List<BulkAccountConfigDetail> details,
+                               UploadBulkTransaction transaction, AccountingPeriodEntity activePeriod) {
         boolean error = false;
 
-        for (BulkAccountConfigDetail detail : config.getDetails()) {
-            String strValue = getCellValue(row.getCell(detail.getColIndex()), evaluator);
-            error |= processField(detail, strValue, transaction, activePeriod, references);
+        for (BulkAccountConfigDetail detail : details) {
+            String strValue = getCellValue(values, detail.getColIndex());
+            error |= processField(detail, strValue, transaction, activePeriod);
             if ("DETALLE".equalsIgnoreCase(detail.getTitle()) && "NULO".equalsIgnoreCase(strValue)) return true;
         }
 
@@ -115,17 +280,13 @@ public class BulkAccountConfigService {
         return error;
     }
 
-    private String getCellValue(Cell cell, FormulaEvaluator evaluator) {
-        DataFormatter formatter = new DataFormatter();
-        if (cell == null) return "";
-        return cell.getCellType() == CellType.FORMULA
-                ? String.valueOf(evaluator.evaluate(cell).getNumberValue())
-                : formatter.formatCellValue(cell);
+    private static String getCellValue(String[] values, Integer colIndex) {
+        if (colIndex == null || colIndex < 0 || colIndex >= values.length) return "";
+        return values[colIndex];
     }
 
     private boolean processField(BulkAccountConfigDetail detail, String strValue,
-                                 UploadBulkTransaction transaction, AccountingPeriodEntity activePeriod,
-                                 Set<String> references) {
+                                 UploadBulkTransaction transaction, AccountingPeriodEntity activePeriod) {
         String field = detail.getTitle();
         boolean error = false;
         switch (field) {
@@ -136,7 +297,8 @@ public class BulkAccountConfigService {
                 error |= processDateField(strValue, transaction, activePeriod);
                 break;
             case "FACTURA":
-                error |= processReferenceField(strValue, transaction, references);
+                // La existencia de la factura se valida por bloque en validateChunk
+                transaction.setReference(strValue);
                 break;
             case "CON-RTN": transaction.setRtn(strValue); break;
             case "SUPPLIER_value": transaction.setSupplierName(strValue); break;
@@ -181,28 +343,6 @@ public class BulkAccountConfigService {
         return false;
     }
 
-    private boolean processReferenceField(String strValue, UploadBulkTransaction transaction, Set<String> references) {
-        if (strValue == null || strValue.isEmpty()) {
-            transaction.setReference(strValue);
-            return false;
-        }
-
-        if (references.contains(strValue)) {
-            transaction.setErrors(errorMessage(transaction.getErrors(), "La factura ingresada '" + strValue + "' ya existe en el sistema."));
-            return true;
-        }
-
-        if (transactionRepository.existsByReferenceAndTenantId(strValue, authService.getTenantId())) {
-            transaction.setErrors(errorMessage(transaction.getErrors(), "La factura ingresada '" + strValue + "' ya existe en el sistema."));
-            return true;
-        }
-
-        references.add(strValue);
-        transaction.setReference(strValue);
-        return false;
-    }
-
-
     private void addAccountField(BulkAccountConfigDetail detail, String strValue, UploadBulkTransaction transaction) {
         UploadBulkAccountsListResponse account = getAccountsListResponse(detail, strValue);
         transaction.getAccounts().add(account);
@@ -304,11 +444,27 @@ public class BulkAccountConfigService {
     }
 
     public UploadBulkTransactionResponse saveTransactionsUpload(UploadBulkTransactionResponse request) {
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
+        String tenantId = authService.getTenantId();
+        String username = authService.getUsername();
+        return importTransactions(request, activePeriod, tenantId, username, bulkTransactionInsertService.getChunkSize(), 0,
+                (chunkIndex, inserted, total) -> logger.debug("Upload of tenant {}: {}/{} transactions saved", tenantId, inserted, total));
+    }
+
+    /**
+     * Valida y guarda las filas de una carga sin depender del usuario autenticado, por eso tambien se usa desde los
+     * trabajos de importacion en segundo plano. El orden de las partidas a guardar es estable para la misma carga,
+     * asi una importacion interrumpida se reanuda desde {@code firstChunk}.
+     */
+    public UploadBulkTransactionResponse importTransactions(UploadBulkTransactionResponse request, AccountingPeriodEntity activePeriod,
+                                                            String tenantId, String username, int chunkSize, int firstChunk,
+                                                            BulkTransactionInsertService.ProgressListener listener) {
         try {
             List<UploadBulkTransaction> merged = mergeRequests(request);
             DocumentEntity documentType = getDocumentEntity(request.getTypeTransaction());
             AccountingJournalEntity accountingJournal = getAccountingJournal(request.getTypeTransaction());
-            AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+            // Catalogo de cuentas del tenant en memoria, sin consultas por carga
+            AccountCatalogService.AccountCatalog accounts = accountCatalogService.getCatalog(tenantId);
 
             UploadBulkTransactionResponse response = new UploadBulkTransactionResponse();
             response.setTypeTransaction(request.getTypeTransaction());
@@ -318,7 +474,9 @@ public class BulkAccountConfigService {
             List<UploadBulkTransaction> errorTransactions = new ArrayList<>();
 
             for (UploadBulkTransaction transaction : merged) {
-                TransactionEntity entity = createTransactionEntity(transaction, documentType, accountingJournal, activePeriod);
+                TransactionEntity entity = createTransactionEntity(transaction, documentType, accountingJournal, activePeriod, accounts);
+                entity.setTenantId(tenantId);
+                entity.setCreatedBy(username);
 
                 if (validateTransaction(entity, transaction)) {
                     entitiesToSave.add(entity);
@@ -328,7 +486,7 @@ public class BulkAccountConfigService {
                 }
             }
 
-            transactionRepository.saveAll(entitiesToSave);
+            bulkTransactionInsertService.insert(entitiesToSave, tenantId, chunkSize, firstChunk, listener);
 
             response.setData(successTransactions);
             response.setErrors(errorTransactions);
@@ -340,8 +498,8 @@ public class BulkAccountConfigService {
 
     private List<UploadBulkTransaction> mergeRequests(UploadBulkTransactionResponse request) {
         List<UploadBulkTransaction> merged = new ArrayList<>();
-        merged.addAll(request.getData());
-        merged.addAll(request.getErrors());
+        if (request.getData() != null) merged.addAll(request.getData());
+        if (request.getErrors() != null) merged.addAll(request.getErrors());
         return merged;
     }
 
@@ -359,7 +517,7 @@ public class BulkAccountConfigService {
 
     private TransactionEntity createTransactionEntity(UploadBulkTransaction transaction,
                                                       DocumentEntity documentType, AccountingJournalEntity accountingJournal,
-                                                      AccountingPeriodEntity activePeriod) {
+                                                      AccountingPeriodEntity activePeriod, AccountCatalogService.AccountCatalog accounts) {
         TransactionEntity entity = new TransactionEntity();
         entity.setDocument(documentType);
         entity.setStatus(StatusTransaction.DRAFT);
@@ -374,9 +532,8 @@ public class BulkAccountConfigService {
         entity.setTypePayment(transaction.getTypePayment());
         entity.setRtn(transaction.getRtn() != null ? transaction.getRtn().toUpperCase() : null);
         entity.setSupplierName(transaction.getSupplierName());
-        entity.setTenantId(authService.getTenantId());
 
-        List<TransactionDetailEntity> details = detailToEntity(entity, transaction.getAccounts());
+        List<TransactionDetailEntity> details = detailToEntity(entity, transaction.getAccounts(), accounts);
         entity.setTransactionDetail(details);
 
         return entity;
@@ -439,13 +596,13 @@ public class BulkAccountConfigService {
     }
 
 
-    private List<TransactionDetailEntity> detailToEntity(TransactionEntity transactionEntity, List<UploadBulkAccountsListResponse> detailRequests) {
+    private List<TransactionDetailEntity> detailToEntity(TransactionEntity transactionEntity, List<UploadBulkAccountsListResponse> detailRequests,
+                                                         AccountCatalogService.AccountCatalog accounts) {
         try {
             List<TransactionDetailEntity> result = new ArrayList<>();
-            List<AccountEntity> accounts = iAccountRepository.findAll();
             for (UploadBulkAccountsListResponse detail : detailRequests) {
                 TransactionDetailEntity entity = new TransactionDetailEntity();
-                Optional<AccountEntity> currentAccount = accounts.stream().filter(x -> x.getId().equals(detail.getAccount())).findFirst();
+                Optional<AccountEntity> currentAccount = accounts.findById(detail.getAccount());
                 if (currentAccount.isEmpty()) {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The account with id " + detail.getAccount() + "does not exist.");
                 }
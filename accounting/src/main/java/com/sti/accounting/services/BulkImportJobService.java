@@ -0,0 +1,354 @@
+package com.sti.accounting.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.entities.BulkAccountConfig;
+import com.sti.accounting.entities.BulkAccountConfigDetail;
+import com.sti.accounting.entities.BulkImportJobEntity;
+import com.sti.accounting.models.BulkImportJobResponse;
+import com.sti.accounting.models.UploadBulkTransaction;
+import com.sti.accounting.models.UploadBulkTransactionResponse;
+import com.sti.accounting.repositories.IAccountingPeriodRepository;
+import com.sti.accounting.repositories.IBulkImportJobRepository;
+import com.sti.accounting.utils.BulkImportJobStatus;
+import com.sti.accounting.utils.PeriodStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Importaciones masivas en segundo plano. La peticion solo registra el trabajo y devuelve su id; el avance se
+ * consulta con {@link #getJob(Long)}.
+ * <p>
+ * Los trabajos corren en un pool acotado y se reparten por turnos entre tenants, con un maximo de trabajos
+ * simultaneos por tenant, para que una carga grande no acapare a los demas. Cada bloque confirmado guarda su punto
+ * de control en la misma transaccion, y al iniciar la aplicacion se reanudan los trabajos que quedaron a medias.
+ */
+@Service
+public class BulkImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkImportJobService.class);
+
+    private static final ObjectMapper JOB_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<List<UploadBulkTransaction>> ERRORS_TYPE = new TypeReference<>() {
+    };
+
+    // Archivo pendiente de leer; solo vive en memoria del nodo que recibio la peticion
+    private record UploadFile(File file, BulkAccountConfig config, List<BulkAccountConfigDetail> details) {
+    }
+
+    private final IBulkImportJobRepository jobRepository;
+    private final IAccountingPeriodRepository accountingPeriodRepository;
+    private final BulkAccountConfigService bulkAccountConfigService;
+    private final BulkTransactionInsertService bulkTransactionInsertService;
+    private final AuthService authService;
+
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final int maxJobsPerTenant;
+    private final Duration staleAfter;
+    private final String nodeId;
+
+    private final Map<Long, UploadFile> pendingFiles = new ConcurrentHashMap<>();
+
+    // Cola por tenant y turno de atencion; protegidos por el monitor de la instancia
+    private final Map<String, Deque<Long>> queues = new HashMap<>();
+    private final Deque<String> tenantTurns = new ArrayDeque<>();
+    private final Map<String, Integer> runningByTenant = new HashMap<>();
+    private int running;
+
+    public BulkImportJobService(IBulkImportJobRepository jobRepository, IAccountingPeriodRepository accountingPeriodRepository,
+                                BulkAccountConfigService bulkAccountConfigService, BulkTransactionInsertService bulkTransactionInsertService,
+                                AuthService authService,
+                                @Value("${app.bulk.jobs.workers:2}") int workerCount,
+                                @Value("${app.bulk.jobs.max-per-tenant:1}") int maxJobsPerTenant,
+                                @Value("${app.bulk.jobs.stale-after-seconds:600}") long staleAfterSeconds,
+                                @Value("${app.bulk.jobs.node-id:}") String nodeId) {
+        this.jobRepository = jobRepository;
+        this.accountingPeriodRepository = accountingPeriodRepository;
+        this.bulkAccountConfigService = bulkAccountConfigService;
+        this.bulkTransactionInsertService = bulkTransactionInsertService;
+        this.authService = authService;
+        this.workerCount = Math.max(1, workerCount);
+        this.maxJobsPerTenant = Math.max(1, maxJobsPerTenant);
+        this.staleAfter = Duration.ofSeconds(staleAfterSeconds);
+        this.nodeId = nodeId == null || nodeId.isBlank() ? hostName() : nodeId;
+        this.workers = Executors.newFixedThreadPool(this.workerCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Los trabajos en curso quedan en RUNNING y se reanudan desde su ultimo bloque al reiniciar
+        workers.shutdownNow();
+    }
+
+    public BulkImportJobResponse submit(UploadBulkTransactionResponse request) {
+        AccountingPeriodEntity activePeriod = bulkAccountConfigService.getActivePeriodOrThrow();
+        BulkImportJobEntity job = newJob(request.getTypeTransaction(), activePeriod);
+        job.setPayload(toJson(request));
+        job.setTotalRows(size(request.getData()) + size(request.getErrors()));
+        job = jobRepository.save(job);
+
+        // La respuesta se arma antes de encolar, el trabajo puede empezar de inmediato en otro hilo
+        BulkImportJobResponse response = toResponse(job);
+        enqueue(job.getTenantId(), job.getId());
+        return response;
+    }
+
+    public BulkImportJobResponse submitFile(MultipartFile file, Long configId) {
+        BulkAccountConfig config = bulkAccountConfigService.getUploadConfig(configId);
+        List<BulkAccountConfigDetail> details = new ArrayList<>(config.getDetails());
+        AccountingPeriodEntity activePeriod = bulkAccountConfigService.getActivePeriodOrThrow();
+        File upload = BulkAccountConfigService.copyToTempFile(file);
+
+        BulkImportJobEntity job;
+        try {
+            job = jobRepository.save(newJob(config.getType(), activePeriod));
+        } catch (RuntimeException e) {
+            BulkAccountConfigService.deleteTempFile(upload);
+            throw e;
+        }
+        pendingFiles.put(job.getId(), new UploadFile(upload, config, details));
+
+        BulkImportJobResponse response = toResponse(job);
+        enqueue(job.getTenantId(), job.getId());
+        return response;
+    }
+
+    public BulkImportJobResponse getJob(Long id) {
+        return jobRepository.findByIdAndTenantId(id, authService.getTenantId())
+                .map(this::toResponse)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Import job not found"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        List<BulkImportJobEntity> pending = jobRepository.findAllByStatusIn(List.of(BulkImportJobStatus.QUEUED, BulkImportJobStatus.RUNNING));
+        for (BulkImportJobEntity job : pending) {
+            if (jobRepository.claim(job.getId(), nodeId, now, now.minus(staleAfter)) == 1) {
+                logger.info("Resuming bulk import job {} from chunk {}", job.getId(), job.getCommittedChunks());
+                enqueue(job.getTenantId(), job.getId());
+            }
+        }
+    }
+
+    private BulkImportJobEntity newJob(Long typeTransaction, AccountingPeriodEntity activePeriod) {
+        BulkImportJobEntity job = new BulkImportJobEntity();
+        job.setStatus(BulkImportJobStatus.QUEUED);
+        job.setTypeTransaction(typeTransaction);
+        job.setAccountingPeriodId(activePeriod.getId());
+        job.setProcessedRows(0);
+        job.setErrorRows(0);
+        job.setCommittedChunks(0);
+        job.setChunkSize(bulkTransactionInsertService.getChunkSize());
+        job.setNodeId(nodeId);
+        job.setHeartbeat(LocalDateTime.now());
+        job.setTenantId(authService.getTenantId());
+        job.setCreatedBy(authService.getUsername());
+        return job;
+    }
+
+    private synchronized void enqueue(String tenantId, Long jobId) {
+        queues.computeIfAbsent(tenantId, key -> {
+            tenantTurns.addLast(key);
+            return new ArrayDeque<>();
+        }).addLast(jobId);
+        dispatch();
+    }
+
+    // Reparte los lugares libres del pool por turnos entre los tenants con trabajos en cola
+    private synchronized void dispatch() {
+        int skipped = 0;
+        while (running < workerCount && skipped < tenantTurns.size()) {
+            String tenantId = tenantTurns.pollFirst();
+            if (runningByTenant.getOrDefault(tenantId, 0) >= maxJobsPerTenant) {
+                tenantTurns.addLast(tenantId);
+                skipped++;
+                continue;
+            }
+
+            Deque<Long> queue = queues.get(tenantId);
+            Long jobId = queue.pollFirst();
+            if (queue.isEmpty()) {
+                queues.remove(tenantId);
+            } else {
+                tenantTurns.addLast(tenantId);
+            }
+            skipped = 0;
+
+            running++;
+            runningByTenant.merge(tenantId, 1, Integer::sum);
+            workers.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    finished(tenantId);
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(String tenantId) {
+        running--;
+        runningByTenant.computeIfPresent(tenantId, (key, count) -> count > 1 ? count - 1 : null);
+        dispatch();
+    }
+
+    private void run(Long jobId) {
+        UploadFile upload = pendingFiles.remove(jobId);
+        BulkImportJobEntity job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            if (upload != null) BulkAccountConfigService.deleteTempFile(upload.file());
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            job.setStatus(BulkImportJobStatus.RUNNING);
+            if (job.getStartedAt() == null) job.setStartedAt(LocalDateTime.now());
+            job.setHeartbeat(LocalDateTime.now());
+            job = jobRepository.save(job);
+
+            AccountingPeriodEntity period = accountingPeriodRepository.findById(job.getAccountingPeriodId())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Accounting period not found"));
+            // El periodo se fijo al enviar la carga; si se cerro mientras el trabajo esperaba o antes de reanudarlo no se importa
+            if (period.getPeriodStatus() != PeriodStatus.ACTIVE) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        String.format("El periodo contable %s ya no esta activo, la carga no se importo", period.getPeriodName()));
+            }
+
+            List<UploadBulkTransaction> errors = new ArrayList<>(readErrors(job));
+            if (job.getPayload() == null) {
+                job = parseFile(job, upload, period, errors);
+            }
+
+            UploadBulkTransactionResponse request = JOB_MAPPER.readValue(job.getPayload(), UploadBulkTransactionResponse.class);
+            Long id = job.getId();
+            UploadBulkTransactionResponse result = bulkAccountConfigService.importTransactions(request, period, job.getTenantId(),
+                    job.getCreatedBy(), job.getChunkSize(), job.getCommittedChunks(), (chunkIndex, inserted, total) ->
+                            jobRepository.updateCheckpoint(id, chunkIndex + 1, inserted, LocalDateTime.now()));
+
+            errors.addAll(result.getErrors());
+            job = jobRepository.findById(id).orElse(job);
+            job.setStatus(BulkImportJobStatus.COMPLETED);
+            job.setProcessedRows(result.getData().size());
+            job.setErrorRows(errors.size());
+            job.setErrors(toJson(errors));
+        } catch (Exception e) {
+            logger.error("Bulk import job {} failed", jobId, e);
+            job = jobRepository.findById(jobId).orElse(job);
+            job.setStatus(BulkImportJobStatus.FAILED);
+            job.setMessage(e.getMessage());
+        } finally {
+            if (upload != null) BulkAccountConfigService.deleteTempFile(upload.file());
+        }
+
+        job.setFinishedAt(LocalDateTime.now());
+        job.setHeartbeat(job.getFinishedAt());
+        jobRepository.save(job);
+        logger.info("Bulk import job {} {} in {} ms", jobId, job.getStatus(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Las filas con error de lectura se reportan en el trabajo y solo las validas pasan a importarse
+    private BulkImportJobEntity parseFile(BulkImportJobEntity job, UploadFile upload, AccountingPeriodEntity period,
+                                          List<UploadBulkTransaction> errors) {
+        if (upload == null) {
+            throw new ResponseStatusException(HttpStatus.GONE, "El archivo de la carga ya no esta disponible, envielo de nuevo");
+        }
+        UploadBulkTransactionResponse parsed = bulkAccountConfigService.parseUpload(upload.file(), upload.config(), upload.details(),
+                period, job.getTenantId());
+        errors.addAll(parsed.getErrors());
+
+        UploadBulkTransactionResponse request = new UploadBulkTransactionResponse();
+        request.setTypeTransaction(parsed.getTypeTransaction());
+        request.setData(parsed.getData());
+        request.setErrors(List.of());
+
+        job.setPayload(toJson(request));
+        job.setErrors(toJson(errors));
+        job.setTotalRows(parsed.getData().size() + parsed.getErrors().size());
+        job.setErrorRows(errors.size());
+        return jobRepository.save(job);
+    }
+
+    private BulkImportJobResponse toResponse(BulkImportJobEntity job) {
+        BulkImportJobResponse response = new BulkImportJobResponse();
+        response.setId(job.getId());
+        response.setStatus(job.getStatus());
+        response.setTypeTransaction(job.getTypeTransaction());
+        response.setTotalRows(job.getTotalRows());
+        response.setProcessedRows(job.getProcessedRows());
+        response.setErrorRows(job.getErrorRows());
+        response.setCommittedChunks(job.getCommittedChunks());
+        response.setRowsPerSecond(rowsPerSecond(job));
+        response.setMessage(job.getMessage());
+        response.setErrors(readErrors(job));
+        response.setCreateAt(job.getCreateAt());
+        response.setStartedAt(job.getStartedAt());
+        response.setFinishedAt(job.getFinishedAt());
+        return response;
+    }
+
+    private static BigDecimal rowsPerSecond(BulkImportJobEntity job) {
+        if (job.getStartedAt() == null || job.getProcessedRows() == null) {
+            return BigDecimal.ZERO;
+        }
+        LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+        long millis = Math.max(1, Duration.between(job.getStartedAt(), end).toMillis());
+        return BigDecimal.valueOf(job.getProcessedRows() * 1000L).divide(BigDecimal.valueOf(millis), 2, RoundingMode.HALF_UP);
+    }
+
+    private static List<UploadBulkTransaction> readErrors(BulkImportJobEntity job) {
+        if (job.getErrors() == null) {
+            return List.of();
+        }
+        try {
+            return JOB_MAPPER.readValue(job.getErrors(), ERRORS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Invalid import job errors");
+        }
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return JOB_MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not store import job data");
+        }
+    }
+
+    private static int size(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.TransactionDetailEntity;
+import com.sti.accounting.entities.TransactionEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Insercion masiva de partidas para la carga de archivos. Las partidas se confirman por bloques: cada bloque
+ * reserva de una vez los numeros de PDA que necesita en pda_sequence y se inserta con INSERT de varias filas,
+ * primero las partidas y despues sus detalles. Un error en un bloque solo revierte ese bloque.
+ */
+@Service
+public class BulkTransactionInsertService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkTransactionInsertService.class);
+
+    private static final String TRANSACTION_COLUMNS = "INSERT INTO transactions (creation_date, date, status, reference, exchange_rate, " +
+            "description_pda, number_pda, currency, type_sale, cash_value, credit_value, type_payment, rtn, supplier_name, " +
+            "document_id, diary_id, accounting_period_id, tenant_id, created_by) VALUES ";
+
+    private static final String TRANSACTION_VALUES = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DETAIL_COLUMNS = "INSERT INTO transaction_detail (transaction_id, account_id, amount, motion) VALUES ";
+
+    private static final String DETAIL_VALUES = "(?, ?, ?, ?)";
+
+    private static final String INSERTED_IDS_SQL = "SELECT id, number_pda FROM transactions WHERE tenant_id = ? AND number_pda BETWEEN ? AND ?";
+
+    // Limite de filas por sentencia para los detalles, cada partida tiene varios
+    private static final int MAX_DETAIL_ROWS_PER_STATEMENT = 1000;
+
+    /**
+     * Avance de la insercion. Se notifica dentro de la transaccion de cada bloque, justo antes del commit,
+     * para que un punto de control guardado aqui se confirme junto con las filas del bloque.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void chunkCommitted(int chunkIndex, int inserted, int total);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PdaSequenceService pdaSequenceService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public BulkTransactionInsertService(JdbcTemplate jdbcTemplate, PdaSequenceService pdaSequenceService, PlatformTransactionManager transactionManager,
+                                        @Value("${app.bulk.insert.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pdaSequenceService = pdaSequenceService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int insert(List<TransactionEntity> transactions, String tenantId, ProgressListener listener) {
+        return insert(transactions, tenantId, chunkSize, 0, listener);
+    }
+
+    /**
+     * Inserta las partidas en bloques de {@code rowsPerChunk} a partir del bloque {@code firstChunk}; los bloques
+     * anteriores ya se confirmaron.
+     * Devuelve el numero de partidas insertadas en esta llamada.
+     */
+    public int insert(List<TransactionEntity> transactions, String tenantId, int rowsPerChunk, int firstChunk, ProgressListener listener) {
+        int total = transactions.size();
+        int inserted = Math.min(total, firstChunk * rowsPerChunk);
+        int chunkIndex = firstChunk;
+        int insertedNow = 0;
+
+        while (inserted < total) {
+            List<TransactionEntity> chunk = transactions.subList(inserted, Math.min(total, inserted + rowsPerChunk));
+            int index = chunkIndex;
+            int done = inserted + chunk.size();
+            long start = System.nanoTime();
+            transactionTemplate.executeWithoutResult(status -> {
+                insertChunk(chunk, tenantId);
+                if (listener != null) {
+                    listener.chunkCommitted(index, done, total);
+                }
+            });
+
+            inserted = done;
+            insertedNow += chunk.size();
+            logger.info("Bulk insert chunk {} committed: {}/{} transactions in {} ms", chunkIndex, inserted, total,
+                    (System.nanoTime() - start) / 1_000_000);
+            chunkIndex++;
+        }
+        return insertedNow;
+    }
+
+    private void insertChunk(List<TransactionEntity> chunk, String tenantId) {
+        // Rango reservado en la transaccion del bloque: si el bloque se revierte los numeros no se pierden
+        long firstNumber = pdaSequenceService.reserveRange(tenantId, chunk.size());
+        long lastNumber = firstNumber + chunk.size() - 1;
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object> args = new ArrayList<>(chunk.size() * 19);
+        long number = firstNumber;
+        for (TransactionEntity transaction : chunk) {
+            transaction.setNumberPda(BigInteger.valueOf(number++));
+            transaction.setTenantId(tenantId);
+            addTransactionArgs(args, transaction, createdAt);
+        }
+        jdbcTemplate.update(TRANSACTION_COLUMNS + placeholders(TRANSACTION_VALUES, chunk.size()), args.toArray());
+
+        // Los ids se recuperan por el rango de PDA reservado, no dependen de ids autoincrementales consecutivos
+        Map<Long, Long> idsByNumber = new HashMap<>();
+        jdbcTemplate.query(INSERTED_IDS_SQL, rs -> {
+            idsByNumber.put(rs.getLong("number_pda"), rs.getLong("id"));
+        }, tenantId, firstNumber, lastNumber);
+
+        List<Object[]> details = new ArrayList<>();
+        for (TransactionEntity transaction : chunk) {
+            Long id = idsByNumber.get(transaction.getNumberPda().longValue());
+            if (id == null) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                        "Transaction with PDA " + transaction.getNumberPda() + " was not inserted");
+            }
+            transaction.setId(id);
+            for (TransactionDetailEntity detail : transaction.getTransactionDetail()) {
+                details.add(new Object[]{id, detail.getAccount().getId(), detail.getAmount(), detail.getMotion().name()});
+            }
+        }
+        insertDetails(details);
+    }
+
+    private void insertDetails(List<Object[]> details) {
+        for (int from = 0; from < details.size(); from += MAX_DETAIL_ROWS_PER_STATEMENT) {
+            List<Object[]> rows = details.subList(from, Math.min(details.size(), from + MAX_DETAIL_ROWS_PER_STATEMENT));
+            List<Object> args = new ArrayList<>(rows.size() * 4);
+            for (Object[] row : rows) {
+                args.addAll(Arrays.asList(row));
+            }
+            jdbcTemplate.update(DETAIL_COLUMNS + placeholders(DETAIL_VALUES, rows.size()), args.toArray());
+        }
+    }
+
+    private static void addTransactionArgs(List<Object> args, TransactionEntity transaction, Timestamp createdAt) {
+        args.add(createdAt);
+        args.add(transaction.getCreateAtDate() != null ? Date.valueOf(transaction.getCreateAtDate()) : null);
+        args.add(transaction.getStatus() != null ? transaction.getStatus().name() : null);
+        args.add(transaction.getReference());
+        args.add(transaction.getExchangeRate());
+        args.add(transaction.getDescriptionPda());
+        args.add(transaction.getNumberPda().longValue());
+        args.add(transaction.getCurrency() != null ? transaction.getCurrency().name() : null);
+        args.add(transaction.getTypeSale());
+        args.add(transaction.getCashValue());
+        args.add(transaction.getCreditValue());
+        args.add(transaction.getTypePayment());
+        args.add(transaction.getRtn());
+        args.add(transaction.getSupplierName());
+        args.add(transaction.getDocument().getId());
+        args.add(transaction.getAccountingJournal() != null ? transaction.getAccountingJournal().getId() : null);
+        args.add(transaction.getAccountingPeriod() != null ? transaction.getAccountingPeriod().getId() : null);
+        args.add(transaction.getTenantId());
+        args.add(transaction.getCreatedBy());
+    }
+
+    private static String placeholders(String row, int count) {
+        return String.join(", ", Collections.nCopies(count, row));
+    }
+}
@@ -0,0 +1,68 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.core.CompanyDto;
+import com.sti.accounting.entities.CompanyEntity;
+import com.sti.accounting.repositories.ICompanyRepository;
+import com.sti.accounting.utils.TtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+@Service
+public class CompanyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompanyService.class);
+
+    private final ICompanyRepository companyRepository;
+    private final AuthService authService;
+    private final TtlCache<String, CompanyDto> companyCache;
+
+    public CompanyService(ICompanyRepository companyRepository, AuthService authService,
+                          @Value("${app.cache.company.max-size:1000}") int maxSize,
+                          @Value("${app.cache.company.ttl-seconds:60}") long ttlSeconds) {
+        this.companyRepository = companyRepository;
+        this.authService = authService;
+        this.companyCache = new TtlCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+    }
+
+    // Se consulta en cada peticion autenticada, por eso se cachea por tenant. La empresa se edita en otro servicio,
+    // que debe llamar a DELETE /api/v1/company/cache despues de guardarla; si no lo hace el cambio se ve al vencer
+    // el tiempo de vida (app.cache.company.ttl-seconds)
+    public CompanyDto getCompanyByTenantId(String tenantId) {
+        return companyCache.computeIfAbsent(tenantId, this::loadCompany);
+    }
+
+    // Empresa del usuario autenticado
+    public void evictCurrentCompany() {
+        evictCompany(authService.getTenantId());
+    }
+
+    public void evictCompany(String tenantId) {
+        logger.info("Evicting cached company for tenant {}", tenantId);
+        companyCache.invalidate(tenantId);
+    }
+
+    private CompanyDto loadCompany(String tenantId) {
+        CompanyEntity companyEntity = companyRepository.findByTenantId(tenantId);
+        CompanyDto companyDto = null;
+        if (companyEntity != null) {
+            companyDto = new CompanyDto();
+            companyDto.setId(companyEntity.getId());
+            companyDto.setName(companyEntity.getCompanyName());
+            companyDto.setDescription(companyEntity.getCompanyDescription());
+            companyDto.setTenantId(companyEntity.getTenantId());
+            companyDto.setActive(companyEntity.getIsActive());
+            companyDto.setEmail(companyEntity.getCompanyEmail());
+            companyDto.setCreatedAt(LocalDate.from(companyEntity.getCreatedAt()));
+            companyDto.setPhone(companyEntity.getCompanyPhone());
+            companyDto.setRtn(companyEntity.getCompanyRTN());
+            companyDto.setWebsite(companyEntity.getCompanyWebsite());
+            companyDto.setType(String.valueOf(companyEntity.getType()));
+        }
+        return companyDto;
+    }
+}
@@ -0,0 +1,122 @@
+package com.sti.accounting.services;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.*;
+
+/**
+ * Garantiza la llave unica (cuenta, periodo, tenant) de control_account_balances, de la que depende el upsert de
+ * LedgerPostingService. ddl-auto=update no puede crearla si la tabla ya tiene filas repetidas y solo registra el
+ * error, por eso al iniciar se fusionan los repetidos en una sola fila y se agrega la llave. En un despliegue con
+ * varios nodos otro nodo puede insertar un repetido entre la fusion y el ALTER; en ese caso el ALTER falla y se
+ * vuelve a fusionar, hasta {@value #MAX_ATTEMPTS} intentos. Si la llave sigue sin existir la aplicacion no arranca,
+ * para no seguir insertando repetidos.
+ */
+@Service
+public class ControlBalanceMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ControlBalanceMigrationService.class);
+
+    static final String UNIQUE_KEY_NAME = "UK_CONTROL_BALANCE_ACCOUNT_PERIOD";
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private static final Set<String> UNIQUE_KEY_COLUMNS = Set.of("ACCOUNT_ID", "ACCOUNTING_PERIOD_ID", "TENANT_ID");
+
+    private static final String DUPLICATED_GROUPS_SQL = "SELECT account_id, accounting_period_id, tenant_id, MIN(id), " +
+            "COALESCE(SUM(debit), 0), COALESCE(SUM(credit), 0) FROM control_account_balances WHERE tenant_id IS NOT NULL " +
+            "GROUP BY account_id, accounting_period_id, tenant_id HAVING COUNT(*) > 1";
+
+    private static final String MERGE_KEPT_ROW_SQL = "UPDATE control_account_balances SET debit = ?, credit = ? WHERE id = ?";
+
+    private static final String DELETE_MERGED_ROWS_SQL = "DELETE FROM control_account_balances " +
+            "WHERE account_id = ? AND accounting_period_id = ? AND tenant_id = ? AND id <> ?";
+
+    private static final String ADD_UNIQUE_KEY_SQL = "ALTER TABLE control_account_balances ADD CONSTRAINT " + UNIQUE_KEY_NAME +
+            " UNIQUE (account_id, accounting_period_id, tenant_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // El transaction manager de JPA se crea despues del ddl-auto, asi la tabla ya existe al migrar
+    public ControlBalanceMigrationService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void ensureUniqueKey() {
+        if (hasUniqueKey()) {
+            return;
+        }
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Integer merged = transactionTemplate.execute(status -> mergeDuplicates());
+            logger.warn("Merged {} duplicated control balance groups before adding {}", merged, UNIQUE_KEY_NAME);
+            try {
+                jdbcTemplate.execute(ADD_UNIQUE_KEY_SQL);
+                break;
+            } catch (DataAccessException e) {
+                // Otro nodo pudo agregar la llave al mismo tiempo, o insertar un repetido despues de la fusion
+                if (hasUniqueKey()) {
+                    break;
+                }
+                logger.warn("Adding {} failed on attempt {} of {}: {}", UNIQUE_KEY_NAME, attempt, MAX_ATTEMPTS, e.getMessage());
+            }
+        }
+
+        if (!hasUniqueKey()) {
+            throw new IllegalStateException("Unique key " + UNIQUE_KEY_NAME + " is missing on control_account_balances");
+        }
+        logger.info("Unique key {} added to control_account_balances", UNIQUE_KEY_NAME);
+    }
+
+    private int mergeDuplicates() {
+        List<Object[]> keptRows = new ArrayList<>();
+        List<Object[]> deleteArgs = new ArrayList<>();
+        jdbcTemplate.query(DUPLICATED_GROUPS_SQL, rs -> {
+            long keptId = rs.getLong(4);
+            BigDecimal debit = rs.getBigDecimal(5);
+            BigDecimal credit = rs.getBigDecimal(6);
+            keptRows.add(new Object[]{debit, credit, keptId});
+            deleteArgs.add(new Object[]{rs.getLong(1), rs.getLong(2), rs.getString(3), keptId});
+        });
+
+        // La fila de menor id se queda con la suma del grupo y las demas se eliminan
+        if (!keptRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(MERGE_KEPT_ROW_SQL, keptRows);
+            jdbcTemplate.batchUpdate(DELETE_MERGED_ROWS_SQL, deleteArgs);
+        }
+        return keptRows.size();
+    }
+
+    // Se busca por columnas y no por nombre, cada motor nombra distinto el indice de la llave
+    private boolean hasUniqueKey() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers() ? "CONTROL_ACCOUNT_BALANCES" : "control_account_balances";
+            Map<String, Set<String>> columnsByIndex = new HashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, true, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    String columnName = rs.getString("COLUMN_NAME");
+                    if (indexName != null && columnName != null) {
+                        columnsByIndex.computeIfAbsent(indexName, k -> new HashSet<>()).add(columnName.toUpperCase());
+                    }
+                }
+            }
+            return columnsByIndex.containsValue(UNIQUE_KEY_COLUMNS);
+        }));
+    }
+}
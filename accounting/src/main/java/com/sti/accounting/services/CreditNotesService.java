@@ -2,7 +2,6 @@ package com.sti.accounting.services;
 
 import com.sti.accounting.entities.*;
 import com.sti.accounting.models.*;
-import com.sti.accounting.repositories.IAccountRepository;
 import com.sti.accounting.repositories.IAccountingJournalRepository;
 import com.sti.accounting.repositories.ICreditNotesRepository;
 import com.sti.accounting.repositories.ITransactionRepository;
@@ -26,18 +25,18 @@ public class CreditNotesService {
 
     private final ICreditNotesRepository creditNotesRepository;
     private final ITransactionRepository transactionRepository;
-    private final ControlAccountBalancesService controlAccountBalancesService;
+    private final LedgerPostingService ledgerPostingService;
     private final IAccountingJournalRepository accountingJournalRepository;
-    private final IAccountRepository iAccountRepository;
+    private final AccountCatalogService accountCatalogService;
     private final AccountingPeriodService accountingPeriodService;
     private final AuthService authService;
 
-    public CreditNotesService(ICreditNotesRepository creditNotesRepository, ITransactionRepository transactionRepository, ControlAccountBalancesService controlAccountBalancesService, IAccountingJournalRepository accountingJournalRepository, IAccountRepository iAccountRepository, AccountingPeriodService accountingPeriodService, AuthService authService) {
+    public CreditNotesService(ICreditNotesRepository creditNotesRepository, ITransactionRepository transactionRepository, LedgerPostingService ledgerPostingService, IAccountingJournalRepository accountingJournalRepository, AccountCatalogService accountCatalogService, AccountingPeriodService accountingPeriodService, AuthService authService) {
         this.creditNotesRepository = creditNotesRepository;
         this.transactionRepository = transactionRepository;
-        this.controlAccountBalancesService = controlAccountBalancesService;
+        this.ledgerPostingService = ledgerPostingService;
         this.accountingJournalRepository = accountingJournalRepository;
-        this.iAccountRepository = iAccountRepository;
+        this.accountCatalogService = accountCatalogService;
         this.accountingPeriodService = accountingPeriodService;
         this.authService = authService;
     }
@@ -47,8 +46,7 @@ public class CreditNotesService {
         AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
         String tenantId = authService.getTenantId();
 
-        return creditNotesRepository.findAll().stream()
-                .filter(creditNote -> creditNote.getAccountingPeriod().equals(activePeriod) && creditNote.getTenantId().equals(tenantId))
+        return creditNotesRepository.findAllByTenantIdAndAccountingPeriodId(tenantId, activePeriod.getId()).stream()
                 .map(this::entityToResponse)
                 .toList();
     }
@@ -93,7 +91,7 @@ public class CreditNotesService {
                 )
         );
 
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
 
         entity.setTransaction(transactionEntity);
         entity.setDescriptionNote(creditNotesRequest.getDescriptionNote());
@@ -136,7 +134,7 @@ public class CreditNotesService {
             );
         }
 
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
         if (entity.getAccountingPeriod() == null ||
                 !Objects.equals(entity.getAccountingPeriod().getId(), activePeriod.getId())) {
             throw new ResponseStatusException(
@@ -197,10 +195,7 @@ public class CreditNotesService {
                     detailEntity.setCreditNote(entity);
                 }
 
-                Optional<AccountEntity> accountOpt = iAccountRepository.findAll().stream()
-                        .filter(x -> x.getId().equals(incoming.getAccountId())
-                                && tenantId.equals(x.getTenantId()))
-                        .findFirst();
+                Optional<AccountEntity> accountOpt = accountCatalogService.getCatalog(tenantId).findById(incoming.getAccountId());
 
                 if (accountOpt.isEmpty()) {
                     throw new ResponseStatusException(
@@ -229,6 +224,7 @@ public class CreditNotesService {
     public void changeCreditNoteStatus(List<Long> creditNoteIds) {
         logger.info("Changing status of credit note with id {}", creditNoteIds);
 
+        List<CreditNotesEntity> creditNotes = new ArrayList<>();
         for (Long creditNoteId : creditNoteIds) {
             CreditNotesEntity existingCreditNote = creditNotesRepository.findById(creditNoteId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
@@ -237,11 +233,12 @@ public class CreditNotesService {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The credit note is not in draft status");
             }
             existingCreditNote.setStatus(StatusTransaction.SUCCESS);
-            creditNotesRepository.save(existingCreditNote);
-            controlAccountBalancesService.updateControlAccountCreditNotes(existingCreditNote);
-
+            creditNotes.add(existingCreditNote);
         }
 
+        creditNotesRepository.saveAll(creditNotes);
+        ledgerPostingService.postCreditNotes(creditNotes);
+
     }
 
     private void validateCreditNotesDetail(List<CreditNotesDetailRequest> detailRequest) {
@@ -286,10 +283,10 @@ public class CreditNotesService {
         try {
             String tenantId = authService.getTenantId();
             List<CreditNotesDetailEntity> result = new ArrayList<>();
-            List<AccountEntity> accounts = iAccountRepository.findAll();
+            AccountCatalogService.AccountCatalog accounts = accountCatalogService.getCatalog(tenantId);
             for (CreditNotesDetailRequest detail : detailRequests) {
                 CreditNotesDetailEntity entity = new CreditNotesDetailEntity();
-                Optional<AccountEntity> currentAccount = accounts.stream().filter(x -> x.getId().equals(detail.getAccountId()) && x.getTenantId().equals(tenantId)).findFirst();
+                Optional<AccountEntity> currentAccount = accounts.findById(detail.getAccountId());
                 if (currentAccount.isEmpty()) {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The account with id " + detail.getAccountId() + "does not exist.");
                 }
@@ -2,7 +2,6 @@ package com.sti.accounting.services;
 
 import com.sti.accounting.entities.*;
 import com.sti.accounting.models.*;
-import com.sti.accounting.repositories.IAccountRepository;
 import com.sti.accounting.repositories.IAccountingJournalRepository;
 import com.sti.accounting.repositories.IDebitNotesRepository;
 import com.sti.accounting.repositories.ITransactionRepository;
@@ -26,18 +25,18 @@ public class DebitNotesService {
 
     private final IDebitNotesRepository debitNotesRepository;
     private final ITransactionRepository transactionRepository;
-    private final ControlAccountBalancesService controlAccountBalancesService;
+    private final LedgerPostingService ledgerPostingService;
     private final IAccountingJournalRepository accountingJournalRepository;
-    private final IAccountRepository iAccountRepository;
+    private final AccountCatalogService accountCatalogService;
     private final AccountingPeriodService accountingPeriodService;
     private final AuthService authService;
 
-    public DebitNotesService(IDebitNotesRepository debitNotesRepository, ITransactionRepository transactionRepository, ControlAccountBalancesService controlAccountBalancesService, IAccountingJournalRepository accountingJournalRepository, IAccountRepository iAccountRepository, AccountingPeriodService accountingPeriodService, AuthService authService) {
+    public DebitNotesService(IDebitNotesRepository debitNotesRepository, ITransactionRepository transactionRepository, LedgerPostingService ledgerPostingService, IAccountingJournalRepository accountingJournalRepository, AccountCatalogService accountCatalogService, AccountingPeriodService accountingPeriodService, AuthService authService) {
         this.debitNotesRepository = debitNotesRepository;
         this.transactionRepository = transactionRepository;
-        this.controlAccountBalancesService = controlAccountBalancesService;
+        this.ledgerPostingService = ledgerPostingService;
         this.accountingJournalRepository = accountingJournalRepository;
-        this.iAccountRepository = iAccountRepository;
+        this.accountCatalogService = accountCatalogService;
         this.accountingPeriodService = accountingPeriodService;
         this.authService = authService;
     }
@@ -46,8 +45,7 @@ public class DebitNotesService {
         AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
         String tenantId = authService.getTenantId();
 
-        return debitNotesRepository.findAll().stream()
-                .filter(debitNote -> debitNote.getAccountingPeriod().equals(activePeriod) && debitNote.getTenantId().equals(tenantId))
+        return debitNotesRepository.findAllByTenantIdAndAccountingPeriodId(tenantId, activePeriod.getId()).stream()
                 .map(this::entityToResponse)
                 .toList();
     }
@@ -92,7 +90,7 @@ public class DebitNotesService {
                 )
         );
 
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
 
         entity.setTransaction(transactionEntity);
         entity.setDescriptionNote(debitNotesRequest.getDescriptionNote());
@@ -138,7 +136,7 @@ public class DebitNotesService {
         }
 
         // 3. Validar período contable activo
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
         if (entity.getAccountingPeriod() == null ||
                 !Objects.equals(entity.getAccountingPeriod().getId(), activePeriod.getId())) {
             throw new ResponseStatusException(
@@ -209,10 +207,7 @@ public class DebitNotesService {
                 }
 
                 // validar cuenta pertenece al tenant
-                Optional<AccountEntity> accountOpt = iAccountRepository.findAll().stream()
-                        .filter(x -> x.getId().equals(incoming.getAccountId())
-                                && tenantId.equals(x.getTenantId()))
-                        .findFirst();
+                Optional<AccountEntity> accountOpt = accountCatalogService.getCatalog(tenantId).findById(incoming.getAccountId());
 
                 if (accountOpt.isEmpty()) {
                     throw new ResponseStatusException(
@@ -245,6 +240,7 @@ public class DebitNotesService {
     public void changeDebitNoteStatus(List<Long> debitNoteIds) {
         logger.info("Changing status of debit note with id {}", debitNoteIds);
 
+        List<DebitNotesEntity> debitNotes = new ArrayList<>();
         for (Long debitNoteId : debitNoteIds) {
             DebitNotesEntity existingDebitNote = debitNotesRepository.findById(debitNoteId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
@@ -253,11 +249,12 @@ public class DebitNotesService {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The debit note is not in draft status");
             }
             existingDebitNote.setStatus(StatusTransaction.SUCCESS);
-            debitNotesRepository.save(existingDebitNote);
-            controlAccountBalancesService.updateControlAccountDebitNotes(existingDebitNote);
-
+            debitNotes.add(existingDebitNote);
         }
 
+        debitNotesRepository.saveAll(debitNotes);
+        ledgerPostingService.postDebitNotes(debitNotes);
+
     }
 
     private void validateDebitNotesDetail(List<DebitNotesDetailRequest> detailRequest) {
@@ -302,10 +299,10 @@ public class DebitNotesService {
         try {
             String tenantId = authService.getTenantId();
             List<DebitNotesDetailEntity> result = new ArrayList<>();
-            List<AccountEntity> accounts = iAccountRepository.findAll();
+            AccountCatalogService.AccountCatalog accounts = accountCatalogService.getCatalog(tenantId);
             for (DebitNotesDetailRequest detail : detailRequests) {
                 DebitNotesDetailEntity entity = new DebitNotesDetailEntity();
-                Optional<AccountEntity> currentAccount = accounts.stream().filter(x -> x.getId().equals(detail.getAccountId()) && x.getTenantId().equals(tenantId)).findFirst();
+                Optional<AccountEntity> currentAccount = accounts.findById(detail.getAccountId());
                 if (currentAccount.isEmpty()) {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The account with id " + detail.getAccountId() + "does not exist.");
                 }
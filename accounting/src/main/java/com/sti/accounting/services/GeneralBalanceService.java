@@ -3,6 +3,7 @@ package com.sti.accounting.services;
 import com.sti.accounting.entities.*;
 import com.sti.accounting.models.*;
 import com.sti.accounting.repositories.IAccountRepository;
+import com.sti.accounting.utils.AccountRollup;
 import com.sti.accounting.utils.Status;
 
 import jakarta.transaction.Transactional;
@@ -11,9 +12,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -21,56 +22,91 @@ public class GeneralBalanceService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeneralBalanceService.class);
 
+    private static final List<String> MAIN_CATEGORIES = List.of("ACTIVO", "PASIVO", "PATRIMONIO");
+
     private final IAccountRepository iAccountRepository;
     private final ControlAccountBalancesService controlAccountBalancesService;
     private final IncomeStatementService incomeStatementService;
     private final AccountingPeriodService accountingPeriodService;
+    private final TrialBalanceSnapshotService trialBalanceSnapshotService;
     private final AuthService authService;
+    private final AccountCatalogService accountCatalogService;
+    private final OpeningBalanceService openingBalanceService;
 
-    public GeneralBalanceService(IAccountRepository iAccountRepository, ControlAccountBalancesService controlAccountBalancesService, IncomeStatementService incomeStatementService, AccountingPeriodService accountingPeriodService, AuthService authService) {
+    public GeneralBalanceService(IAccountRepository iAccountRepository, ControlAccountBalancesService controlAccountBalancesService, IncomeStatementService incomeStatementService, AccountingPeriodService accountingPeriodService, TrialBalanceSnapshotService trialBalanceSnapshotService, AuthService authService,
+                                 AccountCatalogService accountCatalogService, OpeningBalanceService openingBalanceService) {
         this.iAccountRepository = iAccountRepository;
         this.controlAccountBalancesService = controlAccountBalancesService;
         this.incomeStatementService = incomeStatementService;
         this.accountingPeriodService = accountingPeriodService;
+        this.trialBalanceSnapshotService = trialBalanceSnapshotService;
         this.authService = authService;
+        this.accountCatalogService = accountCatalogService;
+        this.openingBalanceService = openingBalanceService;
     }
 
     @Transactional
     public List<GeneralBalanceResponse> getBalanceGeneral(Long periodId) {
+        return getBalanceGeneral(periodId, incomeStatementService.getIncomeStatement(periodId));
+    }
+
+    // Recibe el estado de resultados ya calculado para la utilidad del ejercicio
+    @Transactional
+    public List<GeneralBalanceResponse> getBalanceGeneral(Long periodId, List<IncomeStatementResponse> incomeStatementResponse) {
         logger.info("Generating balance general");
-        String tenantId = authService.getTenantId();
+        List<AccountEntity> accounts = getBalanceAccounts(authService.getTenantId());
 
-        // Realiza el filtro por las cuentas activas
-        List<AccountEntity> accounts = iAccountRepository.findFilteredAccounts("Balance General", Status.ACTIVO, tenantId);
+        // Si el periodo ya fue cerrado se usa el snapshot guardado al cierre
+        Map<Long, TrialBalanceSnapshotEntity> snapshot = periodId != null ? trialBalanceSnapshotService.getSnapshotByAccount(periodId) : Map.of();
+        if (!snapshot.isEmpty()) {
+            return getBalanceGeneralFromSnapshot(accounts, snapshot, incomeStatementResponse);
+        }
 
-        List<GeneralBalanceResponse> response = new ArrayList<>();
+        // Movimientos de todas las cuentas en una sola consulta agrupada, sin periodo se suman todos los periodos
+        Map<Long, ControlAccountBalancesEntity> movementsByAccount;
+        if (periodId == null) {
+            movementsByAccount = controlAccountBalancesService.getMovementsByAccount();
+        } else {
+            AccountingPeriodResponse period = accountingPeriodService.getById(periodId);
+            movementsByAccount = controlAccountBalancesService.getPeriodMovementsByAccount(period.getId(), period.getStartPeriod().toLocalDate(), period.getEndPeriod().toLocalDate());
+        }
+        return getBalanceGeneral(accounts, movementsByAccount, incomeStatementResponse);
+    }
 
+    // Cuentas activas del balance general, para calcular varios periodos con la misma lista
+    public List<AccountEntity> getBalanceAccounts(String tenantId) {
+        return iAccountRepository.findFilteredAccounts("Balance General", Status.ACTIVO, tenantId);
+    }
 
+    // Periodo abierto o sin periodo: movimientos ya sumados por cuenta mas los saldos iniciales
+    public List<GeneralBalanceResponse> getBalanceGeneral(List<AccountEntity> accounts, Map<Long, ControlAccountBalancesEntity> movementsByAccount, List<IncomeStatementResponse> incomeStatementResponse) {
+        List<GeneralBalanceResponse> response = new ArrayList<>();
+        Map<Long, String> categories = getCategories(accounts);
+        OpeningBalanceService.OpeningBalances openingBalances = getOpeningBalances(accounts);
         for (AccountEntity account : accounts) {
-            ControlAccountBalancesEntity sumViewEntity;
-
-            if (periodId == null) {
-                // Manejar el caso en que el periodo no existe manejar todos los periodos
-                List<ControlAccountBalancesEntity> balances = controlAccountBalancesService.getControlAccountBalancesForAllPeriods(account.getId());
-                sumViewEntity = combineBalances(balances);
-            } else {
-                // Si periodId es null, se obtienen los balances para todos los periodos
-                AccountingPeriodResponse period = accountingPeriodService.getById(periodId);
-
-                // Obtener el inicio y el final del periodo mensual
-                LocalDate startPeriod = period.getStartPeriod().toLocalDate();
-                LocalDate endPeriod = period.getEndPeriod().toLocalDate();
-
-                List<ControlAccountBalancesEntity> balances = controlAccountBalancesService.getControlAccountBalancesForPeriodAndMonth(account.getId(), period.getId(), startPeriod, endPeriod);
-                sumViewEntity = combineBalances(balances);
-            }
+            response.add(createGeneralBalanceResponse(account, movementsByAccount.get(account.getId()), categories, openingBalances));
+        }
+
+        addNetProfit(response, incomeStatementResponse);
+        rollUpSubtotals(response);
+        return response;
+    }
 
-            GeneralBalanceResponse generalBalanceResponse = createGeneralBalanceResponse(account, sumViewEntity);
-            response.add(generalBalanceResponse);
+    // Periodo cerrado: saldos guardados en el snapshot del cierre
+    public List<GeneralBalanceResponse> getBalanceGeneralFromSnapshot(List<AccountEntity> accounts, Map<Long, TrialBalanceSnapshotEntity> snapshot, List<IncomeStatementResponse> incomeStatementResponse) {
+        List<GeneralBalanceResponse> response = new ArrayList<>();
+        Map<Long, String> categories = getCategories(accounts);
+        for (AccountEntity account : accounts) {
+            response.add(createGeneralBalanceResponse(account, snapshot.get(account.getId()), categories));
         }
 
+        addNetProfit(response, incomeStatementResponse);
+        rollUpSubtotals(response);
+        return response;
+    }
+
+    private void addNetProfit(List<GeneralBalanceResponse> response, List<IncomeStatementResponse> incomeStatementResponse) {
         // Verificar si la cuenta existe y actualizar su balance
-        List<IncomeStatementResponse> incomeStatementResponse = incomeStatementService.getIncomeStatement(periodId);
         Optional<GeneralBalanceResponse> optionalAccount = response.stream()
                 .filter(item -> item.getAccountName().equals("UTILIDAD O PERDIDA NETA DEL EJERCICIO"))
                 .findFirst();
@@ -83,21 +119,44 @@ public class GeneralBalanceService {
             netProfitResponse.setAccountName("UTILIDAD O PERDIDA NETA DEL EJERCICIO");
             netProfitResponse.setParentId(null);
             netProfitResponse.setCategory("PATRIMONIO");
+            netProfitResponse.setTypicalBalance("C");
             netProfitResponse.setBalance(incomeStatementService.getNetProfit(incomeStatementResponse));
             netProfitResponse.setRoot(true);
             response.add(netProfitResponse);
         }
+    }
 
-        return response;
+    // Subtotales por nivel para que el cliente no tenga que sumar la jerarquia
+    private void rollUpSubtotals(List<GeneralBalanceResponse> response) {
+        AccountRollup.rollUp(response, GeneralBalanceResponse::getAccountId, GeneralBalanceResponse::getParentId,
+                GeneralBalanceResponse::getBalance, GeneralBalanceResponse::getTypicalBalance, GeneralBalanceResponse::setSubtotal);
+    }
+
+    // Categoria principal de cada cuenta del tenant, resuelta una vez sobre el catalogo en memoria
+    private Map<Long, String> getCategories(String tenantId) {
+        return AccountRollup.resolveCategories(accountCatalogService.getCatalog(tenantId), MAIN_CATEGORIES);
     }
 
-    private GeneralBalanceResponse createGeneralBalanceResponse(AccountEntity account, ControlAccountBalancesEntity sumViewEntity) {
+    // Las cuentas ya vienen filtradas por tenant, por eso sirve tambien fuera del hilo de la peticion
+    private Map<Long, String> getCategories(List<AccountEntity> accounts) {
+        return accounts.isEmpty() || accounts.get(0).getTenantId() == null ? Map.of() : getCategories(accounts.get(0).getTenantId());
+    }
+
+    // Saldos iniciales del tenant de las cuentas en una sola consulta
+    private OpeningBalanceService.OpeningBalances getOpeningBalances(List<AccountEntity> accounts) {
+        return accounts.isEmpty() || accounts.get(0).getTenantId() == null
+                ? new OpeningBalanceService.OpeningBalances(List.of(), List.of())
+                : openingBalanceService.getOpeningBalances(accounts.get(0).getTenantId());
+    }
+
+    private GeneralBalanceResponse createGeneralBalanceResponse(AccountEntity account, ControlAccountBalancesEntity sumViewEntity, Map<Long, String> categories, OpeningBalanceService.OpeningBalances openingBalances) {
         GeneralBalanceResponse item = new GeneralBalanceResponse();
         item.setAccountId(account.getId());
         item.setAccountName(account.getDescription());
         item.setParentId(account.getParent() != null ? account.getParent().getId() : null);
+        item.setTypicalBalance(account.getTypicalBalance());
 
-        String category = getCategory(account);
+        String category = getCategory(account, categories);
         item.setCategory(category);
 
         // Si sumViewEntity es null, inicializarlo
@@ -107,36 +166,47 @@ public class GeneralBalanceService {
             sumViewEntity.setCredit(BigDecimal.valueOf(0));
         }
 
-        BigDecimal balance = getBalanceWhitInitialBalance(sumViewEntity, account);
+        BigDecimal balance = getBalanceWhitInitialBalance(sumViewEntity, account, openingBalances);
         item.setBalance(balance);
         item.setRoot(account.getParent() == null);
 
         return item;
     }
 
-    private ControlAccountBalancesEntity combineBalances(List<ControlAccountBalancesEntity> balances) {
-        ControlAccountBalancesEntity combined = new ControlAccountBalancesEntity();
-        BigDecimal totalDebit = BigDecimal.ZERO;
-        BigDecimal totalCredit = BigDecimal.ZERO;
+    private GeneralBalanceResponse createGeneralBalanceResponse(AccountEntity account, TrialBalanceSnapshotEntity snapshot, Map<Long, String> categories) {
+        GeneralBalanceResponse item = new GeneralBalanceResponse();
+        item.setAccountId(account.getId());
+        item.setAccountName(account.getDescription());
+        item.setParentId(account.getParent() != null ? account.getParent().getId() : null);
+        item.setTypicalBalance(account.getTypicalBalance());
+        item.setCategory(getCategory(account, categories));
+
+        BigDecimal balance = BigDecimal.ZERO;
+        if (snapshot != null) {
+            BigDecimal debit = nullSafe(snapshot.getInitialDebit()).add(nullSafe(snapshot.getPeriodDebit()));
+            BigDecimal credit = nullSafe(snapshot.getInitialCredit()).add(nullSafe(snapshot.getPeriodCredit()));
+            balance = getNetBalance(debit, credit, account);
+        }
+        item.setBalance(balance);
+        item.setRoot(account.getParent() == null);
 
-        for (ControlAccountBalancesEntity balance : balances) {
-            BigDecimal debitValue = balance.getDebit() != null ? balance.getDebit() : BigDecimal.valueOf(0);
-            BigDecimal creditValue = balance.getCredit() != null ? balance.getCredit() : BigDecimal.valueOf(0);
+        return item;
+    }
 
-            totalDebit = totalDebit.add(debitValue);
-            totalCredit = totalCredit.add(creditValue);
-        }
+    private BigDecimal nullSafe(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
 
-        combined.setDebit(totalDebit);
-        combined.setCredit(totalCredit);
-        return combined;
+    private String getCategory(AccountEntity account, Map<Long, String> categories) {
+        String category = categories.get(account.getId());
+        return category != null ? category : getCategory(account);
     }
 
+    // Solo para cuentas que no estan en el catalogo del tenant
     private String getCategory(AccountEntity account) {
-        String[] mainCategories = {"ACTIVO", "PASIVO", "PATRIMONIO"};
         AccountEntity current = account;
         while (current != null) {
-            for (String mainCategory : mainCategories) {
+            for (String mainCategory : MAIN_CATEGORIES) {
                 if (current.getDescription().toUpperCase().contains(mainCategory)) {
                     return mainCategory;
                 }
@@ -147,24 +217,11 @@ public class GeneralBalanceService {
     }
 
 
-    private BigDecimal getBalanceWhitInitialBalance(ControlAccountBalancesEntity sumViewEntity, AccountEntity account) {
-
-        // Calcular los saldos iniciales solo una vez
-        BigDecimal initialBalanceDebit = account.getBalances().stream()
-                .filter(balancesEntity ->
-                        balancesEntity.getTypicalBalance().equalsIgnoreCase("D") &&
-                                Boolean.TRUE.equals(balancesEntity.getIsCurrent())
-                )
-                .map(BalancesEntity::getInitialBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    private BigDecimal getBalanceWhitInitialBalance(ControlAccountBalancesEntity sumViewEntity, AccountEntity account, OpeningBalanceService.OpeningBalances openingBalances) {
 
-        BigDecimal initialBalanceCredit = account.getBalances().stream()
-                .filter(balancesEntity ->
-                        balancesEntity.getTypicalBalance().equalsIgnoreCase("C") &&
-                                Boolean.TRUE.equals(balancesEntity.getIsCurrent())
-                )
-                .map(BalancesEntity::getInitialBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Saldos iniciales vigentes ya sumados por cuenta al cargar el reporte
+        BigDecimal initialBalanceDebit = openingBalances.getInitialDebit(account.getId());
+        BigDecimal initialBalanceCredit = openingBalances.getInitialCredit(account.getId());
 
         // Si sumViewEntity es null, devolver solo el balance inicial
         if (sumViewEntity == null) {
@@ -178,6 +235,10 @@ public class GeneralBalanceService {
         BigDecimal credit = sumViewEntity.getCredit() != null ? sumViewEntity.getCredit() : BigDecimal.ZERO;
         credit = initialBalanceCredit.add(credit);
 
+        return getNetBalance(debit, credit, account);
+    }
+
+    private BigDecimal getNetBalance(BigDecimal debit, BigDecimal credit, AccountEntity account) {
         if (account.getTypicalBalance().equalsIgnoreCase("D")) {
             return debit.subtract(credit);
         } else if (account.getTypicalBalance().equalsIgnoreCase("C")) {
@@ -0,0 +1,129 @@
+package com.sti.accounting.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carga unica del libro mayor materializado con los documentos posteados antes de que existiera general_ledger_line.
+ * Por cada origen (partidas, ajustes, notas de credito y de debito) un INSERT ... SELECT copia las lineas de los
+ * documentos confirmados que aun no tienen lineas en el libro, con las mismas fechas que usa
+ * {@link LedgerPostingService}. Despues se recalcula el saldo acumulado de cada cuenta y periodo afectado.
+ * Es idempotente: un documento con lineas en el libro no se vuelve a copiar.
+ */
+@Service
+public class GeneralLedgerBackfillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneralLedgerBackfillService.class);
+
+    private static final String INSERT_COLUMNS = "INSERT INTO general_ledger_line (account_id, accounting_period_id, date, source_type, source_id, " +
+            "number_pda, debit, credit, running_balance, tenant_id) ";
+
+    // El saldo acumulado queda en NULL y marca la cuenta y el periodo a recalcular
+    private static final List<String> BACKFILL_SQL = List.of(
+            INSERT_COLUMNS +
+                    "SELECT d.account_id, t.accounting_period_id, t.date, 'TRANSACTION', t.id, t.number_pda, " +
+                    "CASE WHEN d.motion = 'D' THEN d.amount ELSE 0 END, CASE WHEN d.motion = 'D' THEN 0 ELSE d.amount END, NULL, t.tenant_id " +
+                    "FROM transaction_detail d INNER JOIN transactions t ON t.id = d.transaction_id " +
+                    "WHERE t.status = 'SUCCESS' AND t.tenant_id IS NOT NULL AND t.accounting_period_id IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM general_ledger_line g WHERE g.source_type = 'TRANSACTION' AND g.source_id = t.id)",
+            INSERT_COLUMNS +
+                    "SELECT d.account_id, a.accounting_period_id, t.date, 'ADJUSTMENT', a.id, t.number_pda, " +
+                    "CASE WHEN d.motion = 'D' THEN d.amount ELSE 0 END, CASE WHEN d.motion = 'D' THEN 0 ELSE d.amount END, NULL, a.tenant_id " +
+                    "FROM adjustment_detail d INNER JOIN accounting_adjustments a ON a.id = d.adjustment_id " +
+                    "INNER JOIN transactions t ON t.id = a.transaction_id " +
+                    "WHERE a.status = 'SUCCESS' AND a.tenant_id IS NOT NULL AND a.accounting_period_id IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM general_ledger_line g WHERE g.source_type = 'ADJUSTMENT' AND g.source_id = a.id)",
+            INSERT_COLUMNS +
+                    "SELECT d.account_id, n.accounting_period_id, n.date, 'CREDIT_NOTE', n.id, t.number_pda, " +
+                    "CASE WHEN d.motion = 'D' THEN d.amount ELSE 0 END, CASE WHEN d.motion = 'D' THEN 0 ELSE d.amount END, NULL, n.tenant_id " +
+                    "FROM credit_notes_detail d INNER JOIN credit_notes n ON n.id = d.credit_note_id " +
+                    "INNER JOIN transactions t ON t.id = n.transaction_id " +
+                    "WHERE n.status = 'SUCCESS' AND n.tenant_id IS NOT NULL AND n.accounting_period_id IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM general_ledger_line g WHERE g.source_type = 'CREDIT_NOTE' AND g.source_id = n.id)",
+            INSERT_COLUMNS +
+                    "SELECT d.account_id, n.accounting_period_id, n.date, 'DEBIT_NOTE', n.id, t.number_pda, " +
+                    "CASE WHEN d.motion = 'D' THEN d.amount ELSE 0 END, CASE WHEN d.motion = 'D' THEN 0 ELSE d.amount END, NULL, n.tenant_id " +
+                    "FROM debit_notes_detail d INNER JOIN debit_notes n ON n.id = d.debit_note_id " +
+                    "INNER JOIN transactions t ON t.id = n.transaction_id " +
+                    "WHERE n.status = 'SUCCESS' AND n.tenant_id IS NOT NULL AND n.accounting_period_id IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM general_ledger_line g WHERE g.source_type = 'DEBIT_NOTE' AND g.source_id = n.id)");
+
+    private static final String PENDING_GROUPS_SQL = "SELECT DISTINCT tenant_id, accounting_period_id, account_id FROM general_ledger_line " +
+            "WHERE running_balance IS NULL";
+
+    // Bloquea las lineas de la cuenta para que un posteo concurrente no desplace saldos a medio recalculo
+    private static final String GROUP_LINES_SQL = "SELECT id, debit, credit FROM general_ledger_line " +
+            "WHERE tenant_id = ? AND accounting_period_id = ? AND account_id = ? ORDER BY date, id FOR UPDATE";
+
+    private static final String UPDATE_RUNNING_BALANCE_SQL = "UPDATE general_ledger_line SET running_balance = ? WHERE id = ?";
+
+    private record LedgerGroup(String tenantId, Long periodId, Long accountId) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean backfillOnStartup;
+
+    public GeneralLedgerBackfillService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                        @Value("${app.ledger.backfill-on-startup:true}") boolean backfillOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            backfill();
+        }
+    }
+
+    /**
+     * Copia al libro mayor las lineas de los documentos posteados que no las tienen y recalcula sus saldos
+     * acumulados. Devuelve la cantidad de lineas agregadas.
+     */
+    public int backfill() {
+        Integer inserted = transactionTemplate.execute(status -> {
+            int total = 0;
+            for (String sql : BACKFILL_SQL) {
+                total += jdbcTemplate.update(sql);
+            }
+            return total;
+        });
+
+        List<LedgerGroup> groups = jdbcTemplate.query(PENDING_GROUPS_SQL,
+                (rs, rowNum) -> new LedgerGroup(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+        for (LedgerGroup group : groups) {
+            transactionTemplate.executeWithoutResult(status -> recalculateRunningBalances(group));
+        }
+
+        if (inserted != null && inserted > 0) {
+            logger.info("General ledger backfill added {} lines in {} account periods", inserted, groups.size());
+        }
+        return inserted != null ? inserted : 0;
+    }
+
+    // Saldo deudor acumulado en orden (fecha, id), el mismo que mantiene el motor de posteo
+    private void recalculateRunningBalances(LedgerGroup group) {
+        List<Object[]> updateArgs = new ArrayList<>();
+        BigDecimal[] running = {BigDecimal.ZERO};
+        jdbcTemplate.query(GROUP_LINES_SQL, rs -> {
+            BigDecimal debit = rs.getBigDecimal(2) != null ? rs.getBigDecimal(2) : BigDecimal.ZERO;
+            BigDecimal credit = rs.getBigDecimal(3) != null ? rs.getBigDecimal(3) : BigDecimal.ZERO;
+            running[0] = running[0].add(debit).subtract(credit);
+            updateArgs.add(new Object[]{running[0], rs.getLong(1)});
+        }, group.tenantId(), group.periodId(), group.accountId());
+        jdbcTemplate.batchUpdate(UPDATE_RUNNING_BALANCE_SQL, updateArgs);
+    }
+}
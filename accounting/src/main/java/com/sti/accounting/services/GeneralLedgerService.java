@@ -0,0 +1,69 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.GeneralLedgerLineEntity;
+import com.sti.accounting.models.GeneralLedgerLineResponse;
+import com.sti.accounting.models.KeysetPageResponse;
+import com.sti.accounting.repositories.IGeneralLedgerLineRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Lectura del libro mayor materializado (general_ledger_line). Cada pagina es un recorrido por rango
+ * del indice (tenant, periodo, cuenta, fecha, id); las lineas las escribe {@link LedgerPostingService}.
+ */
+@Service
+public class GeneralLedgerService {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final IGeneralLedgerLineRepository generalLedgerLineRepository;
+    private final AccountingPeriodService accountingPeriodService;
+    private final AuthService authService;
+
+    public GeneralLedgerService(IGeneralLedgerLineRepository generalLedgerLineRepository, AccountingPeriodService accountingPeriodService, AuthService authService) {
+        this.generalLedgerLineRepository = generalLedgerLineRepository;
+        this.accountingPeriodService = accountingPeriodService;
+        this.authService = authService;
+    }
+
+    public KeysetPageResponse<GeneralLedgerLineResponse> getLedgerPage(Long accountId, Long periodId, LocalDate afterDate, Long afterId, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Page size must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        if ((afterDate == null) != (afterId == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "afterDate and afterId must be sent together");
+        }
+        String tenantId = authService.getTenantId();
+        Long ledgerPeriodId = periodId != null ? periodId : accountingPeriodService.getActivePeriod().getId();
+
+        Pageable pageable = PageRequest.of(0, size + 1);
+        List<GeneralLedgerLineEntity> page = afterDate == null
+                ? generalLedgerLineRepository.findLedgerPage(tenantId, ledgerPeriodId, accountId, pageable)
+                : generalLedgerLineRepository.findLedgerPageAfter(tenantId, ledgerPeriodId, accountId, afterDate, afterId, pageable);
+        boolean hasNext = page.size() > size;
+        if (hasNext) {
+            page = page.subList(0, size);
+        }
+
+        KeysetPageResponse<GeneralLedgerLineResponse> response = new KeysetPageResponse<>();
+        response.setContent(page.stream().map(this::toResponse).toList());
+        response.setHasNext(hasNext);
+        if (hasNext) {
+            GeneralLedgerLineEntity last = page.get(page.size() - 1);
+            response.setNextDate(last.getDate());
+            response.setNextId(last.getId());
+        }
+        return response;
+    }
+
+    private GeneralLedgerLineResponse toResponse(GeneralLedgerLineEntity entity) {
+        return new GeneralLedgerLineResponse(entity.getId(), entity.getDate(), entity.getSourceType(), entity.getSourceId(),
+                entity.getNumberPda(), entity.getDebit(), entity.getCredit(), entity.getRunningBalance());
+    }
+}
@@ -2,20 +2,21 @@ package com.sti.accounting.services;
 
 import com.sti.accounting.entities.AccountEntity;
 import com.sti.accounting.entities.ControlAccountBalancesEntity;
+import com.sti.accounting.entities.TrialBalanceSnapshotEntity;
 import com.sti.accounting.models.AccountingPeriodResponse;
 import com.sti.accounting.models.IncomeStatementResponse;
 import com.sti.accounting.repositories.IAccountRepository;
-
+import com.sti.accounting.utils.AccountRollup;
 import com.sti.accounting.utils.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class IncomeStatementService {
@@ -25,67 +26,56 @@ public class IncomeStatementService {
     private final IAccountRepository accountRepository;
     private final ControlAccountBalancesService controlAccountBalancesService;
     private final AccountingPeriodService accountingPeriodService;
+    private final TrialBalanceSnapshotService trialBalanceSnapshotService;
     private final AuthService authService;
 
-    public IncomeStatementService(IAccountRepository accountRepository, ControlAccountBalancesService controlAccountBalancesService, AccountingPeriodService accountingPeriodService, AuthService authService) {
+    public IncomeStatementService(IAccountRepository accountRepository, ControlAccountBalancesService controlAccountBalancesService, AccountingPeriodService accountingPeriodService, TrialBalanceSnapshotService trialBalanceSnapshotService, AuthService authService) {
         this.accountRepository = accountRepository;
         this.controlAccountBalancesService = controlAccountBalancesService;
         this.accountingPeriodService = accountingPeriodService;
+        this.trialBalanceSnapshotService = trialBalanceSnapshotService;
         this.authService = authService;
     }
 
 
     public List<IncomeStatementResponse> getIncomeStatement(Long periodId) {
         logger.info("Generating income statement");
-        String tenantId = authService.getTenantId();
-
-        List<AccountEntity> accounts = accountRepository.findFilteredAccounts("Estado de Resultados", Status.ACTIVO, tenantId);
-
-        List<IncomeStatementResponse> transactions = new ArrayList<>();
-
-        for (AccountEntity account : accounts) {
-            ControlAccountBalancesEntity sumViewEntity;
-
-            if (periodId != null) {
-                AccountingPeriodResponse period = accountingPeriodService.getById(periodId);
-                if (period != null) {
-                    // Obtener el inicio y el final del periodo mensual
-                    LocalDate startPeriod = period.getStartPeriod().toLocalDate();
-                    LocalDate endPeriod = period.getEndPeriod().toLocalDate();
-
-                    List<ControlAccountBalancesEntity> balances = controlAccountBalancesService.getControlAccountBalancesForPeriodAndMonth(account.getId(), period.getId(), startPeriod, endPeriod);
-                    sumViewEntity = combineBalances(balances);
-                } else {
-                    List<ControlAccountBalancesEntity> balances = controlAccountBalancesService.getControlAccountBalancesForAllPeriods(account.getId());
-                    sumViewEntity = combineBalances(balances);
-                }
-
-            } else {
-                List<ControlAccountBalancesEntity> balances = controlAccountBalancesService.getControlAccountBalancesForAllPeriods(account.getId());
-                sumViewEntity = combineBalances(balances);
-            }
+        List<AccountEntity> accounts = getIncomeStatementAccounts(authService.getTenantId());
 
-            BigDecimal balance = getBalance(sumViewEntity);
-            IncomeStatementResponse transaction = getIncomeStatementResponse(account, balance);
-            transactions.add(transaction);
+        // Si el periodo ya fue cerrado se usan los movimientos del snapshot guardado al cierre
+        Map<Long, TrialBalanceSnapshotEntity> snapshot = periodId != null ? trialBalanceSnapshotService.getSnapshotByAccount(periodId) : Map.of();
+        if (!snapshot.isEmpty()) {
+            return getIncomeStatement(accounts, TrialBalanceSnapshotService.toPeriodMovements(snapshot));
         }
 
-        return transactions;
+        // Movimientos de todas las cuentas en una sola consulta agrupada, sin periodo se suman todos los periodos
+        Map<Long, ControlAccountBalancesEntity> movementsByAccount;
+        if (periodId == null) {
+            movementsByAccount = controlAccountBalancesService.getMovementsByAccount();
+        } else {
+            AccountingPeriodResponse period = accountingPeriodService.getById(periodId);
+            movementsByAccount = controlAccountBalancesService.getPeriodMovementsByAccount(period.getId(), period.getStartPeriod().toLocalDate(), period.getEndPeriod().toLocalDate());
+        }
+        return getIncomeStatement(accounts, movementsByAccount);
     }
 
-    private ControlAccountBalancesEntity combineBalances(List<ControlAccountBalancesEntity> balances) {
-        ControlAccountBalancesEntity combined = new ControlAccountBalancesEntity();
-        BigDecimal totalDebit = BigDecimal.ZERO;
-        BigDecimal totalCredit = BigDecimal.ZERO;
+    // Cuentas activas del estado de resultados, para calcular varios periodos con la misma lista
+    public List<AccountEntity> getIncomeStatementAccounts(String tenantId) {
+        return accountRepository.findFilteredAccounts("Estado de Resultados", Status.ACTIVO, tenantId);
+    }
 
-        for (ControlAccountBalancesEntity balance : balances) {
-            totalDebit = totalDebit.add(balance.getDebit() != null ? balance.getDebit() : BigDecimal.valueOf(0));
-            totalCredit = totalCredit.add(balance.getCredit() != null ? balance.getCredit() : BigDecimal.valueOf(0));
+    public List<IncomeStatementResponse> getIncomeStatement(List<AccountEntity> accounts, Map<Long, ControlAccountBalancesEntity> movementsByAccount) {
+        List<IncomeStatementResponse> transactions = new ArrayList<>();
+        for (AccountEntity account : accounts) {
+            transactions.add(getIncomeStatementResponse(account, getBalance(movementsByAccount.get(account.getId()))));
         }
+        rollUpSubtotals(transactions);
+        return transactions;
+    }
 
-        combined.setDebit(totalDebit);
-        combined.setCredit(totalCredit);
-        return combined;
+    private static void rollUpSubtotals(List<IncomeStatementResponse> transactions) {
+        AccountRollup.rollUp(transactions, IncomeStatementResponse::getId, IncomeStatementResponse::getParentId,
+                IncomeStatementResponse::getAmount, IncomeStatementResponse::getTypicalBalance, IncomeStatementResponse::setSubtotal);
     }
 
     private static IncomeStatementResponse getIncomeStatementResponse(AccountEntity account, BigDecimal balance) {
@@ -93,6 +83,7 @@ public class IncomeStatementService {
         transaction.setId(account.getId());
         transaction.setCategory(account.getAccountType() != null ? account.getAccountType().getName() : null);
         transaction.setAccountParent(account.getParent() != null ? account.getParent().getDescription() : null);
+        transaction.setParentId(account.getParent() != null ? account.getParent().getId() : null);
         transaction.setTypicalBalance(account.getTypicalBalance());
         transaction.setAccount(account.getDescription());
         transaction.setAmount(balance);
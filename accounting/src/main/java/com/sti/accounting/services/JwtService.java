@@ -3,6 +3,7 @@ package com.sti.accounting.services;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sti.accounting.core.SecurityUserDto;
+import com.sti.accounting.utils.TtlCache;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
@@ -15,17 +16,33 @@ import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false); // Ignora propiedades desconocidas
+
     @Value("${jwt.secret-key}")
     private String secretKey;
 
+    // Claims ya verificados por hash del token, asi la firma se valida una sola vez por token
+    private final TtlCache<String, Claims> claimsCache;
+
+    public JwtService(@Value("${app.cache.jwt.max-size:10000}") int maxSize,
+                      @Value("${app.cache.jwt.ttl-seconds:300}") long ttlSeconds) {
+        this.claimsCache = new TtlCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -60,9 +77,8 @@ public class JwtService {
 
     public SecurityUserDto getUserDetails(String token) {
         Claims claims = extractAllClaims(token);
-        ObjectMapper objectMapper = new ObjectMapper()
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false); // Ignora propiedades desconocidas
 
+        // Se crea un dto nuevo por peticion, los claims en cache no se modifican
         Map<String, Object> userMap = claims.get("user", Map.class);
         return objectMapper.convertValue(userMap, SecurityUserDto.class);
     }
@@ -85,11 +101,35 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
+        String tokenHash = hashToken(token);
+        Claims claims = claimsCache.get(tokenHash);
+        if (claims != null) {
+            return claims;
+        }
+
+        claims = Jwts.parser()
                 .verifyWith(getSigningKey())
                 .build()
                 .parseSignedClaims(token)
                 .getPayload();
+
+        // La entrada no vive mas que el propio token
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            claimsCache.put(tokenHash, claims, expiration.getTime());
+        } else {
+            claimsCache.put(tokenHash, claims);
+        }
+        return claims;
+    }
+
+    private String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
 //    private Key getSigningKey() {
@@ -0,0 +1,276 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.*;
+import com.sti.accounting.models.LedgerLine;
+import com.sti.accounting.utils.LedgerSourceType;
+import com.sti.accounting.utils.Motion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Motor unico de posteo a control_account_balances. Los cuatro flujos de confirmacion (partidas, ajustes,
+ * notas de credito y notas de debito) se convierten a {@link LedgerLine}, se agregan por (cuenta, periodo)
+ * en una sola pasada y se aplican con un upsert por llave en un JDBC batch. En la misma transaccion cada
+ * linea se agrega al libro mayor materializado (general_ledger_line) con su saldo acumulado.
+ */
+@Service
+public class LedgerPostingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerPostingService.class);
+
+    // Requiere el indice unico UK_CONTROL_BALANCE_ACCOUNT_PERIOD (cuenta, periodo, tenant)
+    private static final String UPSERT_BALANCE_SQL = "INSERT INTO control_account_balances (account_id, accounting_period_id, debit, credit, date, tenant_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE debit = COALESCE(debit, 0) + ?, credit = COALESCE(credit, 0) + ?";
+
+    private static final String INSERT_LEDGER_LINE_SQL = "INSERT INTO general_ledger_line (account_id, accounting_period_id, date, source_type, source_id, " +
+            "number_pda, debit, credit, running_balance, tenant_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Una linea con fecha anterior a lineas ya existentes desplaza el saldo acumulado de las posteriores
+    private static final String SHIFT_RUNNING_BALANCE_SQL = "UPDATE general_ledger_line SET running_balance = running_balance + ? " +
+            "WHERE tenant_id = ? AND accounting_period_id = ? AND account_id = ? AND date > ?";
+
+    private final AccountingPeriodService accountingPeriodService;
+    private final AuthService authService;
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerPostingService(AccountingPeriodService accountingPeriodService, AuthService authService, JdbcTemplate jdbcTemplate) {
+        this.accountingPeriodService = accountingPeriodService;
+        this.authService = authService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional
+    public void postTransactions(List<TransactionEntity> transactions) {
+        Long periodId = accountingPeriodService.getActivePeriodForWrite().getId();
+        List<LedgerLine> lines = new ArrayList<>();
+        for (TransactionEntity transaction : transactions) {
+            for (TransactionDetailEntity detail : transaction.getTransactionDetail()) {
+                lines.add(new LedgerLine(detail.getAccount().getId(), detail.getMotion(), detail.getAmount(), periodId,
+                        transaction.getCreateAtDate(), LedgerSourceType.TRANSACTION, transaction.getId(), toLong(transaction.getNumberPda())));
+            }
+        }
+        post(lines);
+    }
+
+    @Transactional
+    public void postAdjustments(List<AccountingAdjustmentsEntity> adjustments) {
+        Long periodId = accountingPeriodService.getActivePeriodForWrite().getId();
+        List<LedgerLine> lines = new ArrayList<>();
+        for (AccountingAdjustmentsEntity adjustment : adjustments) {
+            for (AdjustmentDetailEntity detail : adjustment.getAdjustmentDetail()) {
+                lines.add(new LedgerLine(detail.getAccount().getId(), detail.getMotion(), detail.getAmount(), periodId,
+                        adjustment.getTransaction().getCreateAtDate(), LedgerSourceType.ADJUSTMENT, adjustment.getId(),
+                        toLong(adjustment.getTransaction().getNumberPda())));
+            }
+        }
+        post(lines);
+    }
+
+    @Transactional
+    public void postCreditNotes(List<CreditNotesEntity> creditNotes) {
+        Long periodId = accountingPeriodService.getActivePeriodForWrite().getId();
+        List<LedgerLine> lines = new ArrayList<>();
+        for (CreditNotesEntity creditNote : creditNotes) {
+            for (CreditNotesDetailEntity detail : creditNote.getCreditNoteDetail()) {
+                lines.add(new LedgerLine(detail.getAccount().getId(), detail.getMotion(), detail.getAmount(), periodId,
+                        creditNote.getCreateAtDate(), LedgerSourceType.CREDIT_NOTE, creditNote.getId(),
+                        toLong(creditNote.getTransaction().getNumberPda())));
+            }
+        }
+        post(lines);
+    }
+
+    @Transactional
+    public void postDebitNotes(List<DebitNotesEntity> debitNotes) {
+        Long periodId = accountingPeriodService.getActivePeriodForWrite().getId();
+        List<LedgerLine> lines = new ArrayList<>();
+        for (DebitNotesEntity debitNote : debitNotes) {
+            for (DebitNotesDetailEntity detail : debitNote.getDebitNoteDetail()) {
+                lines.add(new LedgerLine(detail.getAccount().getId(), detail.getMotion(), detail.getAmount(), periodId,
+                        debitNote.getCreateAtDate(), LedgerSourceType.DEBIT_NOTE, debitNote.getId(),
+                        toLong(debitNote.getTransaction().getNumberPda())));
+            }
+        }
+        post(lines);
+    }
+
+    @Transactional
+    public void post(List<LedgerLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        String tenantId = authService.getTenantId();
+
+        // Una sola pasada de agregacion por (cuenta, periodo); el TreeMap deja las llaves ordenadas y el upsert
+        // bloquea las filas siempre en el mismo orden, sin interbloqueos entre lotes. El bloqueo de fila de la base
+        // se mantiene hasta el commit y cubre tambien a los demas nodos
+        SortedMap<BalanceKey, BalanceDelta> deltas = new TreeMap<>();
+        for (LedgerLine line : lines) {
+            BalanceKey key = new BalanceKey(line.getAccountId(), line.getPeriodId());
+            deltas.computeIfAbsent(key, k -> new BalanceDelta(line.getDate())).add(line.getMotion(), line.getAmount());
+        }
+
+        upsertBalances(deltas, tenantId);
+        appendLedgerLines(lines, tenantId);
+        logger.info("Posted {} ledger lines into {} control account balances", lines.size(), deltas.size());
+    }
+
+    private void upsertBalances(Map<BalanceKey, BalanceDelta> deltas, String tenantId) {
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        for (Map.Entry<BalanceKey, BalanceDelta> entry : deltas.entrySet()) {
+            BalanceDelta delta = entry.getValue();
+            batchArgs.add(new Object[]{
+                    entry.getKey().accountId(), entry.getKey().periodId(), delta.debit, delta.credit, delta.date, tenantId,
+                    delta.debit, delta.credit
+            });
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_BALANCE_SQL, batchArgs);
+    }
+
+    // El saldo final de cada cuenta sale de control_account_balances despues del upsert; la fila queda bloqueada
+    // hasta el commit, asi que los posteos concurrentes de la misma cuenta se serializan tambien entre nodos.
+    // El saldo de cada linea nueva es: saldo final - (lineas existentes con fecha posterior) - (lineas nuevas
+    // que quedan despues en orden (fecha, id)). Ambas lecturas son con bloqueo: una lectura simple en REPEATABLE
+    // READ usa la foto de la primera consulta de la transaccion y no ve las lineas que otro posteo confirmo
+    // mientras esta esperaba el bloqueo de la fila.
+    private void appendLedgerLines(List<LedgerLine> lines, String tenantId) {
+        SortedMap<BalanceKey, List<LedgerLine>> linesByKey = new TreeMap<>();
+        for (LedgerLine line : lines) {
+            linesByKey.computeIfAbsent(new BalanceKey(line.getAccountId(), line.getPeriodId()), k -> new ArrayList<>()).add(line);
+        }
+
+        Map<Long, List<Long>> accountsByPeriod = new TreeMap<>();
+        for (BalanceKey key : linesByKey.keySet()) {
+            accountsByPeriod.computeIfAbsent(key.periodId(), k -> new ArrayList<>()).add(key.accountId());
+        }
+
+        List<Object[]> shiftArgs = new ArrayList<>();
+        List<Object[]> insertArgs = new ArrayList<>(lines.size());
+        for (Map.Entry<Long, List<Long>> periodAccounts : accountsByPeriod.entrySet()) {
+            Long periodId = periodAccounts.getKey();
+            List<Long> accountIds = periodAccounts.getValue();
+            Map<Long, BigDecimal> finalBalances = getControlBalances(tenantId, periodId, accountIds);
+            LocalDate minDate = lines.stream().filter(line -> line.getPeriodId().equals(periodId))
+                    .map(LedgerLine::getDate).min(Comparator.naturalOrder()).orElseThrow();
+            Map<Long, TreeMap<LocalDate, BigDecimal>> laterNets = getLedgerNetsAfter(tenantId, periodId, accountIds, minDate);
+
+            for (Long accountId : accountIds) {
+                List<LedgerLine> accountLines = new ArrayList<>(linesByKey.get(new BalanceKey(accountId, periodId)));
+                accountLines.sort(Comparator.comparing(LedgerLine::getDate));
+                TreeMap<LocalDate, BigDecimal> existing = laterNets.getOrDefault(accountId, new TreeMap<>());
+
+                BigDecimal[] running = new BigDecimal[accountLines.size()];
+                BigDecimal newAfter = BigDecimal.ZERO;
+                for (int i = accountLines.size() - 1; i >= 0; i--) {
+                    LedgerLine line = accountLines.get(i);
+                    BigDecimal existingAfter = existing.tailMap(line.getDate(), false).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+                    running[i] = finalBalances.getOrDefault(accountId, BigDecimal.ZERO).subtract(existingAfter).subtract(newAfter);
+                    newAfter = newAfter.add(net(line));
+                }
+
+                Map<LocalDate, BigDecimal> netByDate = new TreeMap<>();
+                for (int i = 0; i < accountLines.size(); i++) {
+                    LedgerLine line = accountLines.get(i);
+                    boolean debit = line.getMotion().equals(Motion.D);
+                    insertArgs.add(new Object[]{
+                            accountId, periodId, line.getDate(), line.getSourceType().name(), line.getSourceId(), line.getNumberPda(),
+                            debit ? line.getAmount() : BigDecimal.ZERO, debit ? BigDecimal.ZERO : line.getAmount(), running[i], tenantId
+                    });
+                    if (!existing.tailMap(line.getDate(), false).isEmpty()) {
+                        netByDate.merge(line.getDate(), net(line), BigDecimal::add);
+                    }
+                }
+                netByDate.forEach((date, amount) -> shiftArgs.add(new Object[]{amount, tenantId, periodId, accountId, date}));
+            }
+        }
+
+        if (!shiftArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(SHIFT_RUNNING_BALANCE_SQL, shiftArgs);
+        }
+        jdbcTemplate.batchUpdate(INSERT_LEDGER_LINE_SQL, insertArgs);
+    }
+
+    private Map<Long, BigDecimal> getControlBalances(String tenantId, Long periodId, List<Long> accountIds) {
+        String sql = "SELECT account_id, COALESCE(debit, 0) - COALESCE(credit, 0) AS balance FROM control_account_balances " +
+                "WHERE tenant_id = ? AND accounting_period_id = ? AND account_id IN (" + placeholders(accountIds.size()) + ") FOR UPDATE";
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            balances.put(rs.getLong("account_id"), rs.getBigDecimal("balance"));
+        }, queryArgs(tenantId, periodId, accountIds));
+        return balances;
+    }
+
+    private Map<Long, TreeMap<LocalDate, BigDecimal>> getLedgerNetsAfter(String tenantId, Long periodId, List<Long> accountIds, LocalDate afterDate) {
+        // Se suman en memoria, un SELECT agrupado no admite FOR UPDATE en todos los motores
+        String sql = "SELECT account_id, date, debit, credit FROM general_ledger_line " +
+                "WHERE tenant_id = ? AND accounting_period_id = ? AND account_id IN (" + placeholders(accountIds.size()) + ") AND date > ? " +
+                "FOR UPDATE";
+        List<Object> args = new ArrayList<>(List.of(queryArgs(tenantId, periodId, accountIds)));
+        args.add(afterDate);
+        Map<Long, TreeMap<LocalDate, BigDecimal>> nets = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            BigDecimal debit = rs.getBigDecimal("debit") != null ? rs.getBigDecimal("debit") : BigDecimal.ZERO;
+            BigDecimal credit = rs.getBigDecimal("credit") != null ? rs.getBigDecimal("credit") : BigDecimal.ZERO;
+            nets.computeIfAbsent(rs.getLong("account_id"), k -> new TreeMap<>())
+                    .merge(rs.getObject("date", LocalDate.class), debit.subtract(credit), BigDecimal::add);
+        }, args.toArray());
+        return nets;
+    }
+
+    private static Object[] queryArgs(String tenantId, Long periodId, List<Long> accountIds) {
+        List<Object> args = new ArrayList<>(accountIds.size() + 2);
+        args.add(tenantId);
+        args.add(periodId);
+        args.addAll(accountIds);
+        return args.toArray();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static BigDecimal net(LedgerLine line) {
+        return line.getMotion().equals(Motion.D) ? line.getAmount() : line.getAmount().negate();
+    }
+
+    private static Long toLong(BigInteger value) {
+        return value != null ? value.longValue() : null;
+    }
+
+    private record BalanceKey(Long accountId, Long periodId) implements Comparable<BalanceKey> {
+
+        @Override
+        public int compareTo(BalanceKey other) {
+            int compare = accountId.compareTo(other.accountId);
+            return compare != 0 ? compare : periodId.compareTo(other.periodId);
+        }
+    }
+
+    private static class BalanceDelta {
+        private final LocalDate date;
+        private BigDecimal debit = BigDecimal.ZERO;
+        private BigDecimal credit = BigDecimal.ZERO;
+
+        BalanceDelta(LocalDate date) {
+            this.date = date;
+        }
+
+        void add(Motion motion, BigDecimal amount) {
+            if (motion.equals(Motion.D)) {
+                debit = debit.add(amount);
+            } else {
+                credit = credit.add(amount);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.models.OpeningBalanceRow;
+import com.sti.accounting.repositories.IBalancesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saldos iniciales de todas las cuentas del tenant para los reportes financieros. Se leen con una sola consulta y se
+ * indexan por cuenta, en lugar de recorrer la coleccion lazy de balances de cada cuenta.
+ */
+@Service
+public class OpeningBalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpeningBalanceService.class);
+
+    public static final class OpeningBalances {
+
+        private final Map<Long, OpeningBalanceRow> current;
+        private final Map<Long, BigDecimal> initialDebit;
+        private final Map<Long, BigDecimal> initialCredit;
+        private final Map<Long, OpeningBalanceRow> oldest;
+
+        public OpeningBalances(List<OpeningBalanceRow> currentRows, List<OpeningBalanceRow> oldestFirstRows) {
+            this.current = new HashMap<>();
+            this.initialDebit = new HashMap<>();
+            this.initialCredit = new HashMap<>();
+            for (OpeningBalanceRow row : currentRows) {
+                current.putIfAbsent(row.getAccountId(), row);
+                BigDecimal amount = row.getInitialBalance() != null ? row.getInitialBalance() : BigDecimal.ZERO;
+                if ("D".equalsIgnoreCase(row.getTypicalBalance())) {
+                    initialDebit.merge(row.getAccountId(), amount, BigDecimal::add);
+                } else if ("C".equalsIgnoreCase(row.getTypicalBalance())) {
+                    initialCredit.merge(row.getAccountId(), amount, BigDecimal::add);
+                }
+            }
+
+            // Las filas vienen ordenadas por fecha, la primera de cada cuenta es la mas antigua
+            this.oldest = new HashMap<>();
+            for (OpeningBalanceRow row : oldestFirstRows) {
+                oldest.putIfAbsent(row.getAccountId(), row);
+            }
+        }
+
+        // Primer saldo vigente de la cuenta, null si no tiene
+        public OpeningBalanceRow getCurrent(Long accountId) {
+            return current.get(accountId);
+        }
+
+        // Saldo mas antiguo de la cuenta, solo si se cargo con includeOldest
+        public OpeningBalanceRow getOldest(Long accountId) {
+            return oldest.get(accountId);
+        }
+
+        // Suma de los saldos vigentes de naturaleza deudora
+        public BigDecimal getInitialDebit(Long accountId) {
+            return initialDebit.getOrDefault(accountId, BigDecimal.ZERO);
+        }
+
+        // Suma de los saldos vigentes de naturaleza acreedora
+        public BigDecimal getInitialCredit(Long accountId) {
+            return initialCredit.getOrDefault(accountId, BigDecimal.ZERO);
+        }
+    }
+
+    private final IBalancesRepository iBalancesRepository;
+
+    public OpeningBalanceService(IBalancesRepository iBalancesRepository) {
+        this.iBalancesRepository = iBalancesRepository;
+    }
+
+    public OpeningBalances getOpeningBalances(String tenantId) {
+        return getOpeningBalances(tenantId, false);
+    }
+
+    /**
+     * Carga los saldos vigentes del tenant; con includeOldest tambien el saldo mas antiguo de cada cuenta, que usa la
+     * balanza anual.
+     */
+    public OpeningBalances getOpeningBalances(String tenantId, boolean includeOldest) {
+        List<OpeningBalanceRow> currentRows = iBalancesRepository.findCurrentOpeningBalances(tenantId);
+        List<OpeningBalanceRow> oldestRows = includeOldest ? iBalancesRepository.findOpeningBalancesOldestFirst(tenantId) : List.of();
+        logger.debug("Opening balances loaded for tenant {}: {} current rows", tenantId, currentRows.size());
+        return new OpeningBalances(currentRows, oldestRows);
+    }
+}
@@ -0,0 +1,106 @@
+package com.sti.accounting.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numeracion de PDA por tenant sobre pda_sequence (PdaSequenceEntity), reemplaza al trigger INSERT_NUMBER_PDA.
+ * <p>
+ * Hay dos formas de obtener numeros:
+ * <ul>
+ *     <li>{@link #reserveRange(String, int)}: reserva un rango dentro de la transaccion del llamador. La fila del
+ *     tenant queda bloqueada hasta el commit y un rollback devuelve el rango, asi no quedan huecos. La usa la carga
+ *     masiva, una reserva por bloque.</li>
+ *     <li>{@link #next(String)}: para partidas individuales. Por defecto cada numero se reserva en la transaccion de
+ *     la partida, como hacia el trigger: sin huecos y en orden de creacion. Con {@code app.pda.gap-free=false} cada
+ *     nodo reserva bloques de {@code app.pda.block-size} numeros en una transaccion corta propia y los entrega desde
+ *     memoria sin bloqueos; un rollback o un reinicio pueden dejar huecos y los numeros de nodos distintos no siguen
+ *     el orden de creacion, por eso solo conviene si la numeracion no tiene que ser correlativa.</li>
+ * </ul>
+ */
+@Service
+public class PdaSequenceService {
+
+    // El upsert crea la fila del tenant o avanza su ultimo numero de forma atomica
+    private static final String RESERVE_SQL = "INSERT INTO pda_sequence (tenant_id, last_number) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE last_number = last_number + ?";
+
+    private static final String LAST_NUMBER_SQL = "SELECT last_number FROM pda_sequence WHERE tenant_id = ?";
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long last;
+
+        private Block(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate blockTransaction;
+    private final int blockSize;
+    private final boolean gapFree;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private final Map<String, Object> refillLocks = new ConcurrentHashMap<>();
+
+    public PdaSequenceService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              @Value("${app.pda.block-size:50}") int blockSize,
+                              @Value("${app.pda.gap-free:true}") boolean gapFree) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockTransaction = new TransactionTemplate(transactionManager);
+        this.blockTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = Math.max(1, blockSize);
+        this.gapFree = gapFree;
+    }
+
+    /**
+     * Reserva {@code count} numeros consecutivos y devuelve el primero. Debe llamarse dentro de una transaccion.
+     */
+    public long reserveRange(String tenantId, int count) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("PDA ranges must be reserved inside a transaction");
+        }
+        jdbcTemplate.update(RESERVE_SQL, tenantId, count, count);
+        Long last = jdbcTemplate.queryForObject(LAST_NUMBER_SQL, Long.class, tenantId);
+        if (last == null) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "PDA sequence not found for tenant");
+        }
+        return last - count + 1;
+    }
+
+    public BigInteger next(String tenantId) {
+        if (gapFree) {
+            return BigInteger.valueOf(reserveRange(tenantId, 1));
+        }
+        while (true) {
+            Block block = blocks.get(tenantId);
+            if (block != null) {
+                long number = block.next.getAndIncrement();
+                if (number <= block.last) {
+                    return BigInteger.valueOf(number);
+                }
+            }
+            // Solo un hilo por tenant recarga; los demas reintentan con el bloque nuevo
+            synchronized (refillLocks.computeIfAbsent(tenantId, key -> new Object())) {
+                if (blocks.get(tenantId) == block) {
+                    Long first = blockTransaction.execute(status -> reserveRange(tenantId, blockSize));
+                    blocks.put(tenantId, new Block(first, first + blockSize - 1));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountEntity;
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.entities.ControlAccountBalancesEntity;
+import com.sti.accounting.entities.TrialBalanceSnapshotEntity;
+import com.sti.accounting.models.GeneralBalanceResponse;
+import com.sti.accounting.models.IncomeStatementResponse;
+import com.sti.accounting.models.ReportDataSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Service
+public class ReportDataService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportDataService.class);
+
+    public record ClosingTotals(BigDecimal totalAssets, BigDecimal totalLiabilities, BigDecimal totalCapital,
+                                BigDecimal totalIncome, BigDecimal totalExpenses, BigDecimal netIncome) {
+    }
+
+    // Calculo de totales anuales en paralelo con la generacion del PDF
+    private final ExecutorService annualTotalsExecutor = Executors.newFixedThreadPool(2);
+
+    private final ControlAccountBalancesService controlAccountBalancesService;
+    private final GeneralBalanceService generalBalanceService;
+    private final IncomeStatementService incomeStatementService;
+    private final TrialBalanceSnapshotService trialBalanceSnapshotService;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ReportDataService(ControlAccountBalancesService controlAccountBalancesService, GeneralBalanceService generalBalanceService,
+                             IncomeStatementService incomeStatementService, TrialBalanceSnapshotService trialBalanceSnapshotService,
+                             PlatformTransactionManager transactionManager) {
+        this.controlAccountBalancesService = controlAccountBalancesService;
+        this.generalBalanceService = generalBalanceService;
+        this.incomeStatementService = incomeStatementService;
+        this.trialBalanceSnapshotService = trialBalanceSnapshotService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @PreDestroy
+    public void shutdownAnnualTotalsExecutor() {
+        annualTotalsExecutor.shutdown();
+    }
+
+    public ReportDataSnapshot buildSnapshot(AccountingPeriodEntity period) {
+        logger.info("Building report data for period {}", period.getId());
+
+        List<AccountEntity> incomeAccounts = incomeStatementService.getIncomeStatementAccounts(period.getTenantId());
+        List<AccountEntity> balanceAccounts = generalBalanceService.getBalanceAccounts(period.getTenantId());
+        List<IncomeStatementResponse> incomeStatement;
+        List<GeneralBalanceResponse> generalBalance;
+        Map<Long, TrialBalanceSnapshotEntity> closingSnapshot = trialBalanceSnapshotService.getSnapshotByAccount(period.getId());
+        if (closingSnapshot.isEmpty()) {
+            // Una sola consulta agrupada por cuenta alimenta el balance general y el estado de resultados
+            Map<Long, ControlAccountBalancesEntity> movementsByAccount = controlAccountBalancesService.getPeriodMovementsByAccount(
+                    period.getId(), period.getStartPeriod().toLocalDate(), period.getEndPeriod().toLocalDate());
+            incomeStatement = incomeStatementService.getIncomeStatement(incomeAccounts, movementsByAccount);
+            generalBalance = generalBalanceService.getBalanceGeneral(balanceAccounts, movementsByAccount, incomeStatement);
+        } else {
+            // Periodo ya cerrado, se usa el snapshot guardado al cierre
+            incomeStatement = incomeStatementService.getIncomeStatement(incomeAccounts, TrialBalanceSnapshotService.toPeriodMovements(closingSnapshot));
+            generalBalance = generalBalanceService.getBalanceGeneralFromSnapshot(balanceAccounts, closingSnapshot, incomeStatement);
+        }
+
+        ReportDataSnapshot snapshot = new ReportDataSnapshot();
+        snapshot.setPeriod(period);
+        snapshot.setGeneralBalance(generalBalance);
+        snapshot.setIncomeStatement(incomeStatement);
+
+        // Totales del balance general
+        snapshot.setTotalAssets(sumBalanceCategory(generalBalance, "ACTIVO"));
+        snapshot.setTotalLiabilities(sumBalanceCategory(generalBalance, "PASIVO"));
+        snapshot.setTotalCapital(sumBalanceCategory(generalBalance, "PATRIMONIO"));
+
+        // Totales de ingresos y gastos
+        snapshot.setTotalIncome(sumTypicalBalance(incomeStatement, "C"));
+        snapshot.setTotalExpenses(sumTypicalBalance(incomeStatement, "D"));
+        snapshot.setNetIncome(incomeStatementService.getNetProfit(incomeStatement));
+        return snapshot;
+    }
+
+    // El hilo de trabajo no tiene el contexto de seguridad, por eso el tenant se recibe explicito
+    public CompletableFuture<ClosingTotals> calculateAnnualTotalsAsync(List<AccountingPeriodEntity> periods, String tenantId) {
+        return CompletableFuture.supplyAsync(() -> calculateAnnualTotals(periods, tenantId), annualTotalsExecutor);
+    }
+
+    /**
+     * Totales del cierre anual: suma de los totales de balance general y estado de resultados de cada periodo.
+     * Los movimientos de todos los periodos salen de una sola consulta agrupada por periodo y cuenta, los snapshots
+     * de otra, y las cuentas se cargan una vez para todos los periodos.
+     */
+    public ClosingTotals calculateAnnualTotals(List<AccountingPeriodEntity> periods, String tenantId) {
+        // Transaccion propia para que las relaciones perezosas de las cuentas se puedan leer en cualquier hilo
+        return readOnlyTransaction.execute(status -> {
+            List<Long> periodIds = periods.stream().map(AccountingPeriodEntity::getId).toList();
+            Map<Long, Map<Long, ControlAccountBalancesEntity>> movementsByPeriod = controlAccountBalancesService.getMovementsByPeriodAndAccount(periodIds, tenantId);
+            Map<Long, Map<Long, TrialBalanceSnapshotEntity>> snapshotsByPeriod = trialBalanceSnapshotService.getSnapshotsByPeriod(periodIds, tenantId);
+            List<AccountEntity> balanceAccounts = generalBalanceService.getBalanceAccounts(tenantId);
+            List<AccountEntity> incomeAccounts = incomeStatementService.getIncomeStatementAccounts(tenantId);
+
+            BigDecimal totalAssets = BigDecimal.ZERO;
+            BigDecimal totalLiabilities = BigDecimal.ZERO;
+            BigDecimal totalCapital = BigDecimal.ZERO;
+            BigDecimal totalIncome = BigDecimal.ZERO;
+            BigDecimal totalExpenses = BigDecimal.ZERO;
+
+            for (AccountingPeriodEntity period : periods) {
+                List<IncomeStatementResponse> incomeStatement;
+                List<GeneralBalanceResponse> generalBalance;
+                Map<Long, TrialBalanceSnapshotEntity> snapshot = snapshotsByPeriod.get(period.getId());
+                if (snapshot != null) {
+                    incomeStatement = incomeStatementService.getIncomeStatement(incomeAccounts, TrialBalanceSnapshotService.toPeriodMovements(snapshot));
+                    generalBalance = generalBalanceService.getBalanceGeneralFromSnapshot(balanceAccounts, snapshot, incomeStatement);
+                } else {
+                    Map<Long, ControlAccountBalancesEntity> movementsByAccount = movementsByPeriod.getOrDefault(period.getId(), Map.of());
+                    incomeStatement = incomeStatementService.getIncomeStatement(incomeAccounts, movementsByAccount);
+                    generalBalance = generalBalanceService.getBalanceGeneral(balanceAccounts, movementsByAccount, incomeStatement);
+                }
+
+                totalAssets = totalAssets.add(sumBalanceCategory(generalBalance, "ACTIVO"));
+                totalLiabilities = totalLiabilities.add(sumBalanceCategory(generalBalance, "PASIVO"));
+                totalCapital = totalCapital.add(sumBalanceCategory(generalBalance, "PATRIMONIO"));
+                totalIncome = totalIncome.add(sumTypicalBalance(incomeStatement, "C"));
+                totalExpenses = totalExpenses.add(sumTypicalBalance(incomeStatement, "D"));
+            }
+
+            logger.info("Annual totals calculated for {} periods", periods.size());
+            return new ClosingTotals(totalAssets, totalLiabilities, totalCapital, totalIncome, totalExpenses, totalIncome.subtract(totalExpenses));
+        });
+    }
+
+    private BigDecimal sumBalanceCategory(List<GeneralBalanceResponse> balances, String category) {
+        return balances.stream()
+                .filter(item -> category.equals(item.getCategory()))
+                .map(GeneralBalanceResponse::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private BigDecimal sumTypicalBalance(List<IncomeStatementResponse> incomeStatement, String typicalBalance) {
+        return incomeStatement.stream()
+                .filter(item -> typicalBalance.equals(item.getTypicalBalance()))
+                .map(IncomeStatementResponse::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
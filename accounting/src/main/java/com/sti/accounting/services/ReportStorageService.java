@@ -0,0 +1,112 @@
+package com.sti.accounting.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Almacen de reportes PDF direccionado por contenido. Cada archivo se guarda con el nombre de su SHA-256
+ * ({@code <dir>/<2 primeros caracteres>/<hash>.pdf}); un mismo contenido se guarda una sola vez y un archivo
+ * nunca cambia, por eso el hash sirve tambien como ETag. El reporte se escribe directo a disco mientras se genera,
+ * sin armarlo completo en memoria.
+ */
+@Service
+public class ReportStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportStorageService.class);
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    @FunctionalInterface
+    public interface ReportWriter {
+        void write(OutputStream outputStream) throws Exception;
+    }
+
+    public record StoredReport(String hash, long size) {
+    }
+
+    private final Path root;
+
+    public ReportStorageService(@Value("${app.reports.storage-dir:data/reports}") String storageDir) {
+        this.root = Paths.get(storageDir).toAbsolutePath().normalize();
+    }
+
+    public StoredReport store(ReportWriter writer) {
+        Path temp = null;
+        try {
+            Files.createDirectories(root);
+            temp = Files.createTempFile(root, "report-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (OutputStream outputStream = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), digest)) {
+                writer.write(outputStream);
+            }
+            return moveToStore(temp, HexFormat.of().formatHex(digest.digest()));
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se pudo guardar el reporte", e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    public StoredReport store(InputStream inputStream) {
+        return store(inputStream::transferTo);
+    }
+
+    public Resource load(String hash) {
+        Path path = pathFor(hash);
+        if (!Files.isRegularFile(path)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Report not found");
+        }
+        return new FileSystemResource(path);
+    }
+
+    private StoredReport moveToStore(Path temp, String hash) throws IOException {
+        Path target = pathFor(hash);
+        long size = Files.size(temp);
+        if (Files.exists(target)) {
+            // Mismo contenido ya guardado
+            return new StoredReport(hash, size);
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            logger.debug("Report {} stored concurrently", hash);
+        }
+        return new StoredReport(hash, size);
+    }
+
+    private Path pathFor(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Report not found");
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash + ".pdf");
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete temp report {}", path, e);
+        }
+    }
+}
@@ -21,7 +21,11 @@ public class SeniorAccountantsService {
 
     //ToDo: Flujo principal
     public List<SeniorAccountsResponse> getSeniorAccountants() {
-        Map<String, List<AccountTransactionDTO>> transactionAccounts = transactionService.getTransactionAccountsByActivePeriod();
+        return getSeniorAccountants(null, null);
+    }
+
+    public List<SeniorAccountsResponse> getSeniorAccountants(String fromCode, String toCode) {
+        Map<String, List<AccountTransactionDTO>> transactionAccounts = transactionService.getTransactionAccountsByActivePeriod(fromCode, toCode);
 
         List<SeniorAccountsResponse> seniorAccountsResponsesList = new ArrayList<>();
 
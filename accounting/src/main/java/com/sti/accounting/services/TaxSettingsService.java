@@ -29,7 +29,7 @@ public class TaxSettingsService {
 
     public List<TaxSettingsResponse> getAllTaxSettings() {
         String tenantId = authService.getTenantId();
-        return this.taxSettingsRepository.findAll().stream().filter(tax -> tax.getTenantId().equals(tenantId)).map(this::toResponse).toList();
+        return this.taxSettingsRepository.findAllByTenantId(tenantId).stream().map(this::toResponse).toList();
     }
 
     public TaxSettingsResponse getTaxSettingsById(Long id) {
@@ -77,10 +77,9 @@ public class TaxSettingsService {
     public BigDecimal getTaxRateForUtility(BigDecimal utilityBeforeIsv, String taxType) {
         String tenantId = authService.getTenantId();
 
-        return taxSettingsRepository.findAll().stream()
+        return taxSettingsRepository.findAllByTenantId(tenantId).stream()
                 .filter(tax ->
-                        tenantId.equals(tax.getTenantId()) &&
-                                taxType.equalsIgnoreCase(tax.getType()) &&
+                        taxType.equalsIgnoreCase(tax.getType()) &&
                                 utilityBeforeIsv.compareTo(nullSafe(tax.getFromValue())) >= 0 &&
                                 (tax.getToValue() == null || utilityBeforeIsv.compareTo(tax.getToValue()) <= 0)
                 )
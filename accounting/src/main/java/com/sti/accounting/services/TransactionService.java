@@ -2,23 +2,32 @@ package com.sti.accounting.services;
 
 import com.sti.accounting.entities.*;
 import com.sti.accounting.models.*;
-import com.sti.accounting.repositories.IAccountRepository;
 import com.sti.accounting.repositories.IAccountingJournalRepository;
 import com.sti.accounting.repositories.IDocumentRepository;
 import com.sti.accounting.repositories.ITransactionRepository;
+import com.sti.accounting.utils.AccountCodeComparator;
 import com.sti.accounting.utils.Motion;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Service
@@ -26,47 +35,151 @@ public class TransactionService {
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionService.class);
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int EXPORT_PAGE_SIZE = 500;
+
+    private static final ObjectMapper NDJSON_MAPPER = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
     private final ITransactionRepository transactionRepository;
-    private final IAccountRepository iAccountRepository;
+    private final AccountCatalogService accountCatalogService;
     private final IDocumentRepository document;
     private final IAccountingJournalRepository accountingJournalRepository;
-    private final ControlAccountBalancesService controlAccountBalancesService;
+    private final LedgerPostingService ledgerPostingService;
     private final AccountingPeriodService accountingPeriodService;
     private final AuthService authService;
-    public TransactionService(ITransactionRepository transactionRepository, IAccountRepository iAccountRepository,
-                              IDocumentRepository document, IAccountingJournalRepository accountingJournalRepository, ControlAccountBalancesService controlAccountBalancesService, AccountingPeriodService accountingPeriodService, AuthService authService) {
+    private final PdaSequenceService pdaSequenceService;
+    private final EntityManager entityManager;
+    public TransactionService(ITransactionRepository transactionRepository, AccountCatalogService accountCatalogService,
+                              IDocumentRepository document, IAccountingJournalRepository accountingJournalRepository, LedgerPostingService ledgerPostingService, AccountingPeriodService accountingPeriodService, AuthService authService,
+                              PdaSequenceService pdaSequenceService, EntityManager entityManager) {
         this.transactionRepository = transactionRepository;
-        this.iAccountRepository = iAccountRepository;
+        this.accountCatalogService = accountCatalogService;
         this.document = document;
         this.accountingJournalRepository = accountingJournalRepository;
-        this.controlAccountBalancesService = controlAccountBalancesService;
+        this.ledgerPostingService = ledgerPostingService;
         this.accountingPeriodService = accountingPeriodService;
         this.authService = authService;
+        this.pdaSequenceService = pdaSequenceService;
+        this.entityManager = entityManager;
     }
 
     public List<TransactionResponse> getAllTransaction() {
         String tenantId = authService.getTenantId();
-        return transactionRepository.findAll().stream().filter(transaction -> transaction.getTenantId().equals(tenantId)).map(this::entityToResponse).toList();
+        return transactionRepository.findAllWithDetailByTenantId(tenantId).stream().map(this::entityToResponse).toList();
+    }
+
+    // Paginacion por llave (fecha, id) de la mas reciente a la mas antigua
+    public KeysetPageResponse<TransactionResponse> getTransactionPage(LocalDate afterDate, Long afterId, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Page size must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        if ((afterDate == null) != (afterId == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "afterDate and afterId must be sent together");
+        }
+        String tenantId = authService.getTenantId();
+
+        List<TransactionEntity> page = findTransactionPage(tenantId, afterDate, afterId, size + 1);
+        boolean hasNext = page.size() > size;
+        if (hasNext) {
+            page = page.subList(0, size);
+        }
+
+        KeysetPageResponse<TransactionResponse> response = new KeysetPageResponse<>();
+        response.setContent(page.stream().map(this::entityToResponse).toList());
+        response.setHasNext(hasNext);
+        if (hasNext) {
+            TransactionEntity last = page.get(page.size() - 1);
+            response.setNextDate(last.getCreateAtDate());
+            response.setNextId(last.getId());
+        }
+        return response;
+    }
+
+    // Exportacion NDJSON: se recorre el libro por paginas, la memoria no depende del tamaño del libro.
+    // El tenant se resuelve en el hilo de la peticion porque la escritura corre en otro hilo.
+    public StreamingResponseBody exportTransactions() {
+        String tenantId = authService.getTenantId();
+        return outputStream -> writeTransactions(tenantId, outputStream);
+    }
+
+    private void writeTransactions(String tenantId, OutputStream outputStream) throws IOException {
+        LocalDate afterDate = null;
+        Long afterId = null;
+        List<TransactionEntity> page;
+        do {
+            page = findTransactionPage(tenantId, afterDate, afterId, EXPORT_PAGE_SIZE);
+            for (TransactionEntity transaction : page) {
+                outputStream.write(NDJSON_MAPPER.writeValueAsBytes(entityToResponse(transaction)));
+                outputStream.write('\n');
+            }
+            outputStream.flush();
+
+            if (!page.isEmpty()) {
+                TransactionEntity last = page.get(page.size() - 1);
+                afterDate = last.getCreateAtDate();
+                afterId = last.getId();
+            }
+            // Con open-in-view el EntityManager de la peticion vive toda la exportacion; se sueltan las
+            // entidades de la pagina ya escrita para que no se acumulen todas las partidas del libro
+            entityManager.clear();
+        } while (page.size() == EXPORT_PAGE_SIZE);
+    }
+
+    private List<TransactionEntity> findTransactionPage(String tenantId, LocalDate afterDate, Long afterId, int limit) {
+        Pageable pageable = PageRequest.of(0, limit);
+        List<Long> ids = afterDate == null
+                ? transactionRepository.findPageIds(tenantId, pageable)
+                : transactionRepository.findPageIdsAfter(tenantId, afterDate, afterId, pageable);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Segundo query con join fetch de detalle, cuentas, documento, diario y periodo; se respeta el orden de los ids
+        Map<Long, TransactionEntity> byId = transactionRepository.findAllWithDetailByIdIn(ids).stream()
+                .collect(Collectors.toMap(TransactionEntity::getId, transaction -> transaction));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toCollection(ArrayList::new));
     }
 
     //ToDo: Revisar este metodo (comparar la informacion que me trae con la que se tiene en la tabla de control de saldos)
+    @Transactional(readOnly = true)
     public Map<String, List<AccountTransactionDTO>> getTransactionAccountsByActivePeriod() {
+        return getTransactionAccountsByActivePeriod(null, null);
+    }
+
+    // Tenant, periodo y cuentas se filtran en SQL; las filas llegan ordenadas por codigo de cuenta
+    @Transactional(readOnly = true)
+    public Map<String, List<AccountTransactionDTO>> getTransactionAccountsByActivePeriod(String fromCode, String toCode) {
+        String tenantId = authService.getTenantId();
         AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
 
-        List<Object[]> accountTransactionSummary = transactionRepository.getAccountTransactionSummary();
+        Map<String, List<AccountTransactionDTO>> transactionDTOMap = new LinkedHashMap<>();
 
-        Map<String, List<AccountTransactionDTO>> transactionDTOMap = new HashMap<>();
+        // El rango se resuelve por segmento sobre el catalogo: como texto "1-1-10" quedaria antes de "1-1-2"
+        boolean allAccounts = fromCode == null && toCode == null;
+        List<Long> accountIds = allAccounts ? List.of(-1L) : getAccountIdsInRange(tenantId, fromCode, toCode);
+        if (accountIds.isEmpty()) {
+            return transactionDTOMap;
+        }
 
-        for (Object[] arr : accountTransactionSummary) {
-            AccountTransactionDTO dto = createAccountTransactionDTO(arr);
-            if (dto.getAccountingPeriodId().equals(activePeriod.getId())) {
+        try (Stream<Object[]> ledger = transactionRepository.streamAccountLedger(tenantId, activePeriod.getId(), allAccounts, accountIds)) {
+            ledger.forEach(arr -> {
+                AccountTransactionDTO dto = createAccountTransactionDTO(arr);
                 transactionDTOMap.computeIfAbsent(dto.getDescription(), k -> new ArrayList<>()).add(dto);
-            }
+            });
         }
 
         return transactionDTOMap;
     }
 
+    private List<Long> getAccountIdsInRange(String tenantId, String fromCode, String toCode) {
+        return accountCatalogService.getCatalog(tenantId).getAccounts().stream()
+                .filter(account -> AccountCodeComparator.INSTANCE.isInRange(account.getCode(), fromCode, toCode))
+                .map(AccountEntity::getId)
+                .toList();
+    }
+
     private AccountTransactionDTO createAccountTransactionDTO(Object[] arr) {
         AccountTransactionDTO dto = new AccountTransactionDTO();
         dto.setDescription(getValueAsString(arr[0]));
@@ -154,7 +267,7 @@ public class TransactionService {
         );
 
 
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
 
         entity.setDocument(documentType);
         entity.setStatus(StatusTransaction.DRAFT);
@@ -179,6 +292,7 @@ public class TransactionService {
 
         List<TransactionDetailEntity> transactionDetailEntities = detailToEntity(entity, transactionRequest.getDetail());
         entity.setTransactionDetail(transactionDetailEntities);
+        entity.setNumberPda(pdaSequenceService.next(tenantId));
 
         transactionRepository.save(entity);
 
@@ -215,7 +329,7 @@ public class TransactionService {
                 )
         );
 
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
+        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriodForWrite();
 
         //validate transactions
         validateTransactionDetail(transactionRequest.getDetail());
@@ -229,8 +343,8 @@ public class TransactionService {
          *  if the detail is not found in the existing details, it will be added
          *  if the detail is found in the existing details, it will be updated*/
         List<TransactionDetailEntity> updatedDetails = new ArrayList<>();
-        //prepared accounts (accountsMap is a Map<Long, AccountEntity>)
-        var accountsMap = iAccountRepository.findAll().stream().collect(Collectors.toMap(AccountEntity::getId, account -> account));
+        //prepared accounts (catalogo de cuentas del tenant en memoria)
+        var accountsMap = accountCatalogService.getCatalog(tenantId);
 
         // loop over request
         for (TransactionDetailRequest detailRequest : transactionRequest.getDetail()) {
@@ -294,9 +408,9 @@ public class TransactionService {
 
             for (TransactionEntity transactionEntity : existingTransactions) {
                 transactionEntity.setStatus(StatusTransaction.SUCCESS);
-                transactionRepository.save(transactionEntity);
-                controlAccountBalancesService.updateControlAccountBalances(transactionEntity);
             }
+            transactionRepository.saveAll(existingTransactions);
+            ledgerPostingService.postTransactions(existingTransactions);
 
     }
 
@@ -343,11 +457,11 @@ public class TransactionService {
         try {
             String tenantId = authService.getTenantId();
             List<TransactionDetailEntity> result = new ArrayList<>();
-            List<AccountEntity> accounts = iAccountRepository.findAll().stream().filter(account -> account.getTenantId().equals(tenantId)).toList();
+            AccountCatalogService.AccountCatalog accounts = accountCatalogService.getCatalog(tenantId);
             for (TransactionDetailRequest detail : detailRequests) {
                 TransactionDetailEntity entity = new TransactionDetailEntity();
                 // si la cuenta no existe esto truena
-                Optional<AccountEntity> currentAccount = accounts.stream().filter(x -> x.getId().equals(detail.getAccountId())).findFirst();
+                Optional<AccountEntity> currentAccount = accounts.findById(detail.getAccountId());
                 if (currentAccount.isEmpty()) {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The account with id " + detail.getAccountId() + "does not exist.");
                 }
@@ -1,42 +1,72 @@
 package com.sti.accounting.services;
 
+import com.sti.accounting.entities.AccountEntity;
 import com.sti.accounting.entities.AccountingPeriodEntity;
-import com.sti.accounting.entities.ControlAccountBalancesEntity;
+import com.sti.accounting.entities.TrialBalanceSnapshotEntity;
 import com.sti.accounting.models.*;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class TrialBalanceService {
 
     private final AccountingPeriodService accountingPeriodService;
     private final ControlAccountBalancesService controlAccountBalancesService;
-    private final AccountService accountService;
+    private final AccountCatalogService accountCatalogService;
+    private final OpeningBalanceService openingBalanceService;
+    private final TrialBalanceSnapshotService trialBalanceSnapshotService;
+    private final AuthService authService;
+    private final int workerCount;
+    private final int accountChunkSize;
+    // Calculo de los periodos en paralelo; los hilos solo trabajan con datos ya cargados, sin consultas ni tenant
+    private final ExecutorService workers;
 
     public TrialBalanceService(AccountingPeriodService accountingPeriodService,
                                ControlAccountBalancesService controlAccountBalancesService,
-                               AccountService accountService) {
+                               AccountCatalogService accountCatalogService,
+                               OpeningBalanceService openingBalanceService,
+                               TrialBalanceSnapshotService trialBalanceSnapshotService,
+                               AuthService authService,
+                               @Value("${app.trial-balance.workers:0}") int workerCount,
+                               @Value("${app.trial-balance.account-chunk-size:5000}") int accountChunkSize) {
         this.accountingPeriodService = accountingPeriodService;
         this.controlAccountBalancesService = controlAccountBalancesService;
-        this.accountService = accountService;
+        this.accountCatalogService = accountCatalogService;
+        this.openingBalanceService = openingBalanceService;
+        this.trialBalanceSnapshotService = trialBalanceSnapshotService;
+        this.authService = authService;
+        this.workerCount = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        this.accountChunkSize = Math.max(1, accountChunkSize);
+        this.workers = Executors.newFixedThreadPool(this.workerCount);
+    }
+
+    @PreDestroy
+    public void shutdownWorkers() {
+        workers.shutdown();
     }
 
     //ToDo: Revisar logica para obtener la balanza de comprobacion total todos los meses hasta el cierre anual
     public TrialBalanceResponse getTrialBalance() {
         TrialBalanceResponse trialBalanceResponse = new TrialBalanceResponse();
         List<TrialBalanceResponse.PeriodBalanceResponse> periodBalances = new ArrayList<>();
-        List<AccountResponse> allAccounts = accountService.getAllAccount();
+        String tenantId = authService.getTenantId();
+        List<AccountResponse> allAccounts = getReportAccounts(tenantId);
 
         // Obtener el período activo
         AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
         if (activePeriod != null && activePeriod.getStartPeriod() != null) {
-            // Crear la respuesta del balance del período activo
-            TrialBalanceResponse.PeriodBalanceResponse activePeriodBalanceResponse = createPeriodBalanceResponse(activePeriod, allAccounts, false);
-            periodBalances.add(activePeriodBalanceResponse);
+            List<AccountingPeriodEntity> periods = new ArrayList<>();
+            periods.add(activePeriod);
 
             // Obtener el año del período activo
             int activeYear = activePeriod.getStartPeriod().getYear();
@@ -47,41 +77,34 @@ public class TrialBalanceService {
                 if (closedPeriod.getStartPeriod() != null
                         && closedPeriod.getStartPeriod().getYear() == activeYear
                         && Boolean.TRUE.equals(!closedPeriod.getIsAnnual())) {
-                    TrialBalanceResponse.PeriodBalanceResponse closedPeriodBalanceResponse = createPeriodBalanceResponse(closedPeriod, allAccounts, false);
-                    periodBalances.add(closedPeriodBalanceResponse);
+                    periods.add(closedPeriod);
                 }
             }
+
+            periodBalances.addAll(createPeriodBalanceResponses(periods, allAccounts, tenantId, false));
         }
 
         trialBalanceResponse.setPeriods(periodBalances);
         return trialBalanceResponse;
     }
 
-    public TrialBalanceResponse getTrialBalancePdf() {
-        TrialBalanceResponse trialBalanceResponse = new TrialBalanceResponse();
-        List<TrialBalanceResponse.PeriodBalanceResponse> periodBalances = new ArrayList<>();
-        List<AccountResponse> allAccounts = accountService.getAllAccount();
-
-        // Obtener el período activo
-        AccountingPeriodEntity activePeriod = accountingPeriodService.getActivePeriod();
-        if (activePeriod != null && activePeriod.getStartPeriod() != null) {
-            // Crear la respuesta del balance del período activo
-            TrialBalanceResponse.PeriodBalanceResponse activePeriodBalanceResponse = createPeriodBalanceResponse(activePeriod, allAccounts, false);
-            periodBalances.add(activePeriodBalanceResponse);
+    // Filas de la balanza del período para el PDF, cada fila se calcula al recorrer el iterador
+    public Iterator<TrialBalanceResponse.AccountBalance> getTrialBalancePdfRows(AccountingPeriodEntity period) {
+        if (period == null || period.getStartPeriod() == null) {
+            return Collections.emptyIterator();
         }
-
-        trialBalanceResponse.setPeriods(periodBalances);
-        return trialBalanceResponse;
+        String tenantId = authService.getTenantId();
+        return createAccountBalanceRows(List.of(period), getReportAccounts(tenantId), tenantId, false);
     }
 
-
-    public TrialBalanceResponse getAllTrialBalances() {
-        TrialBalanceResponse trialBalanceResponse = new TrialBalanceResponse();
-        List<TrialBalanceResponse.PeriodBalanceResponse> periodBalances = new ArrayList<>();
-        List<AccountResponse> allAccounts = accountService.getAllAccount().stream().filter(f -> f.getSupportEntry() != null  ).toList();
+    // Filas de la balanza de todos los períodos para el PDF anual
+    public Iterator<TrialBalanceResponse.AccountBalance> getAllTrialBalanceRows() {
+        String tenantId = authService.getTenantId();
+        List<AccountResponse> allAccounts = getReportAccounts(tenantId).stream().filter(f -> f.getSupportEntry() != null  ).toList();
 
         // Obtener todos los períodos contables
         List<AccountingPeriodResponse> allAccountingPeriods = accountingPeriodService.getAllAccountingPeriod();
+        List<AccountingPeriodEntity> periods = new ArrayList<>();
 
         for (AccountingPeriodResponse periodResponse : allAccountingPeriods) {
             if (periodResponse.getStartPeriod() != null) {
@@ -91,55 +114,253 @@ public class TrialBalanceService {
                 period.setPeriodName(periodResponse.getPeriodName());
                 period.setStartPeriod(periodResponse.getStartPeriod());
                 period.setEndPeriod(periodResponse.getEndPeriod());
+                periods.add(period);
+            }
+        }
+
+        return createAccountBalanceRows(periods, allAccounts, tenantId, true);
+    }
+
+    // Calcula la balanza del período con los saldos actuales y la guarda como snapshot, se llama al cerrar el período
+    public void snapshotPeriod(AccountingPeriodEntity period) {
+        String tenantId = authService.getTenantId();
+        List<TrialBalanceResponse.PeriodBalanceResponse> periodBalances = createLivePeriodBalanceResponses(List.of(period), getReportAccounts(tenantId), tenantId, false);
+        trialBalanceSnapshotService.saveSnapshot(period, periodBalances.get(0));
+    }
+
+    // Cuentas del catalogo en memoria, sin los saldos: los saldos iniciales se cargan aparte en una sola consulta
+    private List<AccountResponse> getReportAccounts(String tenantId) {
+        return accountCatalogService.getCatalog(tenantId).getAccounts().stream().map(this::toReportAccount).toList();
+    }
+
+    private AccountResponse toReportAccount(AccountEntity entity) {
+        AccountResponse account = new AccountResponse();
+        account.setId(entity.getId());
+        account.setName(entity.getDescription());
+        account.setAccountCode(entity.getCode());
+        account.setSupportEntry(entity.isSupportsRegistration());
+        if (entity.getParent() != null) {
+            account.setParentName(entity.getParent().getDescription());
+            account.setParentId(entity.getParent().getId());
+        }
+        return account;
+    }
+
+    private List<TrialBalanceResponse.PeriodBalanceResponse> createPeriodBalanceResponses(List<AccountingPeriodEntity> periods, List<AccountResponse> allAccounts, String tenantId, boolean useFirstBalance) {
+        // Los períodos cerrados se leen del snapshot, solo los demás se calculan
+        List<Long> periodIds = periods.stream().map(AccountingPeriodEntity::getId).filter(Objects::nonNull).toList();
+        Map<Long, Map<Long, TrialBalanceSnapshotEntity>> snapshotsByPeriod = trialBalanceSnapshotService.getSnapshotsByPeriod(periodIds);
+
+        List<AccountingPeriodEntity> livePeriods = periods.stream()
+                .filter(period -> !snapshotsByPeriod.containsKey(period.getId()))
+                .toList();
+        Iterator<TrialBalanceResponse.PeriodBalanceResponse> liveBalances = createLivePeriodBalanceResponses(livePeriods, allAccounts, tenantId, useFirstBalance).iterator();
 
-                TrialBalanceResponse.PeriodBalanceResponse periodBalanceResponse = createPeriodBalanceResponse(period, allAccounts, true);
-                periodBalances.add(periodBalanceResponse);
+        List<TrialBalanceResponse.PeriodBalanceResponse> periodBalances = new ArrayList<>();
+        for (AccountingPeriodEntity period : periods) {
+            Map<Long, TrialBalanceSnapshotEntity> snapshot = snapshotsByPeriod.get(period.getId());
+            periodBalances.add(snapshot != null ? createPeriodBalanceResponseFromSnapshot(period, allAccounts, snapshot) : liveBalances.next());
+        }
+        return periodBalances;
+    }
+
+    private List<TrialBalanceResponse.PeriodBalanceResponse> createLivePeriodBalanceResponses(List<AccountingPeriodEntity> periods, List<AccountResponse> allAccounts, String tenantId, boolean useFirstBalance) {
+        if (periods.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Las consultas se hacen en el hilo de la peticion, los periodos y bloques de cuentas se calculan en paralelo
+        List<AccountMovementSummary> movements = getMovementsForPeriods(periods);
+        OpeningBalanceService.OpeningBalances openingBalances = openingBalanceService.getOpeningBalances(tenantId, useFirstBalance);
+        List<List<AccountResponse>> accountChunks = partition(allAccounts);
+        Executor executor = workerCount > 1 && periods.size() * accountChunks.size() > 1 ? workers : Runnable::run;
+
+        List<CompletableFuture<TrialBalanceResponse.PeriodBalanceResponse>> futures = new ArrayList<>();
+        for (AccountingPeriodEntity period : periods) {
+            CompletableFuture<Map<Long, TrialBalanceResponse.BalancePeriod>> movementsByAccount =
+                    CompletableFuture.supplyAsync(() -> sumMovementsByAccount(movements, period), executor);
+            List<CompletableFuture<List<TrialBalanceResponse.AccountBalance>>> chunks = accountChunks.stream()
+                    .map(chunk -> movementsByAccount.thenApplyAsync(byAccount -> createLiveAccountBalances(chunk, byAccount, openingBalances, useFirstBalance), executor))
+                    .toList();
+            futures.add(CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                    .thenApply(done -> createPeriodBalanceResponse(period, chunks.stream().flatMap(chunk -> chunk.join().stream()).toList())));
+        }
+
+        // Se une en el orden de los periodos, no en el que terminan
+        List<TrialBalanceResponse.PeriodBalanceResponse> periodBalances = new ArrayList<>();
+        for (CompletableFuture<TrialBalanceResponse.PeriodBalanceResponse> future : futures) {
+            periodBalances.add(join(future));
+        }
+        return periodBalances;
+    }
+
+    // join envuelve el error del hilo en CompletionException; se relanza el original para que, por ejemplo, una
+    // ResponseStatusException conserve su estado HTTP
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
             }
+            throw e;
         }
+    }
 
-        trialBalanceResponse.setPeriods(periodBalances);
-        return trialBalanceResponse;
+    // Bloques de cuentas para repartir catalogos grandes entre varios hilos
+    private List<List<AccountResponse>> partition(List<AccountResponse> allAccounts) {
+        if (allAccounts.size() <= accountChunkSize) {
+            return List.of(allAccounts);
+        }
+        List<List<AccountResponse>> chunks = new ArrayList<>();
+        for (int from = 0; from < allAccounts.size(); from += accountChunkSize) {
+            chunks.add(allAccounts.subList(from, Math.min(from + accountChunkSize, allAccounts.size())));
+        }
+        return chunks;
+    }
+
+    // Un solo query para todos los períodos: movimientos agrupados por cuenta y fecha en el rango total
+    private List<AccountMovementSummary> getMovementsForPeriods(List<AccountingPeriodEntity> periods) {
+        LocalDate startDate = periods.stream().map(p -> p.getStartPeriod().toLocalDate()).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDate endDate = periods.stream().map(p -> p.getEndPeriod().toLocalDate()).max(Comparator.naturalOrder()).orElseThrow();
+        return controlAccountBalancesService.getMovementsForDateRange(startDate, endDate);
     }
 
-    private TrialBalanceResponse.PeriodBalanceResponse createPeriodBalanceResponse(AccountingPeriodEntity period, List<AccountResponse> allAccounts, boolean useFirstBalance) {
+    private Iterator<TrialBalanceResponse.AccountBalance> createAccountBalanceRows(List<AccountingPeriodEntity> periods, List<AccountResponse> allAccounts, String tenantId, boolean useFirstBalance) {
+        List<Long> periodIds = periods.stream().map(AccountingPeriodEntity::getId).filter(Objects::nonNull).toList();
+        Map<Long, Map<Long, TrialBalanceSnapshotEntity>> snapshotsByPeriod = trialBalanceSnapshotService.getSnapshotsByPeriod(periodIds);
+
+        List<AccountingPeriodEntity> livePeriods = periods.stream()
+                .filter(period -> !snapshotsByPeriod.containsKey(period.getId()))
+                .toList();
+        List<AccountMovementSummary> movements = livePeriods.isEmpty() ? List.of() : getMovementsForPeriods(livePeriods);
+        OpeningBalanceService.OpeningBalances openingBalances = livePeriods.isEmpty()
+                ? new OpeningBalanceService.OpeningBalances(List.of(), List.of())
+                : openingBalanceService.getOpeningBalances(tenantId, useFirstBalance);
+
+        // Los movimientos de cada período se agrupan al llegar a él y las filas no se guardan en ninguna lista
+        return periods.stream().flatMap(period -> {
+            Map<Long, TrialBalanceSnapshotEntity> snapshot = snapshotsByPeriod.get(period.getId());
+            if (snapshot != null) {
+                return allAccounts.stream().map(account -> createAccountBalanceFromSnapshot(account, snapshot));
+            }
+            Map<Long, TrialBalanceResponse.BalancePeriod> movementsByAccount = sumMovementsByAccount(movements, period);
+            return allAccounts.stream().map(account -> createLiveAccountBalance(account, movementsByAccount, openingBalances, useFirstBalance));
+        }).iterator();
+    }
+
+    private TrialBalanceResponse.PeriodBalanceResponse createPeriodBalanceResponseFromSnapshot(AccountingPeriodEntity period, List<AccountResponse> allAccounts, Map<Long, TrialBalanceSnapshotEntity> snapshot) {
         TrialBalanceResponse.PeriodBalanceResponse periodBalanceResponse = new TrialBalanceResponse.PeriodBalanceResponse();
         periodBalanceResponse.setPeriodName(period.getPeriodName());
         periodBalanceResponse.setStartPeriod(period.getStartPeriod());
         periodBalanceResponse.setEndPeriod(period.getEndPeriod());
 
         List<TrialBalanceResponse.AccountBalance> accountBalances = new ArrayList<>();
-        Map<Long, TrialBalanceResponse.FinalBalance> finalBalancesMap = new HashMap<>();
-
         for (AccountResponse account : allAccounts) {
-                TrialBalanceResponse.AccountBalance accountBalance = createAccountBalance(account);
-
-                // Calcular el balance inicial
-                TrialBalanceResponse.InitialBalance initialBalanceResponse;
-                if (useFirstBalance) {
-                    initialBalanceResponse = calculateInitialBalanceUsingOldest(account);
-                } else {
-                    initialBalanceResponse = calculateInitialBalance(account);
-                }
-                accountBalance.setInitialBalance(Collections.singletonList(initialBalanceResponse));
+            accountBalances.add(createAccountBalanceFromSnapshot(account, snapshot));
+        }
 
-                // Calcular el balance para el rango de fechas
-                TrialBalanceResponse.BalancePeriod balancePeriodResponse = calculateBalanceForDateRange(account, period.getStartPeriod(), period.getEndPeriod());
-                accountBalance.setBalancePeriod(Collections.singletonList(balancePeriodResponse));
+        periodBalanceResponse.setAccountBalances(accountBalances);
+        return periodBalanceResponse;
+    }
 
-                // Calcular el balance final
-                TrialBalanceResponse.FinalBalance finalBalanceResponse = calculateFinalBalance(balancePeriodResponse, initialBalanceResponse, account);
-                accountBalance.setFinalBalance(Collections.singletonList(finalBalanceResponse));
+    private TrialBalanceResponse.AccountBalance createAccountBalanceFromSnapshot(AccountResponse account, Map<Long, TrialBalanceSnapshotEntity> snapshot) {
+        TrialBalanceResponse.AccountBalance accountBalance = createAccountBalance(account);
+        TrialBalanceSnapshotEntity row = snapshot.get(account.getId());
 
-                // Almacenar el balance final en el mapa
-                finalBalancesMap.put(account.getId(), finalBalanceResponse);
+        // Cuentas creadas después del cierre no tienen snapshot, quedan en cero
+        TrialBalanceResponse.InitialBalance initialBalance = new TrialBalanceResponse.InitialBalance(
+                row != null ? nullSafe(row.getInitialDebit()) : BigDecimal.ZERO,
+                row != null ? nullSafe(row.getInitialCredit()) : BigDecimal.ZERO);
 
-                accountBalances.add(accountBalance);
-       }
+        TrialBalanceResponse.BalancePeriod balancePeriod = new TrialBalanceResponse.BalancePeriod();
+        balancePeriod.setDebit(row != null ? nullSafe(row.getPeriodDebit()) : BigDecimal.ZERO);
+        balancePeriod.setCredit(row != null ? nullSafe(row.getPeriodCredit()) : BigDecimal.ZERO);
 
-        periodBalanceResponse.setAccountBalances(accountBalances);
+        TrialBalanceResponse.FinalBalance finalBalance = new TrialBalanceResponse.FinalBalance();
+        finalBalance.setDebit(row != null ? nullSafe(row.getFinalDebit()) : BigDecimal.ZERO);
+        finalBalance.setCredit(row != null ? nullSafe(row.getFinalCredit()) : BigDecimal.ZERO);
+
+        accountBalance.setInitialBalance(Collections.singletonList(initialBalance));
+        accountBalance.setBalancePeriod(Collections.singletonList(balancePeriod));
+        accountBalance.setFinalBalance(Collections.singletonList(finalBalance));
+        return accountBalance;
+    }
+
+    private BigDecimal nullSafe(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private Map<Long, TrialBalanceResponse.BalancePeriod> sumMovementsByAccount(List<AccountMovementSummary> movements, AccountingPeriodEntity period) {
+        LocalDate startDate = period.getStartPeriod().toLocalDate();
+        LocalDate endDate = period.getEndPeriod().toLocalDate();
+
+        Map<Long, TrialBalanceResponse.BalancePeriod> balancesByAccount = new HashMap<>();
+        for (AccountMovementSummary movement : movements) {
+            LocalDate date = movement.getCreateAtDate();
+            if (date == null || date.isBefore(startDate) || date.isAfter(endDate)) {
+                continue;
+            }
+
+            TrialBalanceResponse.BalancePeriod balancePeriod = balancesByAccount.computeIfAbsent(movement.getAccountId(), id -> {
+                TrialBalanceResponse.BalancePeriod newBalance = new TrialBalanceResponse.BalancePeriod();
+                newBalance.setDebit(BigDecimal.ZERO);
+                newBalance.setCredit(BigDecimal.ZERO);
+                return newBalance;
+            });
+            balancePeriod.setDebit(balancePeriod.getDebit().add(Optional.ofNullable(movement.getDebit()).orElse(BigDecimal.ZERO)));
+            balancePeriod.setCredit(balancePeriod.getCredit().add(Optional.ofNullable(movement.getCredit()).orElse(BigDecimal.ZERO)));
+        }
+        return balancesByAccount;
+    }
+
+    private TrialBalanceResponse.PeriodBalanceResponse createPeriodBalanceResponse(AccountingPeriodEntity period, List<TrialBalanceResponse.AccountBalance> accountBalances) {
+        TrialBalanceResponse.PeriodBalanceResponse periodBalanceResponse = new TrialBalanceResponse.PeriodBalanceResponse();
+        periodBalanceResponse.setPeriodName(period.getPeriodName());
+        periodBalanceResponse.setStartPeriod(period.getStartPeriod());
+        periodBalanceResponse.setEndPeriod(period.getEndPeriod());
+        periodBalanceResponse.setAccountBalances(new ArrayList<>(accountBalances));
         return periodBalanceResponse;
     }
 
+    private List<TrialBalanceResponse.AccountBalance> createLiveAccountBalances(List<AccountResponse> accounts, Map<Long, TrialBalanceResponse.BalancePeriod> movementsByAccount, OpeningBalanceService.OpeningBalances openingBalances, boolean useFirstBalance) {
+        List<TrialBalanceResponse.AccountBalance> accountBalances = new ArrayList<>(accounts.size());
+        for (AccountResponse account : accounts) {
+            accountBalances.add(createLiveAccountBalance(account, movementsByAccount, openingBalances, useFirstBalance));
+        }
+        return accountBalances;
+    }
+
+    private TrialBalanceResponse.AccountBalance createLiveAccountBalance(AccountResponse account, Map<Long, TrialBalanceResponse.BalancePeriod> movementsByAccount, OpeningBalanceService.OpeningBalances openingBalances, boolean useFirstBalance) {
+        TrialBalanceResponse.AccountBalance accountBalance = createAccountBalance(account);
+
+        // Calcular el balance inicial
+        OpeningBalanceRow currentBalance = openingBalances.getCurrent(account.getId());
+        TrialBalanceResponse.InitialBalance initialBalanceResponse;
+        if (useFirstBalance) {
+            initialBalanceResponse = calculateInitialBalance(openingBalances.getOldest(account.getId()));
+        } else {
+            initialBalanceResponse = calculateInitialBalance(currentBalance);
+        }
+        accountBalance.setInitialBalance(Collections.singletonList(initialBalanceResponse));
+
+        // Calcular el balance para el rango de fechas
+        TrialBalanceResponse.BalancePeriod balancePeriodResponse = getBalancePeriod(movementsByAccount, account.getId());
+        accountBalance.setBalancePeriod(Collections.singletonList(balancePeriodResponse));
+
+        // Calcular el balance final
+        TrialBalanceResponse.FinalBalance finalBalanceResponse = calculateFinalBalance(balancePeriodResponse, initialBalanceResponse, currentBalance);
+        accountBalance.setFinalBalance(Collections.singletonList(finalBalanceResponse));
+        return accountBalance;
+    }
+
     private TrialBalanceResponse.AccountBalance createAccountBalance(AccountResponse account) {
         TrialBalanceResponse.AccountBalance accountBalance = new TrialBalanceResponse.AccountBalance();
         accountBalance.setId(account.getId());
@@ -150,54 +371,14 @@ public class TrialBalanceService {
         return accountBalance;
     }
 
-    private TrialBalanceResponse.InitialBalance calculateInitialBalance(AccountResponse account) {
+    // Saldo inicial de la fila indicada: el saldo vigente, o el mas antiguo en la balanza anual
+    private TrialBalanceResponse.InitialBalance calculateInitialBalance(OpeningBalanceRow openingBalance) {
         TrialBalanceResponse.InitialBalance initialBalanceResponse = new TrialBalanceResponse.InitialBalance();
         BigDecimal initialBalance = BigDecimal.ZERO;
 
-        if (account.getBalances() != null && !account.getBalances().isEmpty()) {
-            Optional<AccountBalance> currentBalanceOpt = account.getBalances().stream()
-                    .filter(balance -> Boolean.TRUE.equals(balance.getIsCurrent()))
-                    .findFirst();
-
-            if (currentBalanceOpt.isPresent()) {
-                AccountBalance currentBalance = currentBalanceOpt.get();
-                initialBalance = Optional.ofNullable(currentBalance.getInitialBalance()).orElse(BigDecimal.ZERO);
-                String typicalBalance = currentBalance.getTypicalBalance();
-
-                if ("D".equalsIgnoreCase(typicalBalance)) {
-                    initialBalanceResponse.setDebit(initialBalance);
-                    initialBalanceResponse.setCredit(BigDecimal.ZERO);
-                } else {
-                    initialBalanceResponse.setDebit(BigDecimal.ZERO);
-                    initialBalanceResponse.setCredit(initialBalance);
-                }
-            }
-        }
-
-        if (initialBalance.equals(BigDecimal.ZERO)) {
-            initialBalanceResponse.setDebit(BigDecimal.ZERO);
-            initialBalanceResponse.setCredit(BigDecimal.ZERO);
-        }
-
-        return initialBalanceResponse;
-    }
-
-    private TrialBalanceResponse.InitialBalance calculateInitialBalanceUsingOldest(AccountResponse account) {
-        TrialBalanceResponse.InitialBalance initialBalanceResponse = new TrialBalanceResponse.InitialBalance();
-        BigDecimal initialBalance = BigDecimal.ZERO;
-
-        if (account.getBalances() != null && !account.getBalances().isEmpty()) {
-            // Convertir el Set a una List y ordenar por createAtDate
-            List<AccountBalance> balancesList = new ArrayList<>(account.getBalances());
-
-            // Ordenar los balances por la fecha de creación (createAtDate)
-            balancesList.sort(Comparator.comparing(AccountBalance::getCreateAtDate));
-
-            // Tomar el balance más antiguo
-            AccountBalance oldestBalance = balancesList.get(0);
-
-            initialBalance = Optional.ofNullable(oldestBalance.getInitialBalance()).orElse(BigDecimal.ZERO);
-            String typicalBalance = oldestBalance.getTypicalBalance();
+        if (openingBalance != null) {
+            initialBalance = Optional.ofNullable(openingBalance.getInitialBalance()).orElse(BigDecimal.ZERO);
+            String typicalBalance = openingBalance.getTypicalBalance();
 
             if ("D".equalsIgnoreCase(typicalBalance)) {
                 initialBalanceResponse.setDebit(initialBalance);
@@ -216,39 +397,26 @@ public class TrialBalanceService {
         return initialBalanceResponse;
     }
 
-    private TrialBalanceResponse.BalancePeriod calculateBalanceForDateRange(AccountResponse account, LocalDateTime startDate, LocalDateTime endDate) {
-        TrialBalanceResponse.BalancePeriod balancePeriodResponse = new TrialBalanceResponse.BalancePeriod();
-        LocalDate startLocalDate = startDate.toLocalDate();
-        LocalDate endLocalDate = endDate.toLocalDate();
-
-        List<ControlAccountBalancesEntity> balances = controlAccountBalancesService.getControlAccountBalancesForDateRange(account.getId(), startLocalDate, endLocalDate);
-
-        BigDecimal totalDebit = BigDecimal.ZERO;
-        BigDecimal totalCredit = BigDecimal.ZERO;
-
-        for (ControlAccountBalancesEntity balance : balances) {
-            totalDebit = totalDebit.add(Optional.ofNullable(balance.getDebit()).orElse(BigDecimal.ZERO));
-            totalCredit = totalCredit.add(Optional.ofNullable(balance.getCredit()).orElse(BigDecimal.ZERO));
+    private TrialBalanceResponse.BalancePeriod getBalancePeriod(Map<Long, TrialBalanceResponse.BalancePeriod> movementsByAccount, Long accountId) {
+        TrialBalanceResponse.BalancePeriod balancePeriod = movementsByAccount.get(accountId);
+        if (balancePeriod == null) {
+            balancePeriod = new TrialBalanceResponse.BalancePeriod();
+            balancePeriod.setDebit(BigDecimal.ZERO);
+            balancePeriod.setCredit(BigDecimal.ZERO);
         }
-
-        balancePeriodResponse.setDebit(totalDebit);
-        balancePeriodResponse.setCredit(totalCredit);
-
-        return balancePeriodResponse;
+        return balancePeriod;
     }
 
     private TrialBalanceResponse.FinalBalance calculateFinalBalance(
             TrialBalanceResponse.BalancePeriod balancePeriod,
             TrialBalanceResponse.InitialBalance initialBalance,
-            AccountResponse account) {
+            OpeningBalanceRow currentBalance) {
 
         TrialBalanceResponse.FinalBalance finalBalance = new TrialBalanceResponse.FinalBalance();
 
         // Determina el tipo de balance típico (debe ser "D" o "C")
-        String typicalBalance = account.getBalances().stream()
-                .filter(balance -> Boolean.TRUE.equals(balance.getIsCurrent()))
-                .findFirst()
-                .map(AccountBalance::getTypicalBalance)
+        String typicalBalance = Optional.ofNullable(currentBalance)
+                .map(OpeningBalanceRow::getTypicalBalance)
                 .orElse("D");
 
         // Suma los débitos y créditos
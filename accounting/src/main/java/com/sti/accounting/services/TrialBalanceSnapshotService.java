@@ -0,0 +1,99 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.entities.ControlAccountBalancesEntity;
+import com.sti.accounting.entities.TrialBalanceSnapshotEntity;
+import com.sti.accounting.models.TrialBalanceResponse;
+import com.sti.accounting.repositories.ITrialBalanceSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class TrialBalanceSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrialBalanceSnapshotService.class);
+
+    private final ITrialBalanceSnapshotRepository trialBalanceSnapshotRepository;
+    private final AuthService authService;
+
+    public TrialBalanceSnapshotService(ITrialBalanceSnapshotRepository trialBalanceSnapshotRepository, AuthService authService) {
+        this.trialBalanceSnapshotRepository = trialBalanceSnapshotRepository;
+        this.authService = authService;
+    }
+
+    // Los periodos cerrados no cambian, se guarda la balanza calculada al momento del cierre
+    @Transactional
+    public void saveSnapshot(AccountingPeriodEntity period, TrialBalanceResponse.PeriodBalanceResponse periodBalance) {
+        String tenantId = authService.getTenantId();
+        logger.info("Saving trial balance snapshot for period {}", period.getId());
+
+        trialBalanceSnapshotRepository.deleteAllByAccountingPeriodIdAndTenantId(period.getId(), tenantId);
+
+        List<TrialBalanceSnapshotEntity> snapshots = new ArrayList<>();
+        for (TrialBalanceResponse.AccountBalance accountBalance : periodBalance.getAccountBalances()) {
+            TrialBalanceResponse.InitialBalance initial = accountBalance.getInitialBalance().get(0);
+            TrialBalanceResponse.BalancePeriod movement = accountBalance.getBalancePeriod().get(0);
+            TrialBalanceResponse.FinalBalance finalBalance = accountBalance.getFinalBalance().get(0);
+
+            TrialBalanceSnapshotEntity snapshot = new TrialBalanceSnapshotEntity();
+            snapshot.setAccountingPeriod(period);
+            snapshot.setAccountId(accountBalance.getId());
+            snapshot.setInitialDebit(initial.getDebit());
+            snapshot.setInitialCredit(initial.getCredit());
+            snapshot.setPeriodDebit(movement.getDebit());
+            snapshot.setPeriodCredit(movement.getCredit());
+            snapshot.setFinalDebit(finalBalance.getDebit());
+            snapshot.setFinalCredit(finalBalance.getCredit());
+            snapshot.setTenantId(tenantId);
+            snapshots.add(snapshot);
+        }
+
+        trialBalanceSnapshotRepository.saveAll(snapshots);
+    }
+
+    // accountId -> snapshot, vacio si el periodo no tiene snapshot (periodo abierto o cerrado antes de existir la tabla)
+    public Map<Long, TrialBalanceSnapshotEntity> getSnapshotByAccount(Long periodId) {
+        String tenantId = authService.getTenantId();
+        return trialBalanceSnapshotRepository.findAllByAccountingPeriodIdAndTenantId(periodId, tenantId).stream()
+                .collect(Collectors.toMap(TrialBalanceSnapshotEntity::getAccountId, snapshot -> snapshot, (first, second) -> first));
+    }
+
+    // Movimientos del periodo guardados en el snapshot, como los usa el estado de resultados de un periodo cerrado
+    public static Map<Long, ControlAccountBalancesEntity> toPeriodMovements(Map<Long, TrialBalanceSnapshotEntity> snapshot) {
+        Map<Long, ControlAccountBalancesEntity> movementsByAccount = new HashMap<>();
+        snapshot.forEach((accountId, row) -> {
+            ControlAccountBalancesEntity movements = new ControlAccountBalancesEntity();
+            movements.setAccountId(accountId);
+            movements.setDebit(row.getPeriodDebit());
+            movements.setCredit(row.getPeriodCredit());
+            movementsByAccount.put(accountId, movements);
+        });
+        return movementsByAccount;
+    }
+
+    // periodId -> (accountId -> snapshot) para varios periodos en una sola consulta
+    public Map<Long, Map<Long, TrialBalanceSnapshotEntity>> getSnapshotsByPeriod(Collection<Long> periodIds) {
+        if (periodIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return getSnapshotsByPeriod(periodIds, authService.getTenantId());
+    }
+
+    public Map<Long, Map<Long, TrialBalanceSnapshotEntity>> getSnapshotsByPeriod(Collection<Long> periodIds, String tenantId) {
+        if (periodIds.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        Map<Long, Map<Long, TrialBalanceSnapshotEntity>> snapshotsByPeriod = new HashMap<>();
+        for (TrialBalanceSnapshotEntity snapshot : trialBalanceSnapshotRepository.findAllByAccountingPeriodIdInAndTenantId(periodIds, tenantId)) {
+            snapshotsByPeriod.computeIfAbsent(snapshot.getAccountingPeriod().getId(), id -> new HashMap<>())
+                    .putIfAbsent(snapshot.getAccountId(), snapshot);
+        }
+        return snapshotsByPeriod;
+    }
+}
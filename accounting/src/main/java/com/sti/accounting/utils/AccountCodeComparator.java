@@ -0,0 +1,64 @@
+package com.sti.accounting.utils;
+
+import java.util.Comparator;
+
+/**
+ * Orden de codigos de cuenta por segmento: "1-1-2" va antes que "1-1-10". Los segmentos numericos se comparan por
+ * valor y los demas como texto; un codigo que es prefijo de otro va primero.
+ */
+public final class AccountCodeComparator implements Comparator<String> {
+
+    public static final AccountCodeComparator INSTANCE = new AccountCodeComparator();
+
+    private static final String SEPARATOR = "[^0-9A-Za-z]+";
+
+    private AccountCodeComparator() {
+    }
+
+    @Override
+    public int compare(String left, String right) {
+        String[] leftSegments = left.trim().split(SEPARATOR);
+        String[] rightSegments = right.trim().split(SEPARATOR);
+        int length = Math.min(leftSegments.length, rightSegments.length);
+        for (int i = 0; i < length; i++) {
+            int result = compareSegment(leftSegments[i], rightSegments[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(leftSegments.length, rightSegments.length);
+    }
+
+    /**
+     * Indica si el codigo esta dentro del rango; un limite null no restringe.
+     */
+    public boolean isInRange(String code, String fromCode, String toCode) {
+        if (code == null) {
+            return false;
+        }
+        return (fromCode == null || compare(code, fromCode) >= 0) && (toCode == null || compare(code, toCode) <= 0);
+    }
+
+    private static int compareSegment(String left, String right) {
+        if (isNumeric(left) && isNumeric(right)) {
+            // Sin ceros a la izquierda el segmento mas largo es el mayor, sin limite de digitos
+            String leftDigits = stripLeadingZeros(left);
+            String rightDigits = stripLeadingZeros(right);
+            int byLength = Integer.compare(leftDigits.length(), rightDigits.length());
+            return byLength != 0 ? byLength : leftDigits.compareTo(rightDigits);
+        }
+        return left.compareToIgnoreCase(right);
+    }
+
+    private static boolean isNumeric(String segment) {
+        return !segment.isEmpty() && segment.chars().allMatch(Character::isDigit);
+    }
+
+    private static String stripLeadingZeros(String digits) {
+        int start = 0;
+        while (start < digits.length() - 1 && digits.charAt(start) == '0') {
+            start++;
+        }
+        return digits.substring(start);
+    }
+}
@@ -0,0 +1,118 @@
+package com.sti.accounting.utils;
+
+import com.sti.accounting.entities.AccountEntity;
+import com.sti.accounting.services.AccountCatalogService;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Totales jerarquicos del catalogo de cuentas. Trabaja con filas planas (id, padre, monto): arma el arbol una vez y
+ * calcula el subtotal de cada cuenta de abajo hacia arriba en un solo recorrido, sin consultas por nivel.
+ */
+public final class AccountRollup {
+
+    private AccountRollup() {
+    }
+
+    /**
+     * Asigna a cada fila su monto mas el de todas sus subcuentas. Cada monto viene expresado en la naturaleza de su
+     * propia cuenta ({@code natureOf}, "D" o "C"); el subtotal de una subcuenta de naturaleza distinta a la del padre,
+     * como una cuenta complementaria, se resta en lugar de sumarse. Las filas cuyo padre no esta en la lista se toman
+     * como raices.
+     */
+    public static <T> void rollUp(List<T> rows, Function<T, Long> idOf, Function<T, Long> parentIdOf,
+                                  Function<T, BigDecimal> amountOf, Function<T, String> natureOf,
+                                  BiConsumer<T, BigDecimal> subtotalSetter) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T row : rows) {
+            Long id = idOf.apply(row);
+            if (id != null) {
+                byId.putIfAbsent(id, row);
+            }
+        }
+
+        Map<T, List<T>> children = new IdentityHashMap<>();
+        List<T> roots = new ArrayList<>();
+        for (T row : rows) {
+            T parent = byId.get(parentIdOf.apply(row));
+            if (parent == null || parent == row) {
+                roots.add(row);
+            } else {
+                children.computeIfAbsent(parent, k -> new ArrayList<>()).add(row);
+            }
+        }
+
+        // Recorrido post-orden con pila, el padre se suma cuando ya se sumaron todos sus hijos
+        Map<T, BigDecimal> subtotals = new IdentityHashMap<>();
+        Deque<T> pending = new ArrayDeque<>();
+        Set<T> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (T root : roots) {
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                T row = pending.peek();
+                if (expanded.add(row)) {
+                    children.getOrDefault(row, List.of()).forEach(pending::push);
+                    continue;
+                }
+                pending.pop();
+                BigDecimal subtotal = nullSafe(amountOf.apply(row));
+                boolean creditNature = isCreditNature(natureOf.apply(row));
+                for (T child : children.getOrDefault(row, List.of())) {
+                    BigDecimal childSubtotal = subtotals.get(child);
+                    subtotal = isCreditNature(natureOf.apply(child)) == creditNature
+                            ? subtotal.add(childSubtotal)
+                            : subtotal.subtract(childSubtotal);
+                }
+                subtotals.put(row, subtotal);
+            }
+        }
+
+        for (T row : rows) {
+            // Una fila dentro de un ciclo no se alcanza desde ninguna raiz, se queda con su propio monto
+            subtotalSetter.accept(row, subtotals.getOrDefault(row, nullSafe(amountOf.apply(row))));
+        }
+    }
+
+    /**
+     * Categoria principal de cada cuenta del catalogo: la primera de {@code categories} contenida en la descripcion
+     * de la cuenta o, si no hay, la de su padre. Se resuelve de la raiz hacia las hojas en un solo recorrido.
+     */
+    public static Map<Long, String> resolveCategories(AccountCatalogService.AccountCatalog catalog, List<String> categories) {
+        Map<Long, String> resolved = new HashMap<>();
+        Deque<AccountEntity> pending = new ArrayDeque<>(catalog.getChildren(null));
+        while (!pending.isEmpty()) {
+            AccountEntity account = pending.pop();
+            if (resolved.containsKey(account.getId())) {
+                continue;
+            }
+            String inherited = account.getParent() != null ? resolved.getOrDefault(account.getParent().getId(), "") : "";
+            resolved.put(account.getId(), matchCategory(account.getDescription(), categories, inherited));
+            pending.addAll(catalog.getChildren(account.getId()));
+        }
+        return resolved;
+    }
+
+    private static String matchCategory(String description, List<String> categories, String inherited) {
+        if (description != null) {
+            String upperDescription = description.toUpperCase();
+            for (String category : categories) {
+                if (upperDescription.contains(category)) {
+                    return category;
+                }
+            }
+        }
+        return inherited;
+    }
+
+    // Igual que el saldo neto de los reportes: todo lo que no es "C" se trata como deudor
+    private static boolean isCreditNature(String typicalBalance) {
+        return "C".equalsIgnoreCase(typicalBalance);
+    }
+
+    private static BigDecimal nullSafe(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
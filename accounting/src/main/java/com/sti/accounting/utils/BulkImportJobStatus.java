@@ -0,0 +1,9 @@
+package com.sti.accounting.utils;
+
+public enum BulkImportJobStatus {
+
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,6 @@
+package com.sti.accounting.utils;
+
+public enum LedgerSourceType {
+
+    TRANSACTION, ADJUSTMENT, CREDIT_NOTE, DEBIT_NOTE
+}
@@ -0,0 +1,165 @@
+package com.sti.accounting.utils;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Lectura por eventos (SAX) de la primera hoja de un xlsx. Solo se mantiene en memoria la fila actual y la tabla
+ * de textos compartidos, por lo que el heap no crece con el numero de filas.
+ * Las celdas se entregan como texto igual que en la lectura con XSSFWorkbook: valores con el formato de la celda
+ * y formulas con su ultimo resultado calculado.
+ */
+public final class StreamingSheetReader {
+
+    @FunctionalInterface
+    public interface RowHandler {
+        void row(int rowIndex, String[] values);
+    }
+
+    private StreamingSheetReader() {
+    }
+
+    public static void read(File file, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new SheetHandler(strings, styles, handler));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Invalid xlsx file", e);
+        }
+    }
+
+    private static class SheetHandler extends DefaultHandler {
+
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final RowHandler handler;
+        private final DataFormatter formatter = new DataFormatter();
+
+        private final List<String> values = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int rowIndex = -1;
+        private int columnIndex;
+        private String cellType;
+        private String cellStyle;
+        private boolean formula;
+        private boolean capture;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, StylesTable styles, RowHandler handler) {
+            this.strings = strings;
+            this.styles = styles;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    String ref = attributes.getValue("r");
+                    rowIndex = ref != null ? Integer.parseInt(ref) - 1 : rowIndex + 1;
+                    values.clear();
+                    columnIndex = -1;
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    columnIndex = ref != null ? new CellReference(ref).getCol() : columnIndex + 1;
+                    cellType = attributes.getValue("t");
+                    cellStyle = attributes.getValue("s");
+                    formula = false;
+                    text.setLength(0);
+                }
+                case "f" -> formula = true;
+                case "v", "t" -> capture = true;
+                default -> {
+                    // otros elementos no aportan valores
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capture) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> capture = false;
+                case "c" -> {
+                    while (values.size() <= columnIndex) {
+                        values.add("");
+                    }
+                    values.set(columnIndex, cellValue());
+                }
+                case "row" -> handler.row(rowIndex, values.toArray(String[]::new));
+                default -> {
+                    // sin accion
+                }
+            }
+        }
+
+        private String cellValue() {
+            String raw = text.toString();
+            if (cellType == null || "n".equals(cellType)) {
+                if (raw.isEmpty()) {
+                    return "";
+                }
+                double number = Double.parseDouble(raw);
+                // Las formulas se devolvian con el valor numerico sin formato
+                return formula ? String.valueOf(number) : formatNumber(number);
+            }
+            return switch (cellType) {
+                case "s" -> strings.getItemAt(Integer.parseInt(raw)).getString();
+                case "b" -> "1".equals(raw) ? "TRUE" : "FALSE";
+                default -> raw;
+            };
+        }
+
+        private String formatNumber(double number) {
+            if (cellStyle == null) {
+                return formatter.formatRawCellContents(number, 0, BuiltinFormats.getBuiltinFormat(0));
+            }
+            XSSFCellStyle style = styles.getStyleAt(Integer.parseInt(cellStyle));
+            short formatIndex = style.getDataFormat();
+            String formatString = style.getDataFormatString();
+            if (formatString == null) {
+                formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+            }
+            return formatter.formatRawCellContents(number, formatIndex, formatString);
+        }
+    }
+}
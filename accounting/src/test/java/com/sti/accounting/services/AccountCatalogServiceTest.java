@@ -0,0 +1,86 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountEntity;
+import com.sti.accounting.repositories.IAccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AccountCatalogServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @Mock
+    private IAccountRepository iAccountRepository;
+
+    private AccountCatalogService accountCatalogService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        accountCatalogService = new AccountCatalogService(iAccountRepository, 100, 300);
+    }
+
+    @Test
+    void loadsCatalogOncePerTenantWithIndexes() {
+        AccountEntity assets = account(1L, "1", null);
+        AccountEntity current = account(2L, "1-1", assets);
+        AccountEntity cash = account(3L, "1-1-01", current);
+        AccountEntity bank = account(4L, "1-1-02", current);
+        AccountEntity liabilities = account(5L, "2", null);
+        when(iAccountRepository.findAllByTenantId(TENANT_ID)).thenReturn(List.of(assets, current, cash, bank, liabilities));
+
+        AccountCatalogService.AccountCatalog catalog = accountCatalogService.getCatalog(TENANT_ID);
+        assertSame(catalog, accountCatalogService.getCatalog(TENANT_ID));
+        verify(iAccountRepository, times(1)).findAllByTenantId(TENANT_ID);
+
+        assertSame(cash, catalog.get(3L));
+        assertTrue(catalog.findById(99L).isEmpty());
+        assertSame(bank, catalog.findByCode("1-1-02").orElseThrow());
+        assertEquals(List.of(cash, bank), catalog.getChildren(2L));
+        assertEquals(List.of(assets, liabilities), catalog.getChildren(null));
+        assertEquals(List.of(1L, 2L, 4L), catalog.getRootPath(4L));
+        assertEquals(List.of(5L), catalog.getRootPath(5L));
+    }
+
+    @Test
+    void expiredCatalogIsReloaded() {
+        // Sin tiempo de vida cada lectura vuelve a la base, como cuando otro nodo cambio el catalogo
+        AccountCatalogService uncachedService = new AccountCatalogService(iAccountRepository, 100, 0);
+        when(iAccountRepository.findAllByTenantId(TENANT_ID))
+                .thenReturn(List.of(account(1L, "1", null)))
+                .thenReturn(List.of(account(1L, "1", null), account(2L, "2", null)));
+
+        assertEquals(1, uncachedService.getCatalog(TENANT_ID).size());
+        assertEquals(2, uncachedService.getCatalog(TENANT_ID).size());
+        verify(iAccountRepository, times(2)).findAllByTenantId(TENANT_ID);
+    }
+
+    @Test
+    void invalidateReloadsTenantCatalog() {
+        when(iAccountRepository.findAllByTenantId(TENANT_ID))
+                .thenReturn(List.of(account(1L, "1", null)))
+                .thenReturn(List.of(account(1L, "1", null), account(2L, "2", null)));
+
+        assertEquals(1, accountCatalogService.getCatalog(TENANT_ID).size());
+        accountCatalogService.invalidate(TENANT_ID);
+
+        assertEquals(2, accountCatalogService.getCatalog(TENANT_ID).size());
+        verify(iAccountRepository, times(2)).findAllByTenantId(TENANT_ID);
+    }
+
+    private static AccountEntity account(Long id, String code, AccountEntity parent) {
+        AccountEntity account = new AccountEntity();
+        account.setId(id);
+        account.setCode(code);
+        account.setParent(parent);
+        account.setTenantId(TENANT_ID);
+        return account;
+    }
+}
@@ -43,6 +43,9 @@ class AccountServiceTest {
     @Mock
     private IAccountTypeRepository accountTypeRepository;
 
+    @Mock
+    private AccountCatalogService accountCatalogService;
+
     @InjectMocks
     private AccountService accountService;
 
@@ -0,0 +1,133 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.models.AccountingPeriodChangedEvent;
+import com.sti.accounting.repositories.IAccountingPeriodRepository;
+import com.sti.accounting.utils.PeriodStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AccountingPeriodServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @Mock
+    private IAccountingPeriodRepository accountingPeriodRepository;
+
+    @Mock
+    private AuthService authService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private AccountingPeriodService accountingPeriodService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(authService.getTenantId()).thenReturn(TENANT_ID);
+        accountingPeriodService = new AccountingPeriodService(accountingPeriodRepository, authService, eventPublisher, 100, 300);
+    }
+
+    @Test
+    void activePeriodIsQueriedOnceUntilPeriodsChange() {
+        AccountingPeriodEntity first = period(1L, PeriodStatus.ACTIVE);
+        AccountingPeriodEntity second = period(2L, PeriodStatus.ACTIVE);
+        when(accountingPeriodRepository.findActivePeriods(TENANT_ID)).thenReturn(List.of(first), List.of(second));
+
+        assertSame(first, accountingPeriodService.getActivePeriod());
+        assertSame(first, accountingPeriodService.getActivePeriod());
+        assertTrue(accountingPeriodService.isActivePeriodExists());
+        verify(accountingPeriodRepository, times(1)).findActivePeriods(TENANT_ID);
+
+        accountingPeriodService.onAccountingPeriodChanged(new AccountingPeriodChangedEvent(TENANT_ID));
+
+        assertSame(second, accountingPeriodService.getActivePeriod());
+        verify(accountingPeriodRepository, times(2)).findActivePeriods(TENANT_ID);
+    }
+
+    @Test
+    void expiredPeriodsAreReloadedWithoutEvent() {
+        // Sin tiempo de vida cada lectura vuelve a la base, como cuando otro nodo cambio el periodo
+        AccountingPeriodService uncachedService = new AccountingPeriodService(accountingPeriodRepository, authService, eventPublisher, 100, 0);
+        AccountingPeriodEntity first = period(1L, PeriodStatus.ACTIVE);
+        AccountingPeriodEntity second = period(2L, PeriodStatus.ACTIVE);
+        when(accountingPeriodRepository.findActivePeriods(TENANT_ID)).thenReturn(List.of(first), List.of(second));
+
+        assertSame(first, uncachedService.getActivePeriod());
+        assertSame(second, uncachedService.getActivePeriod());
+        verify(accountingPeriodRepository, times(2)).findActivePeriods(TENANT_ID);
+    }
+
+    @Test
+    void writePathsRecheckCachedPeriodAgainstDatabase() {
+        AccountingPeriodEntity first = period(1L, PeriodStatus.ACTIVE);
+        AccountingPeriodEntity second = period(2L, PeriodStatus.ACTIVE);
+        when(accountingPeriodRepository.findActivePeriods(TENANT_ID)).thenReturn(List.of(first), List.of(second));
+        assertSame(first, accountingPeriodService.getActivePeriod());
+
+        // Otro nodo cerro el periodo 1 y activo el 2; este nodo no recibio el evento
+        when(accountingPeriodRepository.findById(1L)).thenReturn(Optional.of(period(1L, PeriodStatus.CLOSED)));
+        when(accountingPeriodRepository.findById(2L)).thenReturn(Optional.of(second));
+
+        assertSame(second, accountingPeriodService.getActivePeriodForWrite());
+        assertSame(second, accountingPeriodService.getActivePeriod());
+        verify(accountingPeriodRepository, times(2)).findActivePeriods(TENANT_ID);
+    }
+
+    @Test
+    void writePathsFailWhenNoPeriodIsActiveInDatabase() {
+        when(accountingPeriodRepository.findActivePeriods(TENANT_ID)).thenReturn(List.of(period(1L, PeriodStatus.ACTIVE)));
+        when(accountingPeriodRepository.findById(1L)).thenReturn(Optional.of(period(1L, PeriodStatus.CLOSED)));
+
+        assertThrows(ResponseStatusException.class, () -> accountingPeriodService.getActivePeriodForWrite());
+    }
+
+    @Test
+    void missingPeriodsAreCachedToo() {
+        when(accountingPeriodRepository.findActivePeriods(TENANT_ID)).thenReturn(List.of());
+        when(accountingPeriodRepository.findFirstByTenantIdAndIsAnnualTrueOrderByIdAsc(TENANT_ID)).thenReturn(null);
+
+        assertThrows(ResponseStatusException.class, () -> accountingPeriodService.getActivePeriod());
+        assertFalse(accountingPeriodService.isActivePeriodExists());
+        assertThrows(ResponseStatusException.class, () -> accountingPeriodService.getAnnualPeriod());
+        assertThrows(ResponseStatusException.class, () -> accountingPeriodService.getAnnualPeriod());
+
+        verify(accountingPeriodRepository, times(1)).findActivePeriods(TENANT_ID);
+        verify(accountingPeriodRepository, times(1)).findFirstByTenantIdAndIsAnnualTrueOrderByIdAsc(TENANT_ID);
+        verify(accountingPeriodRepository, never()).findAll();
+    }
+
+    @Test
+    void closedPeriodsAreCachedPerTenant() {
+        AccountingPeriodEntity closed = period(3L, PeriodStatus.CLOSED);
+        when(accountingPeriodRepository.findByPeriodStatus(TENANT_ID)).thenReturn(List.of(closed));
+
+        assertEquals(List.of(closed), accountingPeriodService.getClosedPeriods());
+        assertEquals(List.of(closed), accountingPeriodService.getClosedPeriods());
+        verify(accountingPeriodRepository, times(1)).findByPeriodStatus(TENANT_ID);
+
+        // Otro tenant no comparte los periodos
+        when(authService.getTenantId()).thenReturn("otro-tenant");
+        assertTrue(accountingPeriodService.getClosedPeriods().isEmpty());
+        verify(accountingPeriodRepository, times(1)).findByPeriodStatus("otro-tenant");
+    }
+
+    private static AccountingPeriodEntity period(Long id, PeriodStatus status) {
+        AccountingPeriodEntity period = new AccountingPeriodEntity();
+        period.setId(id);
+        period.setPeriodStatus(status);
+        period.setTenantId(TENANT_ID);
+        return period;
+    }
+}
@@ -0,0 +1,100 @@
+package com.sti.accounting.services;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceRollForwardServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    private JdbcTemplate jdbcTemplate;
+    private BalanceRollForwardService balanceRollForwardService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:rollforward;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS balances");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS control_account_balances");
+        jdbcTemplate.execute("CREATE TABLE balances (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, account_id BIGINT, typical_balance VARCHAR(8), \"initial balance\" DECIMAL(38, 2), " +
+                "is_current BOOLEAN, tenant_id VARCHAR(255), date TIMESTAMP, closing_date TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE control_account_balances (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, account_id BIGINT, debit DECIMAL(38, 2), credit DECIMAL(38, 2), " +
+                "accounting_period_id BIGINT NOT NULL, date DATE, tenant_id VARCHAR(255))");
+
+        balanceRollForwardService = new BalanceRollForwardService(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void rollsForwardPeriodMovementsOverMostRecentBalance() {
+        LocalDateTime lastMonth = LocalDateTime.of(2024, 5, 15, 18, 0);
+        insertBalance(1L, "C", "50.00", false, lastMonth.minusMonths(1));
+        insertBalance(1L, "D", "100.00", true, lastMonth);
+        insertBalance(2L, "C", "30.00", true, lastMonth);
+        insertMovement(1L, "40.00", "10.00", 7L);
+        insertMovement(1L, "5.00", null, 7L);
+        insertMovement(2L, "80.00", "20.00", 7L);
+        insertMovement(3L, null, "15.00", 7L);
+        // Otro periodo, no entra en el traslado
+        insertMovement(1L, "999.00", "0.00", 8L);
+
+        List<BalanceRollForwardService.OpeningBalance> created = balanceRollForwardService.rollForward(7L, TENANT_ID);
+
+        assertEquals(3, created.size());
+        // 100 D + 45 D - 10 C
+        assertCurrentBalance(1L, "D", "135.00");
+        // 30 C + 20 C - 80 D
+        assertCurrentBalance(2L, "D", "30.00");
+        // Sin saldo anterior
+        assertCurrentBalance(3L, "C", "15.00");
+
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balances WHERE is_current = false", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balances WHERE is_current = false AND closing_date IS NULL", Integer.class));
+        // El saldo ya cerrado conserva su fecha de cierre
+        assertEquals(Timestamp.valueOf(lastMonth), jdbcTemplate.queryForObject(
+                "SELECT closing_date FROM balances WHERE account_id = 1 AND typical_balance = 'C'", Timestamp.class));
+    }
+
+    @Test
+    void periodWithoutMovementsLeavesBalancesUntouched() {
+        insertBalance(1L, "D", "100.00", true, LocalDateTime.now());
+
+        List<BalanceRollForwardService.OpeningBalance> created = balanceRollForwardService.rollForward(7L, TENANT_ID);
+
+        assertTrue(created.isEmpty());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balances WHERE is_current = true", Integer.class));
+    }
+
+    private void assertCurrentBalance(Long accountId, String typicalBalance, String initialBalance) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT typical_balance, \"initial balance\" AS amount, tenant_id FROM balances WHERE account_id = ? AND is_current = true", accountId);
+        assertEquals(1, rows.size());
+        assertEquals(typicalBalance, rows.get(0).get("typical_balance"));
+        assertEquals(0, new BigDecimal(initialBalance).compareTo((BigDecimal) rows.get(0).get("amount")));
+        assertEquals(TENANT_ID, rows.get(0).get("tenant_id"));
+    }
+
+    private void insertBalance(Long accountId, String typicalBalance, String initialBalance, boolean current, LocalDateTime date) {
+        jdbcTemplate.update("INSERT INTO balances (account_id, typical_balance, \"initial balance\", is_current, tenant_id, date, closing_date) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                accountId, typicalBalance, new BigDecimal(initialBalance), current, TENANT_ID, Timestamp.valueOf(date),
+                current ? null : Timestamp.valueOf(date.plusMonths(1)));
+    }
+
+    private void insertMovement(Long accountId, String debit, String credit, Long periodId) {
+        jdbcTemplate.update("INSERT INTO control_account_balances (account_id, debit, credit, accounting_period_id, tenant_id) VALUES (?, ?, ?, ?, ?)",
+                accountId, debit == null ? null : new BigDecimal(debit), credit == null ? null : new BigDecimal(credit), periodId, TENANT_ID);
+    }
+}
@@ -0,0 +1,146 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.entities.BulkAccountConfig;
+import com.sti.accounting.entities.BulkAccountConfigDetail;
+import com.sti.accounting.models.UploadBulkTransaction;
+import com.sti.accounting.models.UploadBulkTransactionResponse;
+import com.sti.accounting.repositories.*;
+import com.sti.accounting.utils.BulkDetailType;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BulkAccountConfigServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @InjectMocks
+    private BulkAccountConfigService bulkAccountConfigService;
+
+    @Mock
+    private IBulkAccountConfigRepository bulkAccountConfigRepository;
+
+    @Mock
+    private ITransactionRepository transactionRepository;
+
+    @Mock
+    private AccountingPeriodService accountingPeriodService;
+
+    @Mock
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(authService.getTenantId()).thenReturn(TENANT_ID);
+
+        AccountingPeriodEntity period = new AccountingPeriodEntity();
+        period.setId(1L);
+        period.setStartPeriod(LocalDateTime.of(2024, 1, 1, 0, 0));
+        period.setEndPeriod(LocalDateTime.of(2024, 1, 31, 23, 59));
+        when(accountingPeriodService.getActivePeriod()).thenReturn(period);
+    }
+
+    @Test
+    void excelToObjectReadsRowsWithStreamingReader() throws Exception {
+        BulkAccountConfig config = new BulkAccountConfig();
+        config.setId(1L);
+        config.setType(1L);
+        config.setRowStart(2);
+        config.setDetails(List.of(
+                detail("FECHA", 0, BulkDetailType.DT, null, null),
+                detail("FACTURA", 1, BulkDetailType.S, null, null),
+                detail("DETALLE", 2, BulkDetailType.S, null, null),
+                detail("VENTAS", 3, BulkDetailType.ACC, 10L, "C"),
+                detail("CAJA", 4, BulkDetailType.ACC, 20L, "D")));
+        when(bulkAccountConfigRepository.findById(1L)).thenReturn(Optional.of(config));
+        when(transactionRepository.findExistingReferences(TENANT_ID, Set.of("F-001", "F-002"))).thenReturn(List.of("F-002"));
+
+        MockMultipartFile file = new MockMultipartFile("file", "ventas.xlsx", null, createWorkbook());
+
+        UploadBulkTransactionResponse response = bulkAccountConfigService.excelToObject(file, 1L);
+
+        // La fila de totales (ultima de la hoja) no se procesa, igual que con XSSFWorkbook
+        assertEquals(1, response.getData().size());
+        assertEquals(1, response.getErrors().size());
+
+        UploadBulkTransaction valid = response.getData().get(0);
+        assertEquals(2, valid.getRow());
+        assertEquals("1/15/2024", valid.getDate());
+        assertEquals("F-001", valid.getReference());
+        assertEquals("Venta contado", valid.getDescription());
+        assertEquals(0, new BigDecimal("150.50").compareTo(valid.getAccounts().get(0).getCredit()));
+        assertEquals(0, new BigDecimal("150.50").compareTo(valid.getAccounts().get(1).getDebit()));
+
+        UploadBulkTransaction duplicated = response.getErrors().get(0);
+        assertEquals(3, duplicated.getRow());
+        assertTrue(duplicated.getErrors().contains("F-002"));
+        // Una sola consulta de facturas para todo el bloque
+        verify(transactionRepository, times(1)).findExistingReferences(any(), any());
+        verify(transactionRepository, never()).existsByReferenceAndTenantId(any(), any());
+    }
+
+    private static BulkAccountConfigDetail detail(String title, int column, BulkDetailType type, Long accountId, String operation) {
+        BulkAccountConfigDetail detail = new BulkAccountConfigDetail();
+        detail.setTitle(title);
+        detail.setColIndex(column);
+        detail.setDetailType(type);
+        detail.setAccountId(accountId);
+        detail.setOperation(operation);
+        return detail;
+    }
+
+    private static byte[] createWorkbook() throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Ventas");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("m/d/yyyy"));
+
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("FECHA");
+            header.createCell(1).setCellValue("FACTURA");
+
+            addSaleRow(sheet, 1, "F-001", dateStyle);
+            addSaleRow(sheet, 2, "F-002", dateStyle);
+
+            Row totals = sheet.createRow(3);
+            totals.createCell(2).setCellValue("TOTAL");
+            totals.createCell(3).setCellFormula("SUM(D2:D3)");
+
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static void addSaleRow(Sheet sheet, int index, String reference, CellStyle dateStyle) {
+        Row row = sheet.createRow(index);
+        row.createCell(0).setCellValue(LocalDate.of(2024, 1, 15));
+        row.getCell(0).setCellStyle(dateStyle);
+        row.createCell(1).setCellValue(reference);
+        row.createCell(2).setCellValue("Venta contado");
+        row.createCell(3).setCellValue(150.5);
+        // El debe viene de una formula; se toma su resultado calculado
+        row.createCell(4).setCellFormula("D" + (index + 1));
+    }
+}
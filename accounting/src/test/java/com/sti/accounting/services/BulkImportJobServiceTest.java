@@ -0,0 +1,179 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.entities.BulkImportJobEntity;
+import com.sti.accounting.models.BulkImportJobResponse;
+import com.sti.accounting.models.UploadBulkTransaction;
+import com.sti.accounting.models.UploadBulkTransactionResponse;
+import com.sti.accounting.repositories.IAccountingPeriodRepository;
+import com.sti.accounting.repositories.IBulkImportJobRepository;
+import com.sti.accounting.utils.BulkImportJobStatus;
+import com.sti.accounting.utils.PeriodStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BulkImportJobServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @Mock
+    private IBulkImportJobRepository jobRepository;
+
+    @Mock
+    private IAccountingPeriodRepository accountingPeriodRepository;
+
+    @Mock
+    private BulkAccountConfigService bulkAccountConfigService;
+
+    @Mock
+    private BulkTransactionInsertService bulkTransactionInsertService;
+
+    @Mock
+    private AuthService authService;
+
+    private BulkImportJobService bulkImportJobService;
+
+    private final Map<Long, BulkImportJobEntity> jobs = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        AccountingPeriodEntity period = new AccountingPeriodEntity();
+        period.setId(1L);
+        period.setPeriodName("Marzo 2024");
+        period.setPeriodStatus(PeriodStatus.ACTIVE);
+
+        when(authService.getTenantId()).thenReturn(TENANT_ID);
+        when(authService.getUsername()).thenReturn("contador");
+        when(bulkAccountConfigService.getActivePeriodOrThrow()).thenReturn(period);
+        when(bulkTransactionInsertService.getChunkSize()).thenReturn(500);
+        when(accountingPeriodRepository.findById(1L)).thenReturn(Optional.of(period));
+
+        // Repositorio en memoria para seguir el estado del trabajo
+        AtomicLong ids = new AtomicLong();
+        when(jobRepository.save(any(BulkImportJobEntity.class))).thenAnswer(invocation -> {
+            BulkImportJobEntity job = invocation.getArgument(0);
+            if (job.getId() == null) job.setId(ids.incrementAndGet());
+            jobs.put(job.getId(), job);
+            return job;
+        });
+        when(jobRepository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.<Long>getArgument(0))));
+
+        bulkImportJobService = new BulkImportJobService(jobRepository, accountingPeriodRepository, bulkAccountConfigService,
+                bulkTransactionInsertService, authService, 2, 1, 600, "node-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkImportJobService.shutdown();
+    }
+
+    @Test
+    void submitRunsImportInBackgroundWithoutAuthentication() {
+        UploadBulkTransaction row = new UploadBulkTransaction();
+        row.setRow(2);
+        UploadBulkTransactionResponse request = new UploadBulkTransactionResponse();
+        request.setTypeTransaction(1L);
+        request.setData(List.of(row));
+        request.setErrors(List.of());
+
+        UploadBulkTransactionResponse result = new UploadBulkTransactionResponse();
+        result.setData(List.of(row));
+        result.setErrors(List.of());
+        when(bulkAccountConfigService.importTransactions(any(), any(), eq(TENANT_ID), eq("contador"), eq(500), eq(0), any()))
+                .thenReturn(result);
+
+        BulkImportJobResponse submitted = bulkImportJobService.submit(request);
+
+        assertEquals(BulkImportJobStatus.QUEUED, submitted.getStatus());
+        assertEquals(1, submitted.getTotalRows());
+        verify(bulkAccountConfigService, timeout(5000)).importTransactions(any(), any(), eq(TENANT_ID), eq("contador"), eq(500), eq(0), any());
+        verify(jobRepository, timeout(5000).atLeast(3)).save(any());
+        awaitStatus(submitted.getId(), BulkImportJobStatus.COMPLETED);
+        assertEquals(1, jobs.get(submitted.getId()).getProcessedRows());
+        // El tenant y el usuario se toman en la peticion, el trabajo no consulta la sesion
+        verify(authService, times(1)).getTenantId();
+    }
+
+    @Test
+    void resumesInterruptedJobFromLastCheckpoint() {
+        BulkImportJobEntity job = new BulkImportJobEntity();
+        job.setId(7L);
+        job.setStatus(BulkImportJobStatus.RUNNING);
+        job.setAccountingPeriodId(1L);
+        job.setChunkSize(500);
+        job.setCommittedChunks(2);
+        job.setPayload("{\"typeTransaction\":1,\"data\":[],\"errors\":[]}");
+        job.setTenantId(TENANT_ID);
+        job.setCreatedBy("contador");
+        jobs.put(7L, job);
+
+        UploadBulkTransactionResponse result = new UploadBulkTransactionResponse();
+        result.setData(List.of());
+        result.setErrors(List.of());
+        when(jobRepository.findAllByStatusIn(any())).thenReturn(List.of(job));
+        when(jobRepository.claim(eq(7L), eq("node-1"), any(), any())).thenReturn(1);
+        when(bulkAccountConfigService.importTransactions(any(), any(), any(), any(), anyInt(), anyInt(), any())).thenReturn(result);
+
+        bulkImportJobService.resumeInterruptedJobs();
+
+        verify(bulkAccountConfigService, timeout(5000)).importTransactions(any(), any(), eq(TENANT_ID), eq("contador"), eq(500), eq(2), any());
+        awaitStatus(7L, BulkImportJobStatus.COMPLETED);
+    }
+
+    @Test
+    void jobFailsWhenPeriodIsNoLongerActive() {
+        AccountingPeriodEntity closed = new AccountingPeriodEntity();
+        closed.setId(2L);
+        closed.setPeriodName("Febrero 2024");
+        closed.setPeriodStatus(PeriodStatus.CLOSED);
+        when(accountingPeriodRepository.findById(2L)).thenReturn(Optional.of(closed));
+
+        BulkImportJobEntity job = new BulkImportJobEntity();
+        job.setId(8L);
+        job.setStatus(BulkImportJobStatus.QUEUED);
+        job.setAccountingPeriodId(2L);
+        job.setChunkSize(500);
+        job.setCommittedChunks(0);
+        job.setPayload("{\"typeTransaction\":1,\"data\":[],\"errors\":[]}");
+        job.setTenantId(TENANT_ID);
+        job.setCreatedBy("contador");
+        jobs.put(8L, job);
+        when(jobRepository.findAllByStatusIn(any())).thenReturn(List.of(job));
+        when(jobRepository.claim(eq(8L), eq("node-1"), any(), any())).thenReturn(1);
+
+        bulkImportJobService.resumeInterruptedJobs();
+
+        // El periodo se cerro despues de enviar la carga: el trabajo falla sin importar nada
+        awaitStatus(8L, BulkImportJobStatus.FAILED);
+        assertTrue(jobs.get(8L).getMessage().contains("Febrero 2024 ya no esta activo"));
+        verify(bulkAccountConfigService, never()).importTransactions(any(), any(), any(), any(), anyInt(), anyInt(), any());
+    }
+
+    private void awaitStatus(Long id, BulkImportJobStatus status) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            BulkImportJobEntity job = jobs.get(id);
+            if (job != null && job.getStatus() == status && job.getFinishedAt() != null) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        fail("Job " + id + " did not reach " + status);
+    }
+}
@@ -0,0 +1,117 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.*;
+import com.sti.accounting.models.StatusTransaction;
+import com.sti.accounting.utils.Currency;
+import com.sti.accounting.utils.Motion;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkTransactionInsertServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    private JdbcTemplate jdbcTemplate;
+    private BulkTransactionInsertService bulkTransactionInsertService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bulkinsert;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS transaction_detail");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS transactions");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS pda_sequence");
+        jdbcTemplate.execute("CREATE TABLE pda_sequence (tenant_id VARCHAR(255) PRIMARY KEY, last_number BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE transactions (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, creation_date TIMESTAMP, date DATE, status VARCHAR(32), reference VARCHAR(255), " +
+                "exchange_rate DECIMAL(38, 2), description_pda VARCHAR(255), number_pda BIGINT, currency VARCHAR(8), type_sale VARCHAR(255), " +
+                "cash_value DECIMAL(38, 2), credit_value DECIMAL(38, 2), type_payment VARCHAR(255), rtn VARCHAR(255), supplier_name VARCHAR(255), " +
+                "document_id BIGINT NOT NULL, diary_id BIGINT, accounting_period_id BIGINT, tenant_id VARCHAR(255), created_by VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE transaction_detail (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, transaction_id BIGINT NOT NULL, account_id BIGINT NOT NULL, " +
+                "amount DECIMAL(38, 2), motion VARCHAR(8))");
+        jdbcTemplate.update("INSERT INTO pda_sequence (tenant_id, last_number) VALUES (?, ?)", TENANT_ID, 10L);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        PdaSequenceService pdaSequenceService = new PdaSequenceService(jdbcTemplate, transactionManager, 50, false);
+        bulkTransactionInsertService = new BulkTransactionInsertService(jdbcTemplate, pdaSequenceService, transactionManager, 3);
+    }
+
+    @Test
+    void insertsInChunksWithReservedPdaNumbers() {
+        List<TransactionEntity> transactions = createTransactions(7);
+        List<Integer> progress = new ArrayList<>();
+
+        int inserted = bulkTransactionInsertService.insert(transactions, TENANT_ID, (chunk, done, total) -> progress.add(done));
+
+        assertEquals(7, inserted);
+        assertEquals(List.of(3, 6, 7), progress);
+        assertEquals(17L, jdbcTemplate.queryForObject("SELECT last_number FROM pda_sequence WHERE tenant_id = ?", Long.class, TENANT_ID));
+        assertEquals(14, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transaction_detail", Integer.class));
+
+        // Numeros consecutivos en el orden del archivo y detalles ligados al id insertado
+        for (int i = 0; i < transactions.size(); i++) {
+            TransactionEntity transaction = transactions.get(i);
+            assertEquals(11L + i, transaction.getNumberPda().longValue());
+            assertEquals("F-" + i, jdbcTemplate.queryForObject("SELECT reference FROM transactions WHERE id = ?", String.class, transaction.getId()));
+            assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transaction_detail WHERE transaction_id = ?", Integer.class, transaction.getId()));
+        }
+    }
+
+    @Test
+    void resumesFromCommittedChunk() {
+        List<TransactionEntity> transactions = createTransactions(7);
+
+        int inserted = bulkTransactionInsertService.insert(transactions, TENANT_ID, 3, 2, null);
+
+        assertEquals(1, inserted);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+        assertEquals("F-6", jdbcTemplate.queryForObject("SELECT reference FROM transactions", String.class));
+    }
+
+    private static List<TransactionEntity> createTransactions(int count) {
+        DocumentEntity document = new DocumentEntity();
+        document.setId(1L);
+        AccountingPeriodEntity period = new AccountingPeriodEntity();
+        period.setId(1L);
+
+        List<TransactionEntity> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TransactionEntity transaction = new TransactionEntity();
+            transaction.setCreateAtDate(LocalDate.of(2024, 1, 15));
+            transaction.setStatus(StatusTransaction.DRAFT);
+            transaction.setReference("F-" + i);
+            transaction.setDescriptionPda("Venta contado");
+            transaction.setCurrency(Currency.L);
+            transaction.setExchangeRate(new BigDecimal("24.70"));
+            transaction.setDocument(document);
+            transaction.setAccountingPeriod(period);
+            transaction.setTransactionDetail(List.of(
+                    detail(transaction, 10L, Motion.C), detail(transaction, 20L, Motion.D)));
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    private static TransactionDetailEntity detail(TransactionEntity transaction, Long accountId, Motion motion) {
+        AccountEntity account = new AccountEntity();
+        account.setId(accountId);
+        TransactionDetailEntity detail = new TransactionDetailEntity();
+        detail.setTransaction(transaction);
+        detail.setAccount(account);
+        detail.setAmount(new BigDecimal("150.50"));
+        detail.setMotion(motion);
+        return detail;
+    }
+}
@@ -0,0 +1,60 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.core.CompanyDto;
+import com.sti.accounting.entities.CompanyEntity;
+import com.sti.accounting.repositories.ICompanyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CompanyServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @Mock
+    private ICompanyRepository companyRepository;
+
+    @Mock
+    private AuthService authService;
+
+    private CompanyService companyService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        companyService = new CompanyService(companyRepository, authService, 1000, 300);
+    }
+
+    @Test
+    void companyIsReloadedAfterEviction() {
+        when(companyRepository.findByTenantId(TENANT_ID)).thenReturn(company(true), company(false));
+        when(authService.getTenantId()).thenReturn(TENANT_ID);
+
+        assertTrue(companyService.getCompanyByTenantId(TENANT_ID).isActive());
+        assertTrue(companyService.getCompanyByTenantId(TENANT_ID).isActive());
+        verify(companyRepository, times(1)).findByTenantId(TENANT_ID);
+
+        // La empresa se desactivo en el servicio que la administra y este invalida la cache
+        companyService.evictCurrentCompany();
+
+        CompanyDto reloaded = companyService.getCompanyByTenantId(TENANT_ID);
+        assertFalse(reloaded.isActive());
+        verify(companyRepository, times(2)).findByTenantId(TENANT_ID);
+    }
+
+    private static CompanyEntity company(boolean active) {
+        CompanyEntity company = new CompanyEntity();
+        company.setId(1L);
+        company.setCompanyName("STI");
+        company.setTenantId(TENANT_ID);
+        company.setIsActive(active);
+        company.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+        return company;
+    }
+}
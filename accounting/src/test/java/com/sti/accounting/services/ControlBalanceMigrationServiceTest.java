@@ -0,0 +1,121 @@
+package com.sti.accounting.services;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControlBalanceMigrationServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    private JdbcTemplate jdbcTemplate;
+    private ControlBalanceMigrationService migrationService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:controlmigration;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS control_account_balances");
+        // Tabla creada antes de la llave, como en una base con ddl-auto=update
+        jdbcTemplate.execute("CREATE TABLE control_account_balances (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, account_id BIGINT, accounting_period_id BIGINT NOT NULL, " +
+                "debit DECIMAL(38, 2), credit DECIMAL(38, 2), date DATE, tenant_id VARCHAR(255))");
+
+        migrationService = new ControlBalanceMigrationService(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void mergesDuplicatesAndAddsUniqueKey() {
+        insert(1L, 7L, "100.00", null);
+        insert(1L, 7L, "20.00", "5.00");
+        insert(1L, 7L, null, "10.00");
+        insert(2L, 7L, "30.00", "0.00");
+        insert(1L, 8L, "1.00", "0.00");
+
+        migrationService.ensureUniqueKey();
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, account_id, accounting_period_id, debit, credit FROM control_account_balances ORDER BY id");
+        assertEquals(3, rows.size());
+        assertEquals(1L, ((Number) rows.get(0).get("ID")).longValue());
+        assertEquals(0, new BigDecimal("120.00").compareTo((BigDecimal) rows.get(0).get("DEBIT")));
+        assertEquals(0, new BigDecimal("15.00").compareTo((BigDecimal) rows.get(0).get("CREDIT")));
+
+        // La llave ya rechaza un repetido, el upsert vuelve a sumar sobre la misma fila
+        assertThrows(DataIntegrityViolationException.class, () -> insert(2L, 7L, "1.00", "0.00"));
+    }
+
+    @Test
+    void existingUniqueKeyIsLeftAsIs() {
+        jdbcTemplate.execute("ALTER TABLE control_account_balances ADD CONSTRAINT " + ControlBalanceMigrationService.UNIQUE_KEY_NAME +
+                " UNIQUE (account_id, accounting_period_id, tenant_id)");
+        insert(1L, 7L, "100.00", "0.00");
+
+        migrationService.ensureUniqueKey();
+        migrationService.ensureUniqueKey();
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM control_account_balances", Integer.class));
+    }
+
+    @Test
+    void retriesWhenDuplicateIsInsertedBetweenMergeAndAlter() {
+        insert(1L, 7L, "100.00", "0.00");
+        insert(1L, 7L, "20.00", "0.00");
+
+        // Otro nodo inserta un repetido justo antes del primer ALTER, despues de la fusion
+        JdbcTemplate racingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            private boolean raced;
+
+            @Override
+            public void execute(String sql) {
+                if (!raced && sql.startsWith("ALTER TABLE")) {
+                    raced = true;
+                    insert(1L, 7L, "5.00", "0.00");
+                }
+                super.execute(sql);
+            }
+        };
+        new ControlBalanceMigrationService(racingTemplate, new DataSourceTransactionManager(jdbcTemplate.getDataSource())).ensureUniqueKey();
+
+        // El segundo intento fusiona tambien la fila del otro nodo y agrega la llave
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT debit FROM control_account_balances");
+        assertEquals(1, rows.size());
+        assertEquals(0, new BigDecimal("125.00").compareTo((BigDecimal) rows.get(0).get("DEBIT")));
+        assertThrows(DataIntegrityViolationException.class, () -> insert(1L, 7L, "1.00", "0.00"));
+    }
+
+    @Test
+    void failsStartupWhenDuplicatesKeepArriving() {
+        JdbcTemplate racingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public void execute(String sql) {
+                if (sql.startsWith("ALTER TABLE")) {
+                    insert(3L, 7L, "1.00", "0.00");
+                    insert(3L, 7L, "1.00", "0.00");
+                }
+                super.execute(sql);
+            }
+        };
+        ControlBalanceMigrationService service = new ControlBalanceMigrationService(racingTemplate, new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+
+        assertThrows(IllegalStateException.class, service::ensureUniqueKey);
+        // Cada intento fusiona lo anterior: queda la fila fusionada mas los dos repetidos del ultimo intento
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM control_account_balances", Integer.class));
+        assertEquals(0, new BigDecimal("6.00").compareTo(jdbcTemplate.queryForObject("SELECT SUM(debit) FROM control_account_balances", BigDecimal.class)));
+    }
+
+    private void insert(Long accountId, Long periodId, String debit, String credit) {
+        jdbcTemplate.update("INSERT INTO control_account_balances (account_id, accounting_period_id, debit, credit, tenant_id) VALUES (?, ?, ?, ?, ?)",
+                accountId, periodId, debit != null ? new BigDecimal(debit) : null, credit != null ? new BigDecimal(credit) : null, TENANT_ID);
+    }
+}
@@ -0,0 +1,192 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountEntity;
+import com.sti.accounting.entities.ControlAccountBalancesEntity;
+import com.sti.accounting.models.AccountingPeriodResponse;
+import com.sti.accounting.models.GeneralBalanceResponse;
+import com.sti.accounting.models.IncomeStatementResponse;
+import com.sti.accounting.models.OpeningBalanceRow;
+import com.sti.accounting.repositories.IAccountRepository;
+import com.sti.accounting.utils.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class GeneralBalanceServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @Mock
+    private IAccountRepository iAccountRepository;
+
+    @Mock
+    private IncomeStatementService incomeStatementService;
+
+    @Mock
+    private AccountCatalogService accountCatalogService;
+
+    @Mock
+    private OpeningBalanceService openingBalanceService;
+
+    @Mock
+    private ControlAccountBalancesService controlAccountBalancesService;
+
+    @Mock
+    private AccountingPeriodService accountingPeriodService;
+
+    @Mock
+    private TrialBalanceSnapshotService trialBalanceSnapshotService;
+
+    @Mock
+    private AuthService authService;
+
+    @InjectMocks
+    private GeneralBalanceService generalBalanceService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void balanceGeneralRollsUpSubtotalsAndCategoriesFromCatalog() {
+        AccountEntity assets = account(1L, "ACTIVOS", "D", null);
+        AccountEntity current = account(2L, "CORRIENTE", "D", assets);
+        AccountEntity cash = account(3L, "CAJA", "D", current);
+        AccountEntity bank = account(4L, "BANCOS", "D", current);
+        AccountEntity equity = account(5L, "PATRIMONIO", "C", null);
+        AccountEntity netProfit = account(6L, "UTILIDAD O PERDIDA NETA DEL EJERCICIO", "C", equity);
+        List<AccountEntity> accounts = List.of(assets, current, cash, bank, equity, netProfit);
+        when(accountCatalogService.getCatalog(TENANT_ID)).thenReturn(new AccountCatalogService.AccountCatalog(accounts));
+        when(incomeStatementService.getNetProfit(any())).thenReturn(new BigDecimal("25"));
+        when(openingBalanceService.getOpeningBalances(TENANT_ID)).thenReturn(new OpeningBalanceService.OpeningBalances(
+                List.of(new OpeningBalanceRow(4L, "D", new BigDecimal("10"))), List.of()));
+
+        Map<Long, ControlAccountBalancesEntity> movements = Map.of(
+                3L, movement("100", "40"),
+                4L, movement("50", "0"));
+
+        List<GeneralBalanceResponse> response = generalBalanceService.getBalanceGeneral(accounts, movements, new ArrayList<IncomeStatementResponse>());
+        Map<Long, GeneralBalanceResponse> byId = response.stream().collect(Collectors.toMap(GeneralBalanceResponse::getAccountId, Function.identity()));
+
+        assertEquals(0, new BigDecimal("60").compareTo(byId.get(3L).getSubtotal()));
+        assertEquals(0, new BigDecimal("60").compareTo(byId.get(4L).getBalance()));
+        assertEquals(0, new BigDecimal("120").compareTo(byId.get(2L).getSubtotal()));
+        assertEquals(0, new BigDecimal("120").compareTo(byId.get(1L).getSubtotal()));
+        assertEquals(0, new BigDecimal("25").compareTo(byId.get(5L).getSubtotal()));
+
+        assertEquals("ACTIVO", byId.get(4L).getCategory());
+        assertEquals("PATRIMONIO", byId.get(6L).getCategory());
+        // Categoria y cuentas salen del catalogo en memoria
+        verify(accountCatalogService, times(1)).getCatalog(TENANT_ID);
+        verify(openingBalanceService, times(1)).getOpeningBalances(TENANT_ID);
+        verifyNoInteractions(iAccountRepository);
+    }
+
+    @Test
+    void contraAccountIsSubtractedFromParentSubtotal() {
+        AccountEntity fixedAssets = account(1L, "ACTIVO NO CORRIENTE", "D", null);
+        AccountEntity building = account(2L, "EDIFICIOS", "D", fixedAssets);
+        // Cuenta complementaria de naturaleza acreedora bajo un padre deudor
+        AccountEntity depreciation = account(3L, "DEPRECIACION ACUMULADA", "C", fixedAssets);
+        List<AccountEntity> accounts = List.of(fixedAssets, building, depreciation);
+        when(accountCatalogService.getCatalog(TENANT_ID)).thenReturn(new AccountCatalogService.AccountCatalog(accounts));
+        when(incomeStatementService.getNetProfit(any())).thenReturn(BigDecimal.ZERO);
+        when(openingBalanceService.getOpeningBalances(TENANT_ID)).thenReturn(new OpeningBalanceService.OpeningBalances(List.of(), List.of()));
+
+        Map<Long, ControlAccountBalancesEntity> movements = Map.of(
+                2L, movement("1000", "0"),
+                3L, movement("0", "300"));
+
+        List<GeneralBalanceResponse> response = generalBalanceService.getBalanceGeneral(accounts, movements, new ArrayList<IncomeStatementResponse>());
+        Map<Long, GeneralBalanceResponse> byId = response.stream().collect(Collectors.toMap(GeneralBalanceResponse::getAccountId, Function.identity()));
+
+        // Cada cuenta conserva su saldo en su propia naturaleza, el padre neto resta la depreciacion
+        assertEquals(0, new BigDecimal("300").compareTo(byId.get(3L).getSubtotal()));
+        assertEquals("C", byId.get(3L).getTypicalBalance());
+        assertEquals(0, new BigDecimal("700").compareTo(byId.get(1L).getSubtotal()));
+    }
+
+    @Test
+    void periodBalanceLoadsMovementsOfAllAccountsInOneQuery() {
+        AccountEntity assets = account(1L, "ACTIVOS", "D", null);
+        AccountEntity cash = account(2L, "CAJA", "D", assets);
+        AccountEntity bank = account(3L, "BANCOS", "D", assets);
+        List<AccountEntity> accounts = List.of(assets, cash, bank);
+        AccountingPeriodResponse period = new AccountingPeriodResponse();
+        period.setId(7L);
+        period.setStartPeriod(LocalDateTime.of(2024, 3, 1, 0, 0));
+        period.setEndPeriod(LocalDateTime.of(2024, 3, 31, 23, 59, 59));
+        when(authService.getTenantId()).thenReturn(TENANT_ID);
+        when(iAccountRepository.findFilteredAccounts("Balance General", Status.ACTIVO, TENANT_ID)).thenReturn(accounts);
+        when(trialBalanceSnapshotService.getSnapshotByAccount(7L)).thenReturn(Map.of());
+        when(accountingPeriodService.getById(7L)).thenReturn(period);
+        when(controlAccountBalancesService.getPeriodMovementsByAccount(7L, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)))
+                .thenReturn(Map.of(2L, movement("80", "30"), 3L, movement("20", "0")));
+        when(accountCatalogService.getCatalog(TENANT_ID)).thenReturn(new AccountCatalogService.AccountCatalog(accounts));
+        when(incomeStatementService.getNetProfit(any())).thenReturn(BigDecimal.ZERO);
+        when(openingBalanceService.getOpeningBalances(TENANT_ID)).thenReturn(new OpeningBalanceService.OpeningBalances(List.of(), List.of()));
+
+        List<GeneralBalanceResponse> response = generalBalanceService.getBalanceGeneral(7L, new ArrayList<IncomeStatementResponse>());
+        Map<Long, GeneralBalanceResponse> byId = response.stream().collect(Collectors.toMap(GeneralBalanceResponse::getAccountId, Function.identity()));
+
+        assertEquals(0, new BigDecimal("50").compareTo(byId.get(2L).getBalance()));
+        assertEquals(0, new BigDecimal("70").compareTo(byId.get(1L).getSubtotal()));
+        // Una consulta agrupada para todas las cuentas, ninguna por cuenta
+        verify(controlAccountBalancesService, times(1)).getPeriodMovementsByAccount(anyLong(), any(), any());
+        verify(controlAccountBalancesService, never()).getControlAccountBalancesForPeriodAndMonth(anyLong(), anyLong(), any(), any());
+        verify(controlAccountBalancesService, never()).getControlAccountBalancesForAllPeriods(anyLong());
+    }
+
+    @Test
+    void balanceWithoutPeriodSumsAllPeriodsInOneQuery() {
+        AccountEntity cash = account(1L, "CAJA", "D", null);
+        when(authService.getTenantId()).thenReturn(TENANT_ID);
+        when(iAccountRepository.findFilteredAccounts("Balance General", Status.ACTIVO, TENANT_ID)).thenReturn(List.of(cash));
+        when(controlAccountBalancesService.getMovementsByAccount()).thenReturn(Map.of(1L, movement("40", "15")));
+        when(accountCatalogService.getCatalog(TENANT_ID)).thenReturn(new AccountCatalogService.AccountCatalog(List.of(cash)));
+        when(incomeStatementService.getNetProfit(any())).thenReturn(BigDecimal.ZERO);
+        when(openingBalanceService.getOpeningBalances(TENANT_ID)).thenReturn(new OpeningBalanceService.OpeningBalances(List.of(), List.of()));
+
+        List<GeneralBalanceResponse> response = generalBalanceService.getBalanceGeneral(null, new ArrayList<IncomeStatementResponse>());
+
+        assertEquals(0, new BigDecimal("25").compareTo(response.get(0).getBalance()));
+        verify(controlAccountBalancesService, never()).getControlAccountBalancesForAllPeriods(anyLong());
+        verifyNoInteractions(trialBalanceSnapshotService, accountingPeriodService);
+    }
+
+    private static AccountEntity account(Long id, String description, String typicalBalance, AccountEntity parent) {
+        AccountEntity account = new AccountEntity();
+        account.setId(id);
+        account.setCode(String.valueOf(id));
+        account.setDescription(description);
+        account.setTypicalBalance(typicalBalance);
+        account.setParent(parent);
+        account.setBalances(new ArrayList<>());
+        account.setTenantId(TENANT_ID);
+        return account;
+    }
+
+    private static ControlAccountBalancesEntity movement(String debit, String credit) {
+        ControlAccountBalancesEntity movement = new ControlAccountBalancesEntity();
+        movement.setDebit(new BigDecimal(debit));
+        movement.setCredit(new BigDecimal(credit));
+        return movement;
+    }
+}
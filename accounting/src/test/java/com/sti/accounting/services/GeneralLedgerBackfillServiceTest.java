@@ -0,0 +1,103 @@
+package com.sti.accounting.services;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneralLedgerBackfillServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    private JdbcTemplate jdbcTemplate;
+    private GeneralLedgerBackfillService backfillService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:ledgerbackfill;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        for (String table : List.of("general_ledger_line", "transaction_detail", "adjustment_detail", "accounting_adjustments",
+                "credit_notes_detail", "credit_notes", "debit_notes_detail", "debit_notes", "transactions")) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        }
+        jdbcTemplate.execute("CREATE TABLE transactions (id BIGINT PRIMARY KEY, date DATE, status VARCHAR(16), number_pda BIGINT, " +
+                "accounting_period_id BIGINT, tenant_id VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE transaction_detail (id BIGINT AUTO_INCREMENT PRIMARY KEY, transaction_id BIGINT, account_id BIGINT, " +
+                "amount DECIMAL(38, 2), motion VARCHAR(1))");
+        jdbcTemplate.execute("CREATE TABLE accounting_adjustments (id BIGINT PRIMARY KEY, transaction_id BIGINT, status VARCHAR(16), " +
+                "accounting_period_id BIGINT, tenant_id VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE adjustment_detail (id BIGINT AUTO_INCREMENT PRIMARY KEY, adjustment_id BIGINT, account_id BIGINT, " +
+                "amount DECIMAL(38, 2), motion VARCHAR(1))");
+        for (String note : List.of("credit", "debit")) {
+            jdbcTemplate.execute("CREATE TABLE " + note + "_notes (id BIGINT PRIMARY KEY, transaction_id BIGINT, date DATE, status VARCHAR(16), " +
+                    "accounting_period_id BIGINT, tenant_id VARCHAR(255))");
+            jdbcTemplate.execute("CREATE TABLE " + note + "_notes_detail (id BIGINT AUTO_INCREMENT PRIMARY KEY, " + note + "_note_id BIGINT, " +
+                    "account_id BIGINT, amount DECIMAL(38, 2), motion VARCHAR(1))");
+        }
+        jdbcTemplate.execute("CREATE TABLE general_ledger_line (id BIGINT AUTO_INCREMENT PRIMARY KEY, account_id BIGINT NOT NULL, " +
+                "accounting_period_id BIGINT NOT NULL, date DATE, source_type VARCHAR(32), source_id BIGINT, number_pda BIGINT, " +
+                "debit DECIMAL(38, 2), credit DECIMAL(38, 2), running_balance DECIMAL(38, 2), tenant_id VARCHAR(255) NOT NULL)");
+
+        backfillService = new GeneralLedgerBackfillService(jdbcTemplate, new DataSourceTransactionManager(dataSource), false);
+    }
+
+    @Test
+    void copiesPostedDocumentsAndRecalculatesRunningBalances() {
+        // Partidas anteriores al libro mayor
+        insertTransaction(1L, LocalDate.of(2024, 1, 5), "SUCCESS");
+        insertDetail("transaction_detail", "transaction_id", 1L, 10L, "100.00", "D");
+        insertDetail("transaction_detail", "transaction_id", 1L, 20L, "100.00", "C");
+        insertTransaction(2L, LocalDate.of(2024, 1, 10), "SUCCESS");
+        insertDetail("transaction_detail", "transaction_id", 2L, 10L, "30.00", "C");
+        // Borrador, no se postea
+        insertTransaction(3L, LocalDate.of(2024, 1, 11), "DRAFT");
+        insertDetail("transaction_detail", "transaction_id", 3L, 10L, "999.00", "D");
+        jdbcTemplate.update("INSERT INTO credit_notes VALUES (1, 2, ?, 'SUCCESS', 7, ?)", Date.valueOf(LocalDate.of(2024, 1, 8)), TENANT_ID);
+        insertDetail("credit_notes_detail", "credit_note_id", 1L, 10L, "5.00", "C");
+
+        // Partida posteada despues del despliegue, ya tiene su linea con el saldo de toda la historia
+        insertTransaction(4L, LocalDate.of(2024, 1, 20), "SUCCESS");
+        insertDetail("transaction_detail", "transaction_id", 4L, 10L, "50.00", "D");
+        jdbcTemplate.update("INSERT INTO general_ledger_line (account_id, accounting_period_id, date, source_type, source_id, number_pda, " +
+                "debit, credit, running_balance, tenant_id) VALUES (10, 7, ?, 'TRANSACTION', 4, 4, 50.00, 0, 115.00, ?)",
+                Date.valueOf(LocalDate.of(2024, 1, 20)), TENANT_ID);
+
+        assertEquals(4, backfillService.backfill());
+
+        List<Map<String, Object>> lines = jdbcTemplate.queryForList("SELECT source_type, source_id, running_balance FROM general_ledger_line " +
+                "WHERE account_id = 10 ORDER BY date, id");
+        assertEquals(List.of("TRANSACTION", "CREDIT_NOTE", "TRANSACTION", "TRANSACTION"), lines.stream().map(line -> line.get("SOURCE_TYPE")).toList());
+        assertRunningBalance(lines.get(0), "100.00");
+        assertRunningBalance(lines.get(1), "95.00");
+        assertRunningBalance(lines.get(2), "65.00");
+        assertRunningBalance(lines.get(3), "115.00");
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM general_ledger_line WHERE running_balance IS NULL", Integer.class));
+
+        // Una segunda corrida no vuelve a copiar nada
+        assertEquals(0, backfillService.backfill());
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM general_ledger_line", Integer.class));
+    }
+
+    private void insertTransaction(Long id, LocalDate date, String status) {
+        jdbcTemplate.update("INSERT INTO transactions VALUES (?, ?, ?, ?, 7, ?)", id, Date.valueOf(date), status, id, TENANT_ID);
+    }
+
+    private void insertDetail(String table, String parentColumn, Long parentId, Long accountId, String amount, String motion) {
+        jdbcTemplate.update("INSERT INTO " + table + " (" + parentColumn + ", account_id, amount, motion) VALUES (?, ?, ?, ?)",
+                parentId, accountId, new BigDecimal(amount), motion);
+    }
+
+    private static void assertRunningBalance(Map<String, Object> line, String expected) {
+        assertEquals(0, new BigDecimal(expected).compareTo((BigDecimal) line.get("RUNNING_BALANCE")));
+    }
+}
@@ -0,0 +1,189 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.models.LedgerLine;
+import com.sti.accounting.utils.LedgerSourceType;
+import com.sti.accounting.utils.Motion;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LedgerPostingServiceConcurrencyTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+    private static final int POSTERS = 32;
+    private static final int BATCHES_PER_POSTER = 25;
+    private static final long[] ACCOUNTS = {1L, 2L, 3L};
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:posting;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS control_account_balances");
+        jdbcTemplate.execute("CREATE TABLE control_account_balances (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, account_id BIGINT, accounting_period_id BIGINT NOT NULL, " +
+                "debit DECIMAL(38, 2), credit DECIMAL(38, 2), date DATE, tenant_id VARCHAR(255), " +
+                "CONSTRAINT UK_CONTROL_BALANCE_ACCOUNT_PERIOD UNIQUE (account_id, accounting_period_id, tenant_id))");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS general_ledger_line");
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS general_ledger_line_seq");
+        jdbcTemplate.execute("CREATE SEQUENCE general_ledger_line_seq");
+        jdbcTemplate.execute("CREATE TABLE general_ledger_line (" +
+                "id BIGINT DEFAULT NEXT VALUE FOR general_ledger_line_seq PRIMARY KEY, account_id BIGINT NOT NULL, accounting_period_id BIGINT NOT NULL, date DATE, " +
+                "source_type VARCHAR(32), source_id BIGINT, number_pda BIGINT, debit DECIMAL(38, 2), credit DECIMAL(38, 2), " +
+                "running_balance DECIMAL(38, 2), tenant_id VARCHAR(255) NOT NULL)");
+    }
+
+    @Test
+    void concurrentPostersNeverLoseUpdates() throws Exception {
+        // Cuatro instancias simulan varios nodos: no hay bloqueos en memoria,
+        // solo el incremento atomico en la base de datos evita perder actualizaciones
+        List<LedgerPostingService> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(createService());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(POSTERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int poster = 0; poster < POSTERS; poster++) {
+            LedgerPostingService service = nodes.get(poster % nodes.size());
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int batch = 0; batch < BATCHES_PER_POSTER; batch++) {
+                    service.post(createBalancedLines());
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Cada lote suma 10.00 al debe y 10.00 al haber de cada cuenta
+        BigDecimal expected = new BigDecimal("10.00").multiply(BigDecimal.valueOf((long) POSTERS * BATCHES_PER_POSTER));
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT account_id, debit, credit FROM control_account_balances ORDER BY account_id");
+        assertEquals(ACCOUNTS.length, rows.size());
+        for (Map<String, Object> row : rows) {
+            assertEquals(0, expected.compareTo((BigDecimal) row.get("DEBIT")), "debit of account " + row.get("ACCOUNT_ID"));
+            assertEquals(0, expected.compareTo((BigDecimal) row.get("CREDIT")), "credit of account " + row.get("ACCOUNT_ID"));
+        }
+
+        // Cada linea posteada queda en el libro mayor
+        Long ledgerLines = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM general_ledger_line", Long.class);
+        assertEquals((long) POSTERS * BATCHES_PER_POSTER * ACCOUNTS.length * 3, ledgerLines);
+    }
+
+    @Test
+    void concurrentBackdatedPostersKeepRunningBalances() throws Exception {
+        List<LedgerPostingService> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(createService());
+        }
+        // Cada lote en su propia transaccion; H2 aborta en REPEATABLE READ en lugar de leer la version actual como
+        // InnoDB, por eso se deja su aislamiento por defecto
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int poster = 0; poster < 8; poster++) {
+            LedgerPostingService service = nodes.get(poster % nodes.size());
+            Random random = new Random(poster);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int batch = 0; batch < BATCHES_PER_POSTER; batch++) {
+                    List<LedgerLine> lines = new ArrayList<>();
+                    for (long accountId : ACCOUNTS) {
+                        LocalDate date = LocalDate.of(2024, 1, 1 + random.nextInt(31));
+                        Motion motion = random.nextBoolean() ? Motion.D : Motion.C;
+                        lines.add(new LedgerLine(accountId, motion, BigDecimal.valueOf(1 + random.nextInt(100)), 1L, date,
+                                LedgerSourceType.TRANSACTION, (long) batch, (long) batch));
+                    }
+                    // Igual que los flujos de confirmacion, se lee antes de postear
+                    transactionTemplate.executeWithoutResult(status -> {
+                        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM general_ledger_line", Long.class);
+                        service.post(lines);
+                    });
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // El saldo guardado de cada linea es el acumulado en orden (fecha, id) y el ultimo cuadra con el saldo de control
+        for (long accountId : ACCOUNTS) {
+            List<Map<String, Object>> lines = jdbcTemplate.queryForList(
+                    "SELECT debit, credit, running_balance FROM general_ledger_line WHERE account_id = ? ORDER BY date, id", accountId);
+            assertEquals(8 * BATCHES_PER_POSTER, lines.size());
+            BigDecimal running = BigDecimal.ZERO;
+            for (Map<String, Object> line : lines) {
+                running = running.add((BigDecimal) line.get("DEBIT")).subtract((BigDecimal) line.get("CREDIT"));
+                assertEquals(0, running.compareTo((BigDecimal) line.get("RUNNING_BALANCE")), "running balance of account " + accountId);
+            }
+            BigDecimal control = jdbcTemplate.queryForObject(
+                    "SELECT debit - credit FROM control_account_balances WHERE account_id = ?", BigDecimal.class, accountId);
+            assertEquals(0, running.compareTo(control));
+        }
+    }
+
+    @Test
+    void ledgerRunningBalanceFollowsDateOrderWhenBackdated() {
+        LedgerPostingService service = createService();
+        service.post(List.of(new LedgerLine(1L, Motion.D, new BigDecimal("100.00"), 1L, LocalDate.of(2024, 1, 15), LedgerSourceType.TRANSACTION, 1L, 1L)));
+        service.post(List.of(new LedgerLine(1L, Motion.C, new BigDecimal("30.00"), 1L, LocalDate.of(2024, 1, 20), LedgerSourceType.TRANSACTION, 2L, 2L)));
+        service.post(List.of(new LedgerLine(1L, Motion.D, new BigDecimal("5.00"), 1L, LocalDate.of(2024, 1, 10), LedgerSourceType.ADJUSTMENT, 3L, 3L)));
+
+        List<BigDecimal> balances = jdbcTemplate.queryForList(
+                "SELECT running_balance FROM general_ledger_line WHERE account_id = 1 ORDER BY date, id", BigDecimal.class);
+        assertEquals(3, balances.size());
+        assertEquals(0, new BigDecimal("5.00").compareTo(balances.get(0)));
+        assertEquals(0, new BigDecimal("105.00").compareTo(balances.get(1)));
+        assertEquals(0, new BigDecimal("75.00").compareTo(balances.get(2)));
+    }
+
+    private LedgerPostingService createService() {
+        AccountingPeriodService accountingPeriodService = mock(AccountingPeriodService.class);
+        AccountingPeriodEntity period = new AccountingPeriodEntity();
+        period.setId(1L);
+        when(accountingPeriodService.getActivePeriodForWrite()).thenReturn(period);
+
+        AuthService authService = mock(AuthService.class);
+        when(authService.getTenantId()).thenReturn(TENANT_ID);
+
+        return new LedgerPostingService(accountingPeriodService, authService, jdbcTemplate);
+    }
+
+    private List<LedgerLine> createBalancedLines() {
+        List<LedgerLine> lines = new ArrayList<>();
+        LocalDate date = LocalDate.of(2024, 1, 15);
+        for (long accountId : ACCOUNTS) {
+            lines.add(new LedgerLine(accountId, Motion.D, new BigDecimal("4.00"), 1L, date, LedgerSourceType.TRANSACTION, 1L, 1L));
+            lines.add(new LedgerLine(accountId, Motion.D, new BigDecimal("6.00"), 1L, date, LedgerSourceType.TRANSACTION, 1L, 1L));
+            lines.add(new LedgerLine(accountId, Motion.C, new BigDecimal("10.00"), 1L, date, LedgerSourceType.TRANSACTION, 1L, 1L));
+        }
+        return lines;
+    }
+}
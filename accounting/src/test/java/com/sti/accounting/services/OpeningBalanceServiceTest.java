@@ -0,0 +1,65 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.models.OpeningBalanceRow;
+import com.sti.accounting.repositories.IBalancesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OpeningBalanceServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @Mock
+    private IBalancesRepository iBalancesRepository;
+
+    @InjectMocks
+    private OpeningBalanceService openingBalanceService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void indexesCurrentBalancesByAccountWithOneQuery() {
+        when(iBalancesRepository.findCurrentOpeningBalances(TENANT_ID)).thenReturn(List.of(
+                new OpeningBalanceRow(1L, "D", new BigDecimal("100.00")),
+                new OpeningBalanceRow(1L, "c", new BigDecimal("30.00")),
+                new OpeningBalanceRow(2L, "C", null)));
+
+        OpeningBalanceService.OpeningBalances balances = openingBalanceService.getOpeningBalances(TENANT_ID);
+
+        assertEquals("D", balances.getCurrent(1L).getTypicalBalance());
+        assertEquals(0, new BigDecimal("100.00").compareTo(balances.getInitialDebit(1L)));
+        assertEquals(0, new BigDecimal("30.00").compareTo(balances.getInitialCredit(1L)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balances.getInitialCredit(2L)));
+        assertNull(balances.getCurrent(3L));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balances.getInitialDebit(3L)));
+        verify(iBalancesRepository, times(1)).findCurrentOpeningBalances(TENANT_ID);
+        verify(iBalancesRepository, never()).findOpeningBalancesOldestFirst(any());
+        verify(iBalancesRepository, never()).findByAccountId(any());
+    }
+
+    @Test
+    void oldestBalanceIsFirstRowOfEachAccount() {
+        when(iBalancesRepository.findCurrentOpeningBalances(TENANT_ID)).thenReturn(List.of());
+        when(iBalancesRepository.findOpeningBalancesOldestFirst(TENANT_ID)).thenReturn(List.of(
+                new OpeningBalanceRow(1L, "D", new BigDecimal("10.00")),
+                new OpeningBalanceRow(1L, "D", new BigDecimal("90.00")),
+                new OpeningBalanceRow(2L, "C", new BigDecimal("5.00"))));
+
+        OpeningBalanceService.OpeningBalances balances = openingBalanceService.getOpeningBalances(TENANT_ID, true);
+
+        assertEquals(0, new BigDecimal("10.00").compareTo(balances.getOldest(1L).getInitialBalance()));
+        assertEquals("C", balances.getOldest(2L).getTypicalBalance());
+    }
+}
@@ -0,0 +1,80 @@
+package com.sti.accounting.services;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdaSequenceServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:pda;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS pda_sequence");
+        jdbcTemplate.execute("CREATE TABLE pda_sequence (tenant_id VARCHAR(255) PRIMARY KEY, last_number BIGINT)");
+    }
+
+    @Test
+    void nodesHandOutUniqueNumbersFromTheirBlocks() throws Exception {
+        // Dos instancias simulan dos nodos con bloques propios sobre la misma fila
+        List<PdaSequenceService> nodes = List.of(
+                new PdaSequenceService(jdbcTemplate, transactionManager, 10, false),
+                new PdaSequenceService(jdbcTemplate, transactionManager, 10, false));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<BigInteger>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            PdaSequenceService node = nodes.get(i % nodes.size());
+            futures.add(executor.submit(() -> node.next(TENANT_ID)));
+        }
+        Set<BigInteger> numbers = new HashSet<>();
+        for (Future<BigInteger> future : futures) {
+            numbers.add(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(400, numbers.size());
+        // Solo se reserva un bloque a la vez por nodo, a lo sumo queda un bloque sin usar por nodo
+        long reserved = jdbcTemplate.queryForObject("SELECT last_number FROM pda_sequence WHERE tenant_id = ?", Long.class, TENANT_ID);
+        assertTrue(reserved >= 400 && reserved <= 420);
+    }
+
+    @Test
+    void reservedRangeIsReturnedOnRollback() {
+        PdaSequenceService service = new PdaSequenceService(jdbcTemplate, transactionManager, 10, false);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        assertEquals(Long.valueOf(1L), transaction.execute(status -> service.reserveRange(TENANT_ID, 5)));
+        transaction.executeWithoutResult(status -> {
+            service.reserveRange(TENANT_ID, 5);
+            status.setRollbackOnly();
+        });
+        assertEquals(Long.valueOf(6L), transaction.execute(status -> service.reserveRange(TENANT_ID, 5)));
+    }
+
+    @Test
+    void gapFreeModeReservesInsideCallerTransaction() {
+        PdaSequenceService service = new PdaSequenceService(jdbcTemplate, transactionManager, 10, true);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        assertThrows(IllegalStateException.class, () -> service.next(TENANT_ID));
+        assertEquals(BigInteger.ONE, transaction.execute(status -> service.next(TENANT_ID)));
+        assertEquals(BigInteger.TWO, transaction.execute(status -> service.next(TENANT_ID)));
+    }
+}
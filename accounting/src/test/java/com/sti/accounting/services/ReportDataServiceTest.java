@@ -0,0 +1,158 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountEntity;
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.entities.ControlAccountBalancesEntity;
+import com.sti.accounting.entities.TrialBalanceSnapshotEntity;
+import com.sti.accounting.models.GeneralBalanceResponse;
+import com.sti.accounting.models.IncomeStatementResponse;
+import com.sti.accounting.models.ReportDataSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReportDataServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @Mock
+    private ControlAccountBalancesService controlAccountBalancesService;
+
+    @Mock
+    private GeneralBalanceService generalBalanceService;
+
+    @Mock
+    private IncomeStatementService incomeStatementService;
+
+    @Mock
+    private TrialBalanceSnapshotService trialBalanceSnapshotService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private ReportDataService reportDataService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void buildSnapshotLoadsPeriodMovementsOnce() {
+        // Arrange
+        AccountingPeriodEntity period = new AccountingPeriodEntity();
+        period.setId(3L);
+        period.setTenantId(TENANT_ID);
+        period.setStartPeriod(LocalDateTime.of(2024, 3, 1, 0, 0));
+        period.setEndPeriod(LocalDateTime.of(2024, 3, 31, 23, 59, 59));
+
+        Map<Long, ControlAccountBalancesEntity> movements = Map.of(10L, new ControlAccountBalancesEntity());
+        List<AccountEntity> balanceAccounts = List.of(new AccountEntity());
+        List<AccountEntity> incomeAccounts = List.of(new AccountEntity());
+        List<IncomeStatementResponse> incomeStatement = List.of(
+                incomeItem("C", "300.00"),
+                incomeItem("D", "120.00"));
+        List<GeneralBalanceResponse> generalBalance = List.of(
+                balanceItem("ACTIVO", "500.00"),
+                balanceItem("PASIVO", "200.00"),
+                balanceItem("PATRIMONIO", "180.00"));
+
+        when(trialBalanceSnapshotService.getSnapshotByAccount(3L)).thenReturn(Map.of());
+        when(controlAccountBalancesService.getPeriodMovementsByAccount(3L, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31))).thenReturn(movements);
+        when(incomeStatementService.getIncomeStatementAccounts(TENANT_ID)).thenReturn(incomeAccounts);
+        when(generalBalanceService.getBalanceAccounts(TENANT_ID)).thenReturn(balanceAccounts);
+        when(incomeStatementService.getIncomeStatement(incomeAccounts, movements)).thenReturn(incomeStatement);
+        when(incomeStatementService.getNetProfit(incomeStatement)).thenReturn(new BigDecimal("180.00"));
+        when(generalBalanceService.getBalanceGeneral(balanceAccounts, movements, incomeStatement)).thenReturn(generalBalance);
+
+        // Act
+        ReportDataSnapshot snapshot = reportDataService.buildSnapshot(period);
+
+        // Assert: ni el balance ni el estado de resultados consultan por cuenta
+        verify(controlAccountBalancesService, times(1)).getPeriodMovementsByAccount(anyLong(), any(), any());
+        verify(incomeStatementService, never()).getIncomeStatement(anyLong());
+        verify(generalBalanceService, never()).getBalanceGeneral(anyLong());
+        verify(generalBalanceService, never()).getBalanceGeneral(anyLong(), anyList());
+
+        assertSame(generalBalance, snapshot.getGeneralBalance());
+        assertEquals(0, new BigDecimal("500.00").compareTo(snapshot.getTotalAssets()));
+        assertEquals(0, new BigDecimal("200.00").compareTo(snapshot.getTotalLiabilities()));
+        assertEquals(0, new BigDecimal("180.00").compareTo(snapshot.getTotalCapital()));
+        assertEquals(0, new BigDecimal("300.00").compareTo(snapshot.getTotalIncome()));
+        assertEquals(0, new BigDecimal("120.00").compareTo(snapshot.getTotalExpenses()));
+        assertEquals(0, new BigDecimal("180.00").compareTo(snapshot.getNetIncome()));
+        assertEquals("2024-03-01 al 2024-03-31", snapshot.getPeriodRange());
+    }
+
+    @Test
+    void annualTotalsLoadMovementsOfAllPeriodsInOneQuery() {
+        // Arrange: enero cerrado con snapshot, febrero en vivo
+        AccountingPeriodEntity january = new AccountingPeriodEntity();
+        january.setId(1L);
+        AccountingPeriodEntity february = new AccountingPeriodEntity();
+        february.setId(2L);
+
+        TrialBalanceSnapshotEntity januaryRow = new TrialBalanceSnapshotEntity();
+        januaryRow.setPeriodCredit(new BigDecimal("100.00"));
+        Map<Long, TrialBalanceSnapshotEntity> januarySnapshot = Map.of(10L, januaryRow);
+        Map<Long, ControlAccountBalancesEntity> februaryMovements = Map.of(10L, new ControlAccountBalancesEntity());
+
+        List<AccountEntity> balanceAccounts = List.of(new AccountEntity());
+        List<AccountEntity> incomeAccounts = List.of(new AccountEntity());
+        List<IncomeStatementResponse> januaryIncome = List.of(incomeItem("C", "100.00"));
+        List<IncomeStatementResponse> februaryIncome = List.of(incomeItem("C", "40.00"), incomeItem("D", "15.00"));
+
+        when(controlAccountBalancesService.getMovementsByPeriodAndAccount(List.of(1L, 2L), TENANT_ID)).thenReturn(Map.of(2L, februaryMovements));
+        when(trialBalanceSnapshotService.getSnapshotsByPeriod(List.of(1L, 2L), TENANT_ID)).thenReturn(Map.of(1L, januarySnapshot));
+        when(generalBalanceService.getBalanceAccounts(TENANT_ID)).thenReturn(balanceAccounts);
+        when(incomeStatementService.getIncomeStatementAccounts(TENANT_ID)).thenReturn(incomeAccounts);
+        when(incomeStatementService.getIncomeStatement(eq(incomeAccounts), anyMap())).thenReturn(januaryIncome);
+        when(incomeStatementService.getIncomeStatement(incomeAccounts, februaryMovements)).thenReturn(februaryIncome);
+        when(generalBalanceService.getBalanceGeneralFromSnapshot(balanceAccounts, januarySnapshot, januaryIncome)).thenReturn(List.of(balanceItem("ACTIVO", "500.00")));
+        when(generalBalanceService.getBalanceGeneral(balanceAccounts, februaryMovements, februaryIncome)).thenReturn(List.of(balanceItem("ACTIVO", "525.00"), balanceItem("PASIVO", "20.00")));
+
+        // Act: sin contexto de seguridad, como en el hilo de trabajo
+        ReportDataService.ClosingTotals totals = reportDataService.calculateAnnualTotalsAsync(List.of(january, february), TENANT_ID).join();
+
+        // Assert
+        verify(controlAccountBalancesService, times(1)).getMovementsByPeriodAndAccount(any(), any());
+        verify(controlAccountBalancesService, never()).getPeriodMovementsByAccount(anyLong(), any(), any());
+        assertEquals(0, new BigDecimal("1025.00").compareTo(totals.totalAssets()));
+        assertEquals(0, new BigDecimal("20.00").compareTo(totals.totalLiabilities()));
+        assertEquals(0, new BigDecimal("140.00").compareTo(totals.totalIncome()));
+        assertEquals(0, new BigDecimal("15.00").compareTo(totals.totalExpenses()));
+        assertEquals(0, new BigDecimal("125.00").compareTo(totals.netIncome()));
+    }
+
+    private IncomeStatementResponse incomeItem(String typicalBalance, String amount) {
+        IncomeStatementResponse item = new IncomeStatementResponse();
+        item.setTypicalBalance(typicalBalance);
+        item.setAmount(new BigDecimal(amount));
+        return item;
+    }
+
+    private GeneralBalanceResponse balanceItem(String category, String balance) {
+        GeneralBalanceResponse item = new GeneralBalanceResponse();
+        item.setCategory(category);
+        item.setBalance(new BigDecimal(balance));
+        return item;
+    }
+}
@@ -0,0 +1,62 @@
+package com.sti.accounting.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportStorageServiceTest {
+
+    @TempDir
+    Path storageDir;
+
+    @Test
+    void storesContentOnceByHash() throws Exception {
+        ReportStorageService storage = new ReportStorageService(storageDir.toString());
+        byte[] pdf = "%PDF-1.7 cierre".getBytes(StandardCharsets.UTF_8);
+
+        ReportStorageService.StoredReport first = storage.store(os -> os.write(pdf));
+        ReportStorageService.StoredReport second = storage.store(new ByteArrayInputStream(pdf));
+
+        assertEquals(first.hash(), second.hash());
+        assertEquals(pdf.length, first.size());
+        assertEquals(64, first.hash().length());
+
+        // Un solo archivo y sin temporales
+        try (Stream<Path> files = Files.walk(storageDir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+
+        Resource resource = storage.load(first.hash());
+        assertArrayEquals(pdf, resource.getContentAsByteArray());
+    }
+
+    @Test
+    void failedReportLeavesNoFile() throws Exception {
+        ReportStorageService storage = new ReportStorageService(storageDir.toString());
+
+        assertThrows(ResponseStatusException.class, () -> storage.store(os -> {
+            os.write(1);
+            throw new IllegalStateException("fallo al generar");
+        }));
+
+        try (Stream<Path> files = Files.walk(storageDir)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void rejectsInvalidHash() {
+        ReportStorageService storage = new ReportStorageService(storageDir.toString());
+
+        assertThrows(ResponseStatusException.class, () -> storage.load("../../etc/passwd"));
+    }
+}
@@ -6,18 +6,23 @@ import com.sti.accounting.repositories.*;
 import com.sti.accounting.utils.Currency;
 import com.sti.accounting.utils.Motion;
 import com.sti.accounting.utils.TenantContext;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class TransactionServiceTest {
@@ -38,7 +43,7 @@ class TransactionServiceTest {
     private IAccountingJournalRepository accountingJournalRepository;
 
     @Mock
-    private ControlAccountBalancesService controlAccountBalancesService;
+    private LedgerPostingService ledgerPostingService;
 
     @Mock
     private AccountingPeriodService accountingPeriodService;
@@ -46,6 +51,18 @@ class TransactionServiceTest {
     @Mock
     private IAccountRepository iAccountRepository;
 
+    @Mock
+    private AuthService authService;
+
+    @Mock
+    private PdaSequenceService pdaSequenceService;
+
+    @Mock
+    private AccountCatalogService accountCatalogService;
+
+    @Mock
+    private EntityManager entityManager;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -57,8 +74,9 @@ class TransactionServiceTest {
         // Arrange
         TransactionEntity transaction = createTransactionEntity(1L, "b5cfa106-8dc3-4d8d-92e4-caaf596f74777");
 
-        // Configurar el mock para devolver la transacción
-        when(transactionRepository.findAll()).thenReturn(List.of(transaction));
+        // Configurar el mock para devolver la transacción del tenant
+        when(authService.getTenantId()).thenReturn("b5cfa106-8dc3-4d8d-92e4-caaf596f74777");
+        when(transactionRepository.findAllWithDetailByTenantId("b5cfa106-8dc3-4d8d-92e4-caaf596f74777")).thenReturn(List.of(transaction));
 
         // Act
         List<TransactionResponse> result = transactionService.getAllTransaction();
@@ -67,6 +85,9 @@ class TransactionServiceTest {
         assertEquals(1, result.size());
         assertEquals(1L, result.get(0).getDocumentType());
         assertEquals("L", result.get(0).getCurrency());
+        // Solo se consultan las partidas del tenant, nunca todas
+        verify(transactionRepository).findAllWithDetailByTenantId("b5cfa106-8dc3-4d8d-92e4-caaf596f74777");
+        verify(transactionRepository, never()).findAll();
     }
 
     @Test
@@ -74,8 +95,9 @@ class TransactionServiceTest {
         // Arrange
         AccountingPeriodEntity activePeriod = new AccountingPeriodEntity();
         activePeriod.setId(1L);
+        when(authService.getTenantId()).thenReturn("b5cfa106-8dc3-4d8d-92e4-caaf596f74777");
         when(accountingPeriodService.getActivePeriod()).thenReturn(activePeriod);
-        when(transactionRepository.getAccountTransactionSummary()).thenReturn(new ArrayList<>());
+        when(transactionRepository.streamAccountLedger("b5cfa106-8dc3-4d8d-92e4-caaf596f74777", 1L, true, List.of(-1L))).thenReturn(Stream.empty());
 
         // Act
         Map<String, List<AccountTransactionDTO>> result = transactionService.getTransactionAccountsByActivePeriod();
@@ -84,6 +106,31 @@ class TransactionServiceTest {
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    void getTransactionAccountsByActivePeriodComparesCodeRangeBySegment() {
+        // Arrange
+        AccountingPeriodEntity activePeriod = new AccountingPeriodEntity();
+        activePeriod.setId(1L);
+        when(authService.getTenantId()).thenReturn("b5cfa106-8dc3-4d8d-92e4-caaf596f74777");
+        when(accountingPeriodService.getActivePeriod()).thenReturn(activePeriod);
+        List<AccountEntity> accounts = new ArrayList<>();
+        String[] codes = {"1-1-1", "1-1-2", "1-1-9", "1-1-10", "1-1-21", "1-2"};
+        for (int i = 0; i < codes.length; i++) {
+            AccountEntity account = new AccountEntity();
+            account.setId(i + 1L);
+            account.setCode(codes[i]);
+            accounts.add(account);
+        }
+        when(accountCatalogService.getCatalog("b5cfa106-8dc3-4d8d-92e4-caaf596f74777")).thenReturn(new AccountCatalogService.AccountCatalog(accounts));
+        when(transactionRepository.streamAccountLedger(any(), any(), anyBoolean(), any())).thenReturn(Stream.empty());
+
+        // Act
+        transactionService.getTransactionAccountsByActivePeriod("1-1-2", "1-1-10");
+
+        // Assert: como texto "1-1-10" quedaria fuera del rango
+        verify(transactionRepository).streamAccountLedger("b5cfa106-8dc3-4d8d-92e4-caaf596f74777", 1L, false, List.of(2L, 3L, 4L));
+    }
+
     @Test
     void getByDocumentType() {
         // Arrange
@@ -154,7 +201,7 @@ class TransactionServiceTest {
         account2.setDescription("Test Account 2");
 
         // Configura el mock para devolver las cuentas
-        when(iAccountRepository.findAll()).thenReturn(Arrays.asList(account1, account2));
+        when(accountCatalogService.getCatalog(any())).thenReturn(new AccountCatalogService.AccountCatalog(Arrays.asList(account1, account2)));
 
         // Arrange
         TransactionRequest request = new TransactionRequest();
@@ -188,7 +235,7 @@ class TransactionServiceTest {
 
         when(documentRepository.findById(request.getDocumentType())).thenReturn(Optional.of(document));
         when(accountingJournalRepository.findById(request.getDiaryType())).thenReturn(Optional.of(journal));
-        when(accountingPeriodService.getActivePeriod()).thenReturn(new AccountingPeriodEntity());
+        when(accountingPeriodService.getActivePeriodForWrite()).thenReturn(new AccountingPeriodEntity());
 
         // Act
         TransactionResponse result = transactionService.createTransaction(request);
@@ -216,7 +263,7 @@ class TransactionServiceTest {
         when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(existingTransaction));
         when(documentRepository.findById(request.getDocumentType())).thenReturn(Optional.of(new DocumentEntity()));
         when(accountingJournalRepository.findById(request.getDiaryType())).thenReturn(Optional.of(new AccountingJournalEntity()));
-        when(accountingPeriodService.getActivePeriod()).thenReturn(new AccountingPeriodEntity());
+        when(accountingPeriodService.getActivePeriodForWrite()).thenReturn(new AccountingPeriodEntity());
 
         // Act
         TransactionResponse result = transactionService.updateTransaction(transactionId, request);
@@ -241,8 +288,33 @@ class TransactionServiceTest {
 
         // Assert
         assertEquals(StatusTransaction.SUCCESS, transaction1.getStatus());
-        verify(transactionRepository, times(1)).save(transaction1);
-        verify(controlAccountBalancesService, times(1)).updateControlAccountBalances(transaction1);
+        verify(transactionRepository, times(1)).saveAll(List.of(transaction1));
+        verify(ledgerPostingService, times(1)).postTransactions(List.of(transaction1));
+    }
+
+    @Test
+    void exportTransactionsClearsPersistenceContextAfterEachPage() throws Exception {
+        // Arrange: una pagina completa de 500 partidas y una segunda con la ultima
+        String tenantId = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+        List<Long> firstIds = new ArrayList<>();
+        List<TransactionEntity> firstPage = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            firstIds.add(id);
+            firstPage.add(createTransactionEntity(id, tenantId));
+        }
+        when(authService.getTenantId()).thenReturn(tenantId);
+        when(transactionRepository.findPageIds(eq(tenantId), any())).thenReturn(firstIds);
+        when(transactionRepository.findAllWithDetailByIdIn(firstIds)).thenReturn(firstPage);
+        when(transactionRepository.findPageIdsAfter(eq(tenantId), any(), eq(500L), any())).thenReturn(List.of(501L));
+        when(transactionRepository.findAllWithDetailByIdIn(List.of(501L))).thenReturn(List.of(createTransactionEntity(501L, tenantId)));
+
+        // Act
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transactionService.exportTransactions().writeTo(output);
+
+        // Assert: todas las partidas escritas y el contexto limpiado despues de cada pagina
+        assertEquals(501, output.toString(StandardCharsets.UTF_8).lines().count());
+        verify(entityManager, times(2)).clear();
     }
 
     private TransactionEntity createTransactionEntity(Long id, String tenantId) {
@@ -0,0 +1,231 @@
+package com.sti.accounting.services;
+
+import com.sti.accounting.entities.AccountEntity;
+import com.sti.accounting.entities.AccountingPeriodEntity;
+import com.sti.accounting.entities.TrialBalanceSnapshotEntity;
+import com.sti.accounting.models.AccountMovementSummary;
+import com.sti.accounting.models.OpeningBalanceRow;
+import com.sti.accounting.models.TrialBalanceResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TrialBalanceServiceTest {
+
+    private static final String TENANT_ID = "b5cfa106-8dc3-4d8d-92e4-caaf596f74777";
+
+    @Mock
+    private AccountingPeriodService accountingPeriodService;
+
+    @Mock
+    private ControlAccountBalancesService controlAccountBalancesService;
+
+    @Mock
+    private AccountCatalogService accountCatalogService;
+
+    @Mock
+    private OpeningBalanceService openingBalanceService;
+
+    @Mock
+    private TrialBalanceSnapshotService trialBalanceSnapshotService;
+
+    @Mock
+    private AuthService authService;
+
+    private TrialBalanceService trialBalanceService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(authService.getTenantId()).thenReturn(TENANT_ID);
+        // Bloques de una cuenta para que los periodos y las cuentas se repartan entre los hilos
+        trialBalanceService = new TrialBalanceService(accountingPeriodService, controlAccountBalancesService, accountCatalogService,
+                openingBalanceService, trialBalanceSnapshotService, authService, 4, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        trialBalanceService.shutdownWorkers();
+    }
+
+    @Test
+    void getTrialBalanceLoadsMovementsOnceForAllPeriods() {
+        // Arrange
+        AccountingPeriodEntity active = createPeriod(2L, "Febrero", 2);
+        AccountingPeriodEntity closed = createPeriod(1L, "Enero", 1);
+
+        givenAccounts(new OpeningBalanceRow(10L, "D", new BigDecimal("100.00")), new OpeningBalanceRow(20L, "C", BigDecimal.ZERO));
+        when(accountingPeriodService.getActivePeriod()).thenReturn(active);
+        when(accountingPeriodService.getClosedPeriods()).thenReturn(List.of(closed));
+        when(controlAccountBalancesService.getMovementsForDateRange(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 29)))
+                .thenReturn(List.of(
+                        new AccountMovementSummary(10L, LocalDate.of(2024, 1, 5), new BigDecimal("50.00"), null),
+                        new AccountMovementSummary(10L, LocalDate.of(2024, 2, 3), new BigDecimal("25.00"), new BigDecimal("5.00")),
+                        new AccountMovementSummary(20L, LocalDate.of(2024, 2, 3), null, new BigDecimal("70.00"))
+                ));
+
+        // Act
+        TrialBalanceResponse result = trialBalanceService.getTrialBalance();
+
+        // Assert
+        verify(controlAccountBalancesService, times(1)).getMovementsForDateRange(any(), any());
+        verify(openingBalanceService, times(1)).getOpeningBalances(TENANT_ID, false);
+        assertEquals(2, result.getPeriods().size());
+
+        TrialBalanceResponse.AccountBalance february = result.getPeriods().get(0).getAccountBalances().get(0);
+        assertEquals(0, new BigDecimal("25.00").compareTo(february.getBalancePeriod().get(0).getDebit()));
+        assertEquals(0, new BigDecimal("5.00").compareTo(february.getBalancePeriod().get(0).getCredit()));
+        assertEquals(0, new BigDecimal("120.00").compareTo(february.getFinalBalance().get(0).getDebit()));
+
+        TrialBalanceResponse.AccountBalance creditAccount = result.getPeriods().get(0).getAccountBalances().get(1);
+        assertEquals(0, new BigDecimal("70.00").compareTo(creditAccount.getFinalBalance().get(0).getCredit()));
+
+        TrialBalanceResponse.AccountBalance january = result.getPeriods().get(1).getAccountBalances().get(0);
+        assertEquals(0, new BigDecimal("50.00").compareTo(january.getBalancePeriod().get(0).getDebit()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(january.getBalancePeriod().get(0).getCredit()));
+    }
+
+    @Test
+    void getTrialBalanceReadsClosedPeriodsFromSnapshot() {
+        // Arrange
+        AccountingPeriodEntity active = createPeriod(2L, "Febrero", 2);
+        AccountingPeriodEntity closed = createPeriod(1L, "Enero", 1);
+
+        TrialBalanceSnapshotEntity snapshot = new TrialBalanceSnapshotEntity();
+        snapshot.setAccountId(10L);
+        snapshot.setInitialDebit(new BigDecimal("100.00"));
+        snapshot.setInitialCredit(BigDecimal.ZERO);
+        snapshot.setPeriodDebit(new BigDecimal("50.00"));
+        snapshot.setPeriodCredit(BigDecimal.ZERO);
+        snapshot.setFinalDebit(new BigDecimal("150.00"));
+        snapshot.setFinalCredit(BigDecimal.ZERO);
+
+        givenAccounts(new OpeningBalanceRow(10L, "D", new BigDecimal("150.00")));
+        when(accountingPeriodService.getActivePeriod()).thenReturn(active);
+        when(accountingPeriodService.getClosedPeriods()).thenReturn(List.of(closed));
+        when(trialBalanceSnapshotService.getSnapshotsByPeriod(List.of(2L, 1L))).thenReturn(Map.of(1L, Map.of(10L, snapshot)));
+        when(controlAccountBalancesService.getMovementsForDateRange(any(), any())).thenReturn(List.of());
+
+        // Act
+        TrialBalanceResponse result = trialBalanceService.getTrialBalance();
+
+        // Assert: solo el periodo activo se calcula en vivo
+        verify(controlAccountBalancesService).getMovementsForDateRange(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29));
+        TrialBalanceResponse.AccountBalance january = result.getPeriods().get(1).getAccountBalances().get(0);
+        assertEquals(0, new BigDecimal("100.00").compareTo(january.getInitialBalance().get(0).getDebit()));
+        assertEquals(0, new BigDecimal("150.00").compareTo(january.getFinalBalance().get(0).getDebit()));
+    }
+
+    @Test
+    void getTrialBalancePdfRowsIteratesAccountsOfPeriod() {
+        // Arrange
+        AccountingPeriodEntity active = createPeriod(2L, "Febrero", 2);
+
+        givenAccounts(new OpeningBalanceRow(10L, "D", new BigDecimal("100.00")), new OpeningBalanceRow(20L, "C", BigDecimal.ZERO));
+        when(controlAccountBalancesService.getMovementsForDateRange(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)))
+                .thenReturn(List.of(new AccountMovementSummary(10L, LocalDate.of(2024, 2, 3), new BigDecimal("25.00"), null)));
+
+        // Act
+        Iterator<TrialBalanceResponse.AccountBalance> rows = trialBalanceService.getTrialBalancePdfRows(active);
+
+        // Assert
+        TrialBalanceResponse.AccountBalance first = rows.next();
+        assertEquals(10L, first.getId());
+        assertEquals(0, new BigDecimal("125.00").compareTo(first.getFinalBalance().get(0).getDebit()));
+        assertEquals(20L, rows.next().getId());
+        assertFalse(rows.hasNext());
+        verify(controlAccountBalancesService, times(1)).getMovementsForDateRange(any(), any());
+    }
+
+    @Test
+    void getTrialBalanceMergesParallelPeriodsInPeriodOrder() {
+        // Arrange
+        AccountingPeriodEntity active = createPeriod(6L, "Junio", 6);
+        List<AccountingPeriodEntity> closed = new ArrayList<>();
+        for (int month = 5; month >= 1; month--) {
+            closed.add(createPeriod((long) month, "Mes " + month, month));
+        }
+        givenAccounts(new OpeningBalanceRow(10L, "D", BigDecimal.ZERO), new OpeningBalanceRow(20L, "C", BigDecimal.ZERO),
+                new OpeningBalanceRow(30L, "D", BigDecimal.ZERO));
+        when(accountingPeriodService.getActivePeriod()).thenReturn(active);
+        when(accountingPeriodService.getClosedPeriods()).thenReturn(closed);
+
+        List<AccountMovementSummary> movements = new ArrayList<>();
+        for (int month = 1; month <= 6; month++) {
+            movements.add(new AccountMovementSummary(30L, LocalDate.of(2024, month, 10), BigDecimal.valueOf(month), null));
+        }
+        when(controlAccountBalancesService.getMovementsForDateRange(any(), any())).thenReturn(movements);
+
+        // Act
+        TrialBalanceResponse result = trialBalanceService.getTrialBalance();
+
+        // Assert: el orden es el de los periodos y las cuentas, y el tenant solo se lee en el hilo de la peticion
+        assertEquals(List.of("Junio", "Mes 5", "Mes 4", "Mes 3", "Mes 2", "Mes 1"),
+                result.getPeriods().stream().map(TrialBalanceResponse.PeriodBalanceResponse::getPeriodName).toList());
+        for (TrialBalanceResponse.PeriodBalanceResponse period : result.getPeriods()) {
+            assertEquals(List.of(10L, 20L, 30L), period.getAccountBalances().stream().map(TrialBalanceResponse.AccountBalance::getId).toList());
+            int month = period.getStartPeriod().getMonthValue();
+            assertEquals(0, BigDecimal.valueOf(month).compareTo(period.getAccountBalances().get(2).getBalancePeriod().get(0).getDebit()));
+        }
+        verify(authService, times(1)).getTenantId();
+        verify(openingBalanceService, times(1)).getOpeningBalances(TENANT_ID, false);
+    }
+
+    @Test
+    void getTrialBalanceRethrowsWorkerErrorUnwrapped() {
+        AccountingPeriodEntity active = createPeriod(2L, "Febrero", 2);
+        givenAccounts(new OpeningBalanceRow(10L, "D", BigDecimal.ZERO), new OpeningBalanceRow(20L, "C", BigDecimal.ZERO));
+        when(accountingPeriodService.getActivePeriod()).thenReturn(active);
+        when(accountingPeriodService.getClosedPeriods()).thenReturn(List.of(createPeriod(1L, "Enero", 1)));
+        when(controlAccountBalancesService.getMovementsForDateRange(any(), any())).thenReturn(List.of());
+        // El error ocurre dentro de un hilo de trabajo al leer los saldos iniciales
+        OpeningBalanceService.OpeningBalances openingBalances = mock(OpeningBalanceService.OpeningBalances.class);
+        when(openingBalances.getCurrent(any())).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Cuenta no encontrada"));
+        when(openingBalanceService.getOpeningBalances(TENANT_ID, false)).thenReturn(openingBalances);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> trialBalanceService.getTrialBalance());
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+    }
+
+    private AccountingPeriodEntity createPeriod(Long id, String name, int month) {
+        AccountingPeriodEntity period = new AccountingPeriodEntity();
+        period.setId(id);
+        period.setPeriodName(name);
+        period.setIsAnnual(false);
+        period.setStartPeriod(LocalDateTime.of(2024, month, 1, 0, 0));
+        period.setEndPeriod(LocalDate.of(2024, month, 1).plusMonths(1).minusDays(1).atTime(23, 59, 59));
+        return period;
+    }
+
+    // Cuentas del catalogo con sus saldos vigentes cargados en una sola consulta
+    private void givenAccounts(OpeningBalanceRow... balances) {
+        List<AccountEntity> accounts = new ArrayList<>();
+        for (OpeningBalanceRow balance : balances) {
+            AccountEntity account = new AccountEntity();
+            account.setId(balance.getAccountId());
+            account.setDescription("Cuenta " + balance.getAccountId());
+            account.setCode(String.valueOf(balance.getAccountId()));
+            account.setTenantId(TENANT_ID);
+            accounts.add(account);
+        }
+        when(accountCatalogService.getCatalog(TENANT_ID)).thenReturn(new AccountCatalogService.AccountCatalog(accounts));
+        when(openingBalanceService.getOpeningBalances(TENANT_ID, false))
+                .thenReturn(new OpeningBalanceService.OpeningBalances(List.of(balances), List.of()));
+    }
+}